@@ -0,0 +1,61 @@
+package com.urbanairship.digitalwallet.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * The outcome of a bulk call: a result or an error for every distinct key that was asked for,
+ * in the order the keys were first passed in.
+ */
+public class BulkResult<K, V> {
+    private final Map<K, V> results = new LinkedHashMap<K, V>();
+    private final Map<K, Exception> errors = new LinkedHashMap<K, Exception>();
+
+    void addResult(K key, V value) {
+        results.put(key, value);
+    }
+
+    void addError(K key, Exception error) {
+        errors.put(key, error);
+    }
+
+    /**
+     * @return the successful results keyed by id, in input order.
+     */
+    public Map<K, V> getResults() {
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * @return the failures keyed by id, in input order.
+     */
+    public Map<K, Exception> getErrors() {
+        return Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * @return the successful results in input order.
+     */
+    public List<V> getValues() {
+        return new ArrayList<V>(results.values());
+    }
+
+    public V get(K key) {
+        return results.get(key);
+    }
+
+    public Exception getError(K key) {
+        return errors.get(key);
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public int size() {
+        return results.size() + errors.size();
+    }
+}
@@ -0,0 +1,125 @@
+package com.urbanairship.digitalwallet.client;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * A time by which every API call made on this thread has to be done.  Calls that would start after it fail
+ * with DeadlineExceededException without being sent, a call in flight when it passes is aborted, and a wait
+ * on the rate limiter that would run past it fails straight away.  Deadlines nest; an inner one never runs
+ * past the one around it.  Bulk calls carry the caller's deadline onto the threads they fan out to.
+ *
+ *      Deadline deadline = Deadline.start(300, TimeUnit.MILLISECONDS);
+ *      try {
+ *          Pass pass = Pass.get(passId);
+ *      } finally {
+ *          deadline.close();
+ *      }
+ */
+public class Deadline implements Closeable {
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<Deadline>();
+
+    private final long expiresNanos;
+    private final Deadline previous;
+
+    private Deadline(long expiresNanos, Deadline previous) {
+        this.expiresNanos = expiresNanos;
+        this.previous = previous;
+    }
+
+    /**
+     * Set a deadline for calls on this thread until close().
+     *
+     * @return the deadline, to be closed when the calls are done.
+     */
+    public static Deadline start(long timeout, TimeUnit unit) {
+        Deadline enclosing = current.get();
+        long expires = System.nanoTime() + unit.toNanos(timeout);
+        if (enclosing != null && enclosing.expiresNanos - expires < 0) {
+            expires = enclosing.expiresNanos;
+        }
+        Deadline deadline = new Deadline(expires, enclosing);
+        current.set(deadline);
+        return deadline;
+    }
+
+    /**
+     * @return the deadline calls on this thread are held to, or null if there is none.
+     */
+    public static Deadline current() {
+        return current.get();
+    }
+
+    /**
+     * @return a call that runs under the current thread's deadline, on whatever thread runs it.
+     */
+    public static <V> Callable<V> propagate(final Callable<V> call) {
+        final Deadline deadline = current.get();
+        if (deadline == null) {
+            return call;
+        }
+        return new Callable<V>() {
+            public V call() throws Exception {
+                Deadline inherited = deadline.enter();
+                try {
+                    return call.call();
+                } finally {
+                    inherited.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * @return a task that runs under the current thread's deadline, on whatever thread runs it.
+     */
+    public static Runnable propagate(final Runnable task) {
+        final Deadline deadline = current.get();
+        if (deadline == null) {
+            return task;
+        }
+        return new Runnable() {
+            public void run() {
+                Deadline inherited = deadline.enter();
+                try {
+                    task.run();
+                } finally {
+                    inherited.close();
+                }
+            }
+        };
+    }
+
+    public long remaining(TimeUnit unit) {
+        return unit.convert(Math.max(0, expiresNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isExpired() {
+        return expiresNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Stop holding calls on this thread to this deadline, going back to the one around it.
+     */
+    public void close() {
+        if (current.get() == this) {
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+        }
+    }
+
+    long getExpiresNanos() {
+        return expiresNanos;
+    }
+
+    /* the same deadline on the calling thread */
+    private Deadline enter() {
+        Deadline deadline = new Deadline(expiresNanos, current.get());
+        current.set(deadline);
+        return deadline;
+    }
+}
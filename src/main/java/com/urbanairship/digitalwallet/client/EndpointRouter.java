@@ -0,0 +1,164 @@
+package com.urbanairship.digitalwallet.client;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.util.EntityUtils;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Sends calls meant for PassTools.API_BASE to whichever of PassTools.apiBases has been answering fastest.
+ *
+ * Each base keeps a moving average of its latency, taken from real calls and from a /system/status probe
+ * sent to every base each PassTools.apiBaseProbeMillis.  A base that fails several times running, by
+ * an I/O error or a 5xx, is left out for PassTools.apiBaseEjectMillis, or until a probe to it succeeds.
+ * Each time it is left out again before a real call to it has succeeded, the time grows and probes no
+ * longer cut it short, so a base that answers /system/status but fails real calls isn't let back every
+ * probe.  If every base is left out, the one due back first is used.
+ */
+class EndpointRouter {
+    private static final double WEIGHT = 0.3;          /* of the newest latency in the average */
+    private static final int FAILURES_TO_EJECT = 3;
+    private static final int MAX_EJECT_MULTIPLE = 8;
+
+    private final List<String> bases;
+    private final List<Endpoint> endpoints = new ArrayList<Endpoint>();
+    private final ScheduledExecutorService prober;
+
+    EndpointRouter(List<String> bases) {
+        this.bases = new ArrayList<String>(bases);
+        for (String base : this.bases) {
+            endpoints.add(new Endpoint(base));
+        }
+        prober = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "passtools-endpoint-probe");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        if (PassTools.apiBaseProbeMillis > 0) {
+            prober.scheduleWithFixedDelay(new Runnable() {
+                public void run() {
+                    probe();
+                }
+            }, PassTools.apiBaseProbeMillis, PassTools.apiBaseProbeMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /* whether this router was built for these bases */
+    boolean routes(List<String> bases) {
+        return this.bases.equals(bases);
+    }
+
+    /**
+     * Point the request at the best base, if it is meant for PassTools.API_BASE.
+     *
+     * @return the base it was pointed at, to report the outcome to, or null if it was left alone.
+     */
+    Endpoint route(HttpUriRequest request) throws Exception {
+        String url = request.getURI().toString();
+        if (!(request instanceof HttpRequestBase) || !url.startsWith(PassTools.API_BASE)) {
+            return null;
+        }
+        Endpoint endpoint = choose();
+        ((HttpRequestBase) request).setURI(new URI(endpoint.base + url.substring(PassTools.API_BASE.length())));
+        return endpoint;
+    }
+
+    synchronized Endpoint choose() {
+        long now = System.nanoTime();
+        Endpoint best = null;
+        Endpoint soonest = null;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.isEjected(now)) {
+                if (soonest == null || endpoint.ejectedUntil - soonest.ejectedUntil < 0) {
+                    soonest = endpoint;
+                }
+            } else if (best == null || endpoint.latency < best.latency) {
+                best = endpoint;   /* one not heard from yet has no latency and is tried first */
+            }
+        }
+        return best != null ? best : soonest;
+    }
+
+    /* a real call went through */
+    synchronized void succeeded(Endpoint endpoint, long nanos) {
+        measured(endpoint, nanos);
+        endpoint.ejections = 0;
+    }
+
+    /* a probe went through, which only brings back a base left out the first time */
+    synchronized void probeSucceeded(Endpoint endpoint, long nanos) {
+        measured(endpoint, nanos);
+        if (endpoint.ejections == 1) {
+            endpoint.ejectedUntil = System.nanoTime();
+        }
+    }
+
+    private void measured(Endpoint endpoint, long nanos) {
+        endpoint.latency = endpoint.latency < 0 ? nanos : endpoint.latency + WEIGHT * (nanos - endpoint.latency);
+        endpoint.failures = 0;
+    }
+
+    synchronized void failed(Endpoint endpoint) {
+        if (endpoint.isEjected(System.nanoTime())) {
+            return;     /* already out, and its time isn't stretched by probes failing meanwhile */
+        }
+        endpoint.failures++;
+        if (endpoint.failures >= FAILURES_TO_EJECT) {
+            endpoint.ejections = Math.min(MAX_EJECT_MULTIPLE, endpoint.ejections + 1);
+            endpoint.ejectedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PassTools.apiBaseEjectMillis * endpoint.ejections);
+            endpoint.failures = 0;
+        }
+    }
+
+    /* check every base's /system/status, bringing back any that answer */
+    void probe() {
+        for (Endpoint endpoint : endpoints) {
+            HttpGet get = new HttpGet(endpoint.base + "/system/status");
+            long start = System.nanoTime();
+            try {
+                HttpClient client = PassToolsClient.getHttpClient();
+                HttpResponse response = client.execute(get);
+                EntityUtils.consume(response.getEntity());
+                if (response.getStatusLine().getStatusCode() >= 500) {
+                    failed(endpoint);
+                } else {
+                    probeSucceeded(endpoint, System.nanoTime() - start);
+                }
+            } catch (Exception e) {
+                failed(endpoint);
+            }
+        }
+    }
+
+    void shutdown() {
+        prober.shutdownNow();
+    }
+
+    static class Endpoint {
+        final String base;
+        double latency = -1;        /* nanoseconds, all guarded by the router */
+        int failures;
+        int ejections;
+        long ejectedUntil;
+
+        Endpoint(String base) {
+            this.base = base;
+        }
+
+        boolean isEjected(long now) {
+            return ejections > 0 && ejectedUntil - now > 0;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.urbanairship.digitalwallet.client;
+
+import java.util.Arrays;
+
+/*
+ * Latency of recent GETs and the budget hedged GETs are paid from.
+ *
+ * A GET gets hedged once it has gone longer than the given percentile of the recent ones.  Every GET
+ * earns a fraction of a hedge and every hedge spends a whole one, so hedges stay at that fraction of
+ * GETs however slow the server gets.
+ */
+class Hedger {
+    private static final int SAMPLES = 512;          /* latencies the percentile is taken over */
+    private static final int MIN_SAMPLES = 20;       /* no hedging until this many have been seen */
+    private static final int RECOMPUTE_EVERY = 32;   /* samples between sorts */
+    private static final double MAX_BUDGET = 10;     /* hedges that can be saved up for a burst of slow calls */
+
+    private final long[] latencies = new long[SAMPLES];
+    private int samples;
+    private int next;
+    private int sinceRecompute;
+    private double percentile = -1;
+    private long delayNanos = -1;
+    private double budget;
+
+    synchronized void record(long nanos) {
+        latencies[next] = nanos;
+        next = (next + 1) % SAMPLES;
+        if (samples < SAMPLES) {
+            samples++;
+        }
+        sinceRecompute++;
+    }
+
+    /* how long to wait before hedging, -1 while there are too few samples to tell */
+    synchronized long delayNanos(double percentile) {
+        if (samples < MIN_SAMPLES) {
+            return -1;
+        }
+        if (delayNanos < 0 || sinceRecompute >= RECOMPUTE_EVERY || percentile != this.percentile) {
+            long[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * samples) - 1;
+            delayNanos = Math.max(1, sorted[Math.max(0, index)]);
+            this.percentile = percentile;
+            sinceRecompute = 0;
+        }
+        return delayNanos;
+    }
+
+    synchronized void earn(double fraction) {
+        budget = Math.min(MAX_BUDGET, budget + Math.max(0, fraction));
+    }
+
+    synchronized boolean spend() {
+        if (budget < 1) {
+            return false;
+        }
+        budget -= 1;
+        return true;
+    }
+}
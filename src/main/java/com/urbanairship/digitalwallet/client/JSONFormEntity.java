@@ -0,0 +1,194 @@
+package com.urbanairship.digitalwallet.client;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.URLEncoder;
+
+/*
+ * A form body of json=...&api_key=... whose JSON is written straight into the request as it is sent,
+ * url-encoded on the way, instead of being built up as strings first.  The body can also be encoded
+ * once up front and shared between requests.
+ */
+class JSONFormEntity extends AbstractHttpEntity {
+
+    interface Body {
+        void writeJSON(Writer out) throws IOException;
+    }
+
+    private final Body body;
+    private final byte[] encodedJSON;
+    private final byte[] apiKeyParameter;
+
+    /**
+     * A body written out each time the request is sent, for JSON too large to hold.
+     */
+    JSONFormEntity(Body body, String apiKey) throws IOException {
+        this(body, null, apiKey);
+    }
+
+    /**
+     * A body already url-encoded with encode().
+     */
+    JSONFormEntity(byte[] encodedJSON, String apiKey) throws IOException {
+        this(null, encodedJSON, apiKey);
+    }
+
+    private JSONFormEntity(Body body, byte[] encodedJSON, String apiKey) throws IOException {
+        this.body = body;
+        this.encodedJSON = encodedJSON;
+        this.apiKeyParameter = ("&api_key=" + URLEncoder.encode(apiKey, "UTF-8")).getBytes("US-ASCII");
+        setContentType("application/x-www-form-urlencoded; charset=UTF-8");
+        setChunked(encodedJSON == null);
+    }
+
+    /**
+     * @return the JSON url-encoded, to be sent any number of times.
+     */
+    static byte[] encode(Body body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FormEncodingWriter writer = new FormEncodingWriter(out);
+        body.writeJSON(writer);
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    public long getContentLength() {
+        return encodedJSON == null ? -1 : 5 + encodedJSON.length + apiKeyParameter.length;
+    }
+
+    public InputStream getContent() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeTo(out);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(new byte[]{'j', 's', 'o', 'n', '='});
+        if (encodedJSON != null) {
+            out.write(encodedJSON);
+        } else {
+            FormEncodingWriter writer = new FormEncodingWriter(out);
+            body.writeJSON(writer);
+            writer.flush();
+        }
+        out.write(apiKeyParameter);
+        out.flush();
+    }
+
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /*
+     * UTF-8 and url-encodes characters the way URLEncoder does, straight into a stream.
+     */
+    static class FormEncodingWriter extends Writer {
+        private static final byte[] hex = "0123456789ABCDEF".getBytes();
+
+        private final OutputStream out;
+        private final byte[] buffer = new byte[8192];
+        private int count;
+        private char highSurrogate;
+
+        FormEncodingWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                write(chars[i]);
+            }
+        }
+
+        @Override
+        public void write(String s, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                write(s.charAt(i));
+            }
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            char ch = (char) c;
+            if (highSurrogate != 0) {
+                char high = highSurrogate;
+                highSurrogate = 0;
+                if (Character.isLowSurrogate(ch)) {
+                    encode(Character.toCodePoint(high, ch));
+                    return;
+                }
+                encode('?');
+            }
+            if (Character.isHighSurrogate(ch)) {
+                highSurrogate = ch;
+            } else if (Character.isLowSurrogate(ch)) {
+                encode('?');
+            } else {
+                encode(ch);
+            }
+        }
+
+        private void encode(int codePoint) throws IOException {
+            if ((codePoint >= 'a' && codePoint <= 'z') || (codePoint >= 'A' && codePoint <= 'Z') || (codePoint >= '0' && codePoint <= '9')
+                    || codePoint == '.' || codePoint == '-' || codePoint == '*' || codePoint == '_') {
+                put(codePoint);
+            } else if (codePoint == ' ') {
+                put('+');
+            } else if (codePoint < 0x80) {
+                escape(codePoint);
+            } else if (codePoint < 0x800) {
+                escape(0xc0 | (codePoint >> 6));
+                escape(0x80 | (codePoint & 0x3f));
+            } else if (codePoint < 0x10000) {
+                escape(0xe0 | (codePoint >> 12));
+                escape(0x80 | ((codePoint >> 6) & 0x3f));
+                escape(0x80 | (codePoint & 0x3f));
+            } else {
+                escape(0xf0 | (codePoint >> 18));
+                escape(0x80 | ((codePoint >> 12) & 0x3f));
+                escape(0x80 | ((codePoint >> 6) & 0x3f));
+                escape(0x80 | (codePoint & 0x3f));
+            }
+        }
+
+        private void escape(int b) throws IOException {
+            put('%');
+            put(hex[(b >> 4) & 0xf]);
+            put(hex[b & 0xf]);
+        }
+
+        private void put(int b) throws IOException {
+            if (count == buffer.length) {
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (highSurrogate != 0) {
+                highSurrogate = 0;
+                encode('?');
+            }
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -7,40 +7,59 @@ import org.json.simple.JSONObject;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 /* manages the address book of a user */
 public class Location extends PassToolsClient {
 
-    public static Long create(LocationInfo locationInfo) {
+    /**
+     * Create a location in your address book.  With PassTools.locationDedupeCache set, a location
+     * identical to one created before returns that location's id without calling the server.
+     *
+     * @param locationInfo  the location, with at least a latitude and longitude.
+     * @return              the id of the location.
+     */
+    public static Long create(final LocationInfo locationInfo) {
         try {
 
             LocationInfo.validate(locationInfo);
 
+            LocationDedupeCache cache = PassTools.locationDedupeCache;
+            if (cache != null) {
+                return cache.getOrCreate(locationInfo, new Callable<Long>() {
+                    public Long call() throws Exception {
+                        return createInternal(locationInfo);
+                    }
+                });
+            }
+            return createInternal(locationInfo);
 
-            String url = PassTools.API_BASE + "/location";
+        } catch (RuntimeException rte) {
+            throw rte;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 
+    private static Long createInternal(LocationInfo locationInfo) throws Exception {
+        String url = PassTools.API_BASE + "/location";
 
-            Map formFields = new HashMap<String, Object>();
-            formFields.put("json", locationInfo.toJSON());
 
-            PassToolsResponse response = post(url, formFields);
+        Map formFields = new HashMap<String, Object>();
+        formFields.put("json", locationInfo.toJSON());
 
+        PassToolsResponse response = post(url, formFields);
 
-            JSONObject jsonObjResponse = response.getBodyAsJSONObject();
 
-            LocationInfo createdLocationInfo = LocationInfo.fromJSON(jsonObjResponse);
+        JSONObject jsonObjResponse = response.getBodyAsJSONObject();
 
+        LocationInfo createdLocationInfo = LocationInfo.fromJSON(jsonObjResponse);
 
-            if (createdLocationInfo != null) {
-                return createdLocationInfo.id;
-            } else {
-                throw new InternalServerException("please check response info! ");
-            }
 
-        } catch (RuntimeException rte) {
-            throw rte;
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        if (createdLocationInfo != null) {
+            return createdLocationInfo.id;
+        } else {
+            throw new InternalServerException("please check response info! ");
         }
     }
 }
@@ -0,0 +1,219 @@
+package com.urbanairship.digitalwallet.client;
+
+import com.urbanairship.digitalwallet.client.data.LocationInfo;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Remembers the id of each location created, keyed by a SHA-256 of its normalised fields, so creating
+ * the same location again returns the existing id instead of adding a duplicate on the server.
+ * PassTools.API_BASE and apiKey go into the hash too, so switching account or environment never
+ * gets back another account's ids.
+ *
+ * Coordinates are compared to six decimal places (about 10cm), address fields ignoring case and extra
+ * whitespace, and relevantText ignoring extra whitespace.  The map is kept in an append-only file of
+ * "hash id" lines and read back when the cache is opened, dropping a last line left unfinished by a crash.
+ *
+ *      PassTools.locationDedupeCache = new LocationDedupeCache(new File("/var/lib/myapp/locations.cache"));
+ *      Long id = Location.create(store);       // only POSTs locations not seen before
+ */
+public class LocationDedupeCache {
+    private final File file;
+    private final Map<String, Long> ids = new ConcurrentHashMap<String, Long>();
+    private final SingleFlight<String, Long> inFlight = new SingleFlight<String, Long>();
+    private Writer writer;
+
+    /**
+     * Open the cache, reading the entries already in the file.
+     *
+     * @param file  where the entries are kept, created if missing.
+     */
+    public LocationDedupeCache(File file) {
+        this.file = file;
+        try {
+            if (file.exists()) {
+                load();
+            }
+            writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the hash the location is cached under, for the current PassTools.API_BASE and apiKey.
+     */
+    public static String key(LocationInfo location) {
+        StringBuilder builder = new StringBuilder();
+        append(builder, "apiBase", PassTools.API_BASE);
+        append(builder, "apiKey", PassTools.apiKey);
+        append(builder, "latitude", coordinate(location.latitude));
+        append(builder, "longitude", coordinate(location.longitude));
+        append(builder, "streetAddress1", address(location.streetAddress1));
+        append(builder, "streetAddress2", address(location.streetAddress2));
+        append(builder, "city", address(location.city));
+        append(builder, "region", address(location.region));
+        append(builder, "regionCode", address(location.regionCode));
+        append(builder, "country", address(location.country));
+        append(builder, "relevantText", whitespace(location.relevantText));
+        return DigestUtils.sha256Hex(builder.toString());
+    }
+
+    /**
+     * @return the id of an identical location created before, or null.
+     */
+    public Long getId(LocationInfo location) {
+        return ids.get(key(location));
+    }
+
+    public void put(LocationInfo location, long id) {
+        String key = key(location);
+        if (!Long.valueOf(id).equals(ids.put(key, id))) {
+            append(key, id);
+        }
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Forget every location, in memory and in the file.
+     */
+    public synchronized void clear() {
+        ids.clear();
+        try {
+            writer.close();
+            writer = new OutputStreamWriter(new FileOutputStream(file, false), "UTF-8");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /*
+     * The id for the location, from the cache or from create.  Concurrent calls for the same location
+     * share one create.
+     */
+    Long getOrCreate(final LocationInfo location, final Callable<Long> create) throws Exception {
+        final String key = key(location);
+        Long id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        return inFlight.execute(key, new Callable<Long>() {
+            public Long call() throws Exception {
+                Long existing = ids.get(key);
+                if (existing != null) {
+                    return existing;
+                }
+                Long created = create.call();
+                ids.put(key, created);
+                append(key, created);
+                return created;
+            }
+        });
+    }
+
+    private synchronized void append(String key, long id) {
+        try {
+            writer.write(key);
+            writer.write(' ');
+            writer.write(Long.toString(id));
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /*
+     * Only lines ending in a newline are taken: a line cut short by a crash can still look like a whole one
+     * ("hash 12345" cut to "hash 12").  Whatever follows the last newline is cut off the file, so the next
+     * append starts a line of its own.
+     */
+    private void load() throws IOException {
+        long complete = 0;
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            StringBuilder line = new StringBuilder(80);
+            long position = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b != '\n') {
+                    line.append((char) b);
+                    continue;
+                }
+                complete = position;
+                int space = line.indexOf(" ");
+                if (space > 0) {
+                    try {
+                        ids.put(line.substring(0, space), Long.parseLong(line.substring(space + 1).trim()));
+                    } catch (NumberFormatException e) {
+                        /* not a line this cache wrote */
+                    }
+                }
+                line.setLength(0);
+            }
+        } finally {
+            in.close();
+        }
+
+        if (complete < file.length()) {
+            RandomAccessFile truncate = new RandomAccessFile(file, "rw");
+            try {
+                truncate.setLength(complete);
+            } finally {
+                truncate.close();
+            }
+        }
+    }
+
+    private static void append(StringBuilder builder, String name, String value) {
+        builder.append(name).append('=');
+        if (value != null) {
+            builder.append(value.length()).append(':').append(value);
+        }
+        builder.append('\n');
+    }
+
+    private static String coordinate(Double value) {
+        return value == null ? null : String.format(Locale.US, "%.6f", value);
+    }
+
+    private static String address(String value) {
+        String s = whitespace(value);
+        return s == null ? null : s.toLowerCase(Locale.US);
+    }
+
+    private static String whitespace(String value) {
+        if (value == null) {
+            return null;
+        }
+        String s = value.trim().replaceAll("\\s+", " ");
+        return s.length() == 0 ? null : s;
+    }
+}
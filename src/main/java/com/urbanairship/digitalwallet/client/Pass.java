@@ -1,14 +1,19 @@
 package com.urbanairship.digitalwallet.client;
 
-import com.google.gson.Gson;
 import com.urbanairship.digitalwallet.client.data.LocationInfo;
+import com.urbanairship.digitalwallet.client.exception.InvalidRequestException;
+import com.urbanairship.digitalwallet.client.exception.NotFoundException;
+import com.urbanairship.digitalwallet.client.util.LongSet;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.Writer;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /*
     * Method      Path                            Description
@@ -60,6 +65,11 @@ public class Pass extends PassToolsClient {
     private static final String missingExternalId = "please pass a valid external id in!";
     private static final String missingTagsError = "please pass in a valid list of tags";
     private static final String missingExternalTemplateIdError = "please pass a valid external template id in!";
+    private static final String duplicateExternalIdError = "already exists";   /* in the 400 a taken external id gets */
+    private static final String missingPassIdsError = "please pass a valid collection of pass ids in!";
+    private static final String missingLocationsError = "please pass a valid list of locations in!";
+
+    private static final PassExistenceCache knownPasses = new PassExistenceCache(PassTools.externalIdCacheSize, PassTools.externalIdCacheSeconds);
 
     /***********
      * constructors
@@ -121,6 +131,10 @@ public class Pass extends PassToolsClient {
      * @return          A list of tags that the specified pass is a member of.
      */
     public static List<Tag> getTags(long passId) {
+        TagIndex index = PassTools.tagIndex;
+        if (index != null) {
+            return index.getTags(passId);
+        }
         return getTagsInternal(getBaseUrl(passId));
     }
 
@@ -132,6 +146,11 @@ public class Pass extends PassToolsClient {
      */
     public static List<Tag> getTags(String externalId) {
         checkNotNull(externalId, missingExternalId);
+        TagIndex index = PassTools.tagIndex;
+        Long passId = knownPasses.passId(externalId);
+        if (index != null && passId != null) {
+            return index.getTags(passId);
+        }
         return getTagsInternal(getBaseUrl(externalId));
     }
 
@@ -145,7 +164,9 @@ public class Pass extends PassToolsClient {
      */
     public static List<String> addTags(long passId, List<String> tags) {
         checkNotNull(tags, missingTagsError);
-        return addTagsInternal(getBaseUrl(passId), tags);
+        List<String> added = addTagsInternal(getBaseUrl(passId), tags);
+        indexTags(passId, tags);
+        return added;
     }
 
     /**
@@ -159,7 +180,9 @@ public class Pass extends PassToolsClient {
     public static List<String> addTags(String externalId, List<String> tags) {
         checkNotNull(externalId, missingExternalId);
         checkNotNull(tags, missingTagsError);
-        return addTagsInternal(getBaseUrl(externalId), tags);
+        List<String> added = addTagsInternal(getBaseUrl(externalId), tags);
+        indexTags(externalId, tags);
+        return added;
     }
 
     /**
@@ -172,7 +195,9 @@ public class Pass extends PassToolsClient {
      */
     public static List<String> addTag(long passId, String tag) {
         checkNotNull(tag, missingTagsError);
-        return addTagInternal(getBaseUrl(passId), tag);
+        List<String> added = addTagInternal(getBaseUrl(passId), tag);
+        indexTags(passId, Collections.singletonList(tag));
+        return added;
     }
 
     /**
@@ -186,7 +211,9 @@ public class Pass extends PassToolsClient {
     public static List<String> addTag(String externalId, String tag) {
         checkNotNull(externalId, missingExternalId);
         checkNotNull(tag, missingTagsError);
-        return addTagInternal(getBaseUrl(externalId), tag);
+        List<String> added = addTagInternal(getBaseUrl(externalId), tag);
+        indexTags(externalId, Collections.singletonList(tag));
+        return added;
     }
 
     /**
@@ -233,6 +260,48 @@ public class Pass extends PassToolsClient {
         return createInternal(getBaseUrl(templateExternalId) + "/id/" + passExternalId, passFields);
     }
 
+    /**
+     * Create the pass if there's no pass with this external id yet, otherwise update it.
+     * External ids seen by earlier calls are remembered, so a pass known to exist takes one update
+     * and a pass known not to exist takes one create.  Unknown ids are tried as an update first.
+     *
+     * @param templateId    Template to create the pass on if it doesn't exist.
+     * @param externalId    External ID of the pass.
+     * @param fields        Fields for the pass.
+     * @return              The created or updated pass.
+     */
+    public static Pass upsert(long templateId, String externalId, Map fields) {
+        checkNotNull(externalId, missingExternalId);
+        checkNotNull(fields, missingPassFieldsError);
+
+        Boolean exists = knownPasses.exists(externalId);
+        if (exists == null || exists) {
+            try {
+                return update(externalId, fields);
+            } catch (RuntimeException e) {
+                if (!(e.getCause() instanceof NotFoundException)) {
+                    throw e;
+                }
+            }
+            return create(templateId, externalId, fields);
+        }
+
+        try {
+            return create(templateId, externalId, fields);
+        } catch (RuntimeException e) {
+            /* created somewhere else since we saw it missing; any other refusal is the caller's to see */
+            if (!(e.getCause() instanceof InvalidRequestException) || e.getCause().getMessage() == null
+                    || !e.getCause().getMessage().contains(duplicateExternalIdError)) {
+                throw e;
+            }
+            try {
+                return update(externalId, fields);
+            } catch (RuntimeException updateFailed) {
+                throw e;
+            }
+        }
+    }
+
     /**
      * Update the specified pass.
      *
@@ -251,7 +320,9 @@ public class Pass extends PassToolsClient {
             Map formFields = new HashMap<String, Object>();
             formFields.put("json", jsonObj);
 
-            return new Pass(put(url, formFields));
+            Pass pass = new Pass(put(url, formFields));
+            passChanged(passId);
+            return pass;
         } catch (RuntimeException rte) {
             throw rte;
         } catch (Exception e) {
@@ -278,9 +349,15 @@ public class Pass extends PassToolsClient {
             Map formFields = new HashMap<String, Object>();
             formFields.put("json", jsonObj);
 
-            return new Pass(put(url, formFields));
+            Pass pass = new Pass(put(url, formFields));
+            found(pass);
+            passChanged(pass.getPassId());
+            return pass;
         } catch (RuntimeException rte) {
             throw rte;
+        } catch (NotFoundException e) {
+            knownPasses.missing(externalId);
+            throw new RuntimeException(e);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -307,6 +384,7 @@ public class Pass extends PassToolsClient {
             PassToolsResponse response = put(url, formFields);
             JSONObject jsonObjResponse = response.getBodyAsJSONObject();
             pass.url = (String) jsonObjResponse.get("url");
+            passChanged(pass.passId);
         } catch (RuntimeException rte) {
             throw rte;
         } catch (Exception e) {
@@ -346,14 +424,76 @@ public class Pass extends PassToolsClient {
             String url = getBaseUrl(externalId);
             PassToolsResponse response = get(url);
 
-            return new Pass(response.getBodyAsJSONObject());
+            Pass pass = new Pass(response.getBodyAsJSONObject());
+            found(pass);
+            return pass;
         } catch (RuntimeException rte) {
             throw rte;
+        } catch (NotFoundException e) {
+            knownPasses.missing(externalId);
+            throw new RuntimeException(e);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Get the specified passes, fetched concurrently.  Repeated ids are only fetched once.
+     *
+     * @param passIds   Ids of the passes you want to get.
+     * @return          the passes, and an error for each pass that couldn't be fetched, in the order of passIds.
+     */
+    public static BulkResult<Long, Pass> getAll(Collection<Long> passIds) {
+        checkNotNull(passIds, missingPassIdsError);
+
+        Map<Long, Callable<Pass>> calls = new LinkedHashMap<Long, Callable<Pass>>();
+        for (final Long passId : passIds) {
+            checkNotNull(passId, missingPassIdsError);
+            if (!calls.containsKey(passId)) {
+                calls.put(passId, new Callable<Pass>() {
+                    public Pass call() {
+                        return get(passId);
+                    }
+                });
+            }
+        }
+        return executeAll(calls);
+    }
+
+    /**
+     * Get the specified passes, fetched concurrently.
+     *
+     * @param passIds   Ids of the passes you want to get, such as Tag.getPassIds or a set built from them.
+     * @return          the passes, and an error for each pass that couldn't be fetched, in ascending id order.
+     */
+    public static BulkResult<Long, Pass> getAll(LongSet passIds) {
+        checkNotNull(passIds, missingPassIdsError);
+        return getAll(passIds.toList());
+    }
+
+    /**
+     * Get the specified passes by external id, fetched concurrently.  Repeated ids are only fetched once.
+     *
+     * @param externalIds   external ids of the passes you want to get.
+     * @return              the passes, and an error for each pass that couldn't be fetched, in the order of externalIds.
+     */
+    public static BulkResult<String, Pass> getAllByExternalId(Collection<String> externalIds) {
+        checkNotNull(externalIds, missingExternalId);
+
+        Map<String, Callable<Pass>> calls = new LinkedHashMap<String, Callable<Pass>>();
+        for (final String externalId : externalIds) {
+            checkNotNull(externalId, missingExternalId);
+            if (!calls.containsKey(externalId)) {
+                calls.put(externalId, new Callable<Pass>() {
+                    public Pass call() {
+                        return getPass(externalId);
+                    }
+                });
+            }
+        }
+        return executeAll(calls);
+    }
+
     /**
      * Download the specified pass.  Apple passes only.
      *
@@ -361,7 +501,7 @@ public class Pass extends PassToolsClient {
      * @param to        File you want the pass written to.
      */
     public static void downloadPass(long passId, File to) {
-        downloadPassInternal(getBaseUrl(passId) + "/download", to);
+        downloadPassStored(passId, getBaseUrl(passId) + "/download", to);
     }
 
     /**
@@ -372,7 +512,7 @@ public class Pass extends PassToolsClient {
      */
     public static void downloadPass(String externalId, File to) {
         checkNotNull(externalId, missingExternalId);
-        downloadPassInternal(getBaseUrl(externalId) + "/download", to);
+        downloadPassStored(knownPasses.passId(externalId), getBaseUrl(externalId) + "/download", to);
     }
 
     /**
@@ -383,7 +523,13 @@ public class Pass extends PassToolsClient {
     public static void delete(long passId) {
         try {
             String url = getBaseUrl(passId);
-            PassToolsResponse response = delete(url);
+            delete(url).close();
+            knownPasses.missing(passId);
+            passChanged(passId);
+            TagIndex index = PassTools.tagIndex;
+            if (index != null) {
+                index.passDeleted(passId, null);
+            }
         } catch (RuntimeException rte) {
             throw rte;
         } catch (Exception e) {
@@ -401,7 +547,14 @@ public class Pass extends PassToolsClient {
 
         try {
             String url = getBaseUrl(externalId);
-            PassToolsResponse response = delete(url);
+            Long passId = knownPasses.passId(externalId);
+            delete(url).close();
+            knownPasses.missing(externalId);
+            passChanged(passId);
+            TagIndex index = PassTools.tagIndex;
+            if (index != null) {
+                index.passDeleted(passId, externalId);
+            }
         } catch (RuntimeException rte) {
             throw rte;
         } catch (Exception e) {
@@ -521,7 +674,9 @@ public class Pass extends PassToolsClient {
      * ]
      */
     public static JSONArray addLocations(long passId, List<LocationInfo> locationInfo) {
-        return addLocationsInternal(getBaseUrl(passId) + "/locations", locationInfo);
+        JSONArray locations = addLocationsInternal(getBaseUrl(passId) + "/locations", locationInfo);
+        passChanged(passId);
+        return locations;
     }
 
     /**
@@ -561,7 +716,45 @@ public class Pass extends PassToolsClient {
      */
     public static JSONArray addLocations(String externalId, List<LocationInfo> locationInfo) {
         checkNotNull(externalId, missingExternalId);
-        return addLocationsInternal(getBaseUrl(externalId) + "/locations", locationInfo);
+        JSONArray locations = addLocationsInternal(getBaseUrl(externalId) + "/locations", locationInfo);
+        passChanged(knownPasses.passId(externalId));
+        return locations;
+    }
+
+    /**
+     * Add the same locations to each of the specified passes, concurrently.
+     * The locations are serialized once and the same request body is sent for every pass.
+     *
+     * @param passIds       Passes you want to add the locations to.  Repeated ids are only sent once.
+     * @param locationInfo  Locations you want added.
+     * @return              For each pass, the list of locations added as addLocations(passId, ..) returns it,
+     *                      or the error that stopped them being added.
+     */
+    public static BulkResult<Long, JSONArray> addLocations(Collection<Long> passIds, List<LocationInfo> locationInfo) {
+        checkNotNull(passIds, missingPassIdsError);
+        checkNotNull(locationInfo, missingLocationsError);
+
+        final byte[] encoded;
+        try {
+            encoded = JSONFormEntity.encode(locationsBody(locationInfo));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        Map<Long, Callable<JSONArray>> calls = new LinkedHashMap<Long, Callable<JSONArray>>();
+        for (final Long passId : passIds) {
+            checkNotNull(passId, missingPassIdsError);
+            if (!calls.containsKey(passId)) {
+                calls.put(passId, new Callable<JSONArray>() {
+                    public JSONArray call() throws Exception {
+                        JSONArray locations = postJSON(getBaseUrl(passId) + "/locations", encoded).getBodyAsJSONArray();
+                        passChanged(passId);
+                        return locations;
+                    }
+                });
+            }
+        }
+        return executeAll(calls);
     }
 
     /**
@@ -573,7 +766,8 @@ public class Pass extends PassToolsClient {
     public static void deleteLocation(long passId, long passLocationId) {
         try {
             String url = getBaseUrl(passId) + "/location/" + String.valueOf(passLocationId);
-            delete(url);
+            delete(url).close();
+            passChanged(passId);
         } catch (RuntimeException rte) {
             throw rte;
         } catch (Exception e) {
@@ -592,7 +786,8 @@ public class Pass extends PassToolsClient {
 
         try {
             String url = getBaseUrl(externalId) + "/location/" + String.valueOf(passLocationId);
-            delete(url);
+            delete(url).close();
+            passChanged(knownPasses.passId(externalId));
         } catch (RuntimeException rte) {
             throw rte;
         } catch (Exception e) {
@@ -675,6 +870,57 @@ public class Pass extends PassToolsClient {
         return PassTools.API_BASE + "/pass/id/" + externalId;
     }
 
+    /* from PassTools.passStore when it has the pass, otherwise downloaded and then stored there */
+    private static void downloadPassStored(Long passId, String url, File to) {
+        PassStore store = PassTools.passStore;
+        if (store == null || passId == null) {
+            downloadPassInternal(url, to);
+            return;
+        }
+        if (to == null || !to.exists()) {
+            throw new IllegalArgumentException("please pass a valid file in!");
+        }
+
+        try {
+            if (!store.get(passId, to)) {
+                long generation = store.getGeneration();   /* a change made while downloading leaves it unstored */
+                downloadPassInternal(url, to);
+                store.put(passId, to, generation);
+            }
+        } catch (RuntimeException rte) {
+            throw rte;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /* the id of the pass with this external id, if this client has seen it lately */
+    static Long knownPassId(String externalId) {
+        return knownPasses.passId(externalId);
+    }
+
+    /* the pass's stored bundle, if any, no longer matches it; a null id (a pass changed by an
+       external id this client can't map) drops every stored bundle */
+    private static void passChanged(Long passId) {
+        PassStore store = PassTools.passStore;
+        if (store == null) {
+            return;
+        }
+        if (passId != null) {
+            store.invalidate(passId);
+        } else {
+            store.clear();
+        }
+    }
+
+    /* passes of a template or tag changed, which ones isn't known here */
+    static void passesChanged() {
+        PassStore store = PassTools.passStore;
+        if (store != null) {
+            store.clear();
+        }
+    }
+
     private static void downloadPassInternal(String url, File to) {
         if (to == null || !to.exists()) {
             throw new IllegalArgumentException("please pass a valid file in!");
@@ -682,17 +928,21 @@ public class Pass extends PassToolsClient {
 
         try {
             PassToolsResponse response = get(url);
-            InputStream is = response.response.getEntity().getContent();
-            FileOutputStream fos = new FileOutputStream(to);
-
             try {
-                int c;
-                while ((c = is.read()) != -1) {
-                    fos.write(c);
+                InputStream is = response.response.getEntity().getContent();
+                FileOutputStream fos = new FileOutputStream(to);
+
+                try {
+                    int c;
+                    while ((c = is.read()) != -1) {
+                        fos.write(c);
+                    }
+                } finally {
+                    is.close();
+                    fos.close();
                 }
             } finally {
-                is.close();
-                fos.close();
+                response.close();
             }
         } catch (RuntimeException rte) {
             throw rte;
@@ -701,20 +951,10 @@ public class Pass extends PassToolsClient {
         }
     }
 
-    @SuppressWarnings("unchecked")
     private static JSONArray addLocationsInternal(String url, List<LocationInfo> locationInfo) {
+        checkNotNull(locationInfo, missingLocationsError);
         try {
-            JSONArray array = new JSONArray();
-            Gson gson = new Gson();
-
-            for (LocationInfo currentLocation : locationInfo) {
-                array.add(gson.toJson(currentLocation));
-            }
-
-            Map formFields = new HashMap<String, JSONArray>();
-            formFields.put("json", array);
-
-            PassToolsResponse response = post(url, formFields);
+            PassToolsResponse response = postJSON(url, locationsBody(locationInfo));
 
             return response.getBodyAsJSONArray();
         } catch (RuntimeException rte) {
@@ -724,7 +964,44 @@ public class Pass extends PassToolsClient {
         }
     }
 
+    /* the locations are written straight into the request body, without building JSON objects first */
+    private static JSONFormEntity.Body locationsBody(final List<LocationInfo> locationInfo) {
+        return new JSONFormEntity.Body() {
+            public void writeJSON(Writer out) throws IOException {
+                LocationInfo.writeJSON(locationInfo, out);
+            }
+        };
+    }
+
+    private static void found(Pass pass) {
+        knownPasses.found(pass);
+        TagIndex index = PassTools.tagIndex;
+        if (index != null && pass.getExternalId() != null && pass.getPassId() != null) {
+            index.passFound(pass.getExternalId(), pass.getPassId());
+        }
+    }
+
+    private static void indexTags(long passId, List<String> tags) {
+        TagIndex index = PassTools.tagIndex;
+        if (index != null) {
+            index.added(passId, tags);
+        }
+    }
+
+    private static void indexTags(String externalId, List<String> tags) {
+        TagIndex index = PassTools.tagIndex;
+        if (index != null) {
+            Long passId = knownPasses.passId(externalId);
+            if (passId != null) {
+                index.added(passId, tags);
+            } else {
+                index.added(externalId, tags);   /* applied when the pass is next seen, instead of looking it up now */
+            }
+        }
+    }
+
     private static List<Tag> getTagsInternal(String url) {
+        url += "/tags";
         try {
             PassToolsResponse response = get(url);
             JSONObject json = response.getBodyAsJSONObject();
@@ -788,7 +1065,9 @@ public class Pass extends PassToolsClient {
 
             Map formFields = new HashMap<String, Object>();
             formFields.put("json", jsonObj);
-            return new Pass(post(url, formFields));
+            Pass pass = new Pass(post(url, formFields));
+            found(pass);
+            return pass;
         } catch (RuntimeException rte) {
             throw rte;
         } catch (Exception e) {
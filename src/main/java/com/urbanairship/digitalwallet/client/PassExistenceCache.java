@@ -0,0 +1,66 @@
+package com.urbanairship.digitalwallet.client;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Which pass external ids are known to exist on the server, and which are known not to.
+ * Kept current by the Pass calls that create, find, update and delete passes; anything else
+ * changing passes behind our back is caught when a call based on it fails.
+ */
+class PassExistenceCache {
+    private static final Long MISSING = -1L;
+
+    private final Cache<String, Long> byExternalId;
+    private final Cache<Long, String> byPassId;
+
+    PassExistenceCache(long maximumSize, long ttlSeconds) {
+        byExternalId = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).build();
+        byPassId = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).build();
+    }
+
+    /**
+     * @return true if the pass exists, false if it doesn't, null if we don't know.
+     */
+    Boolean exists(String externalId) {
+        Long passId = byExternalId.getIfPresent(externalId);
+        return passId == null ? null : !MISSING.equals(passId);
+    }
+
+    /**
+     * @return the id of the pass with this external id, null if it isn't known.
+     */
+    Long passId(String externalId) {
+        Long passId = byExternalId.getIfPresent(externalId);
+        return MISSING.equals(passId) ? null : passId;
+    }
+
+    void found(Pass pass) {
+        if (pass.getExternalId() != null && pass.getPassId() != null) {
+            byExternalId.put(pass.getExternalId(), pass.getPassId());
+            byPassId.put(pass.getPassId(), pass.getExternalId());
+        }
+    }
+
+    void missing(String externalId) {
+        Long passId = byExternalId.getIfPresent(externalId);
+        if (passId != null) {
+            byPassId.invalidate(passId);
+        }
+        byExternalId.put(externalId, MISSING);
+    }
+
+    void missing(long passId) {
+        String externalId = byPassId.getIfPresent(passId);
+        if (externalId != null) {
+            missing(externalId);
+        }
+    }
+
+    void clear() {
+        byExternalId.invalidateAll();
+        byPassId.invalidateAll();
+    }
+}
@@ -0,0 +1,169 @@
+package com.urbanairship.digitalwallet.client;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/*
+ * Builds the Apple pass.json that Pass.viewPassbookJSONPass would return, from a template already at hand
+ * (a TemplateMirror keeps them) and a pass's fields, without calling the API.  Good for previews.
+ *
+ * The header fields (logo_text, colors, barcode) come from the template, overridden by the pass's headers.
+ * Fields without a fieldType are left out, the rest go into <fieldType>Fields under the template's project
+ * type in field order.  Locations added to a pass are not known locally and are left out, and so are the
+ * identifiers the API signs the pass with (passTypeIdentifier, teamIdentifier, webServiceURL, authenticationToken).
+ */
+public class PassRenderer {
+    private static final String missingTemplateError = "please pass a valid template in!";
+    private static final String missingPassError = "please input a valid Pass!";
+
+    private static final Comparator<Map> byOrder = new Comparator<Map>() {
+        public int compare(Map a, Map b) {
+            long left = a.get("order") instanceof Number ? ((Number) a.get("order")).longValue() : 0;
+            long right = b.get("order") instanceof Number ? ((Number) b.get("order")).longValue() : 0;
+            return left < right ? -1 : (left == right ? 0 : 1);
+        }
+    };
+
+    /**
+     * Render a pass as fetched from the API.
+     *
+     * @param template  the pass's template.
+     * @param pass      the pass, with the fields and headers it was fetched with.
+     * @return          the pass.json.
+     */
+    public static JSONObject render(Template template, Pass pass) {
+        checkNotNull(pass, missingPassError);
+        checkNotNull(pass.getPassId(), missingPassError);
+        return render(template, pass.getPassId(), pass.getFields(), pass.getHeaders());
+    }
+
+    /**
+     * Render a pass from the fields it would be created or updated with.
+     *
+     * @param template  the pass's template.
+     * @param passId    id of the pass, its serial number.
+     * @param fields    field values or field objects, as given to Pass.create, merged over the template's fieldsModel.
+     * @return          the pass.json.
+     */
+    public static JSONObject render(Template template, long passId, Map fields) {
+        return render(template, passId, fields, null);
+    }
+
+    /**
+     * Render a pass from the fields and headers it would be created or updated with.
+     *
+     * @param template      the pass's template.
+     * @param passId        id of the pass, its serial number.
+     * @param fields        field values or field objects, merged over the template's fieldsModel.
+     * @param passHeaders   header values or header objects, merged over the template's headers, or null.
+     * @return              the pass.json.
+     */
+    @SuppressWarnings("unchecked")
+    public static JSONObject render(Template template, long passId, Map fields, Map passHeaders) {
+        checkNotNull(template, missingTemplateError);
+        Map headers = merge(template.getTemplateHeader(), passHeaders);
+
+        JSONObject json = new JSONObject();
+        json.put("formatVersion", 1L);
+        json.put("serialNumber", String.valueOf(passId));
+        json.put("description", template.getDescription());
+        json.put("organizationName", template.getName());
+        putHeader(json, "logoText", headers, "logo_text");
+        putHeader(json, "foregroundColor", headers, "foreground_color");
+        putHeader(json, "backgroundColor", headers, "background_color");
+        putHeader(json, "labelColor", headers, "label_color");
+
+        if (headers.get("barcode_value") != null) {
+            JSONObject barcode = new JSONObject();
+            putHeader(barcode, "message", headers, "barcode_value");
+            putHeader(barcode, "format", headers, "barcode_type");
+            putHeader(barcode, "messageEncoding", headers, "barcode_encoding");
+            putHeader(barcode, "altText", headers, "barcodeAltText");
+            json.put("barcode", barcode);
+        }
+
+        Map<String, List<Map>> sections = new LinkedHashMap<String, List<Map>>();
+        for (Object o : merge(template.getFieldsModel(), fields).entrySet()) {
+            Map.Entry entry = (Map.Entry) o;
+            if (!(entry.getValue() instanceof Map)) {
+                continue;
+            }
+            Map field = (Map) entry.getValue();
+            String section = (String) field.get("fieldType");
+            if (section == null) {
+                continue;
+            }
+            JSONObject rendered = new JSONObject();
+            rendered.put("key", entry.getKey());
+            rendered.put("label", field.get("label"));
+            rendered.put("value", field.get("value"));
+            if (field.get("changeMessage") != null && field.get("changeMessage").toString().length() > 0) {
+                rendered.put("changeMessage", field.get("changeMessage"));
+            }
+            rendered.put("order", field.get("order"));
+            List<Map> list = sections.get(section + "Fields");
+            if (list == null) {
+                list = new ArrayList<Map>();
+                sections.put(section + "Fields", list);
+            }
+            list.add(rendered);
+        }
+
+        JSONObject style = new JSONObject();
+        for (Map.Entry<String, List<Map>> section : sections.entrySet()) {
+            Collections.sort(section.getValue(), byOrder);
+            JSONArray array = new JSONArray();
+            for (Map field : section.getValue()) {
+                field.remove("order");
+                array.add(field);
+            }
+            style.put(section.getKey(), array);
+        }
+        json.put(template.getProjectType() == null ? "generic" : template.getProjectType(), style);
+        return json;
+    }
+
+    /* as the API does it: values that are objects are merged key by key, plain values replace the "value" */
+    @SuppressWarnings("unchecked")
+    private static Map merge(Map current, Map updates) {
+        Map merged = new JSONObject();
+        if (current != null) {
+            merged.putAll(current);
+        }
+        if (updates == null) {
+            return merged;
+        }
+        for (Object o : updates.entrySet()) {
+            Map.Entry entry = (Map.Entry) o;
+            Object existing = merged.get(entry.getKey());
+            JSONObject field = new JSONObject();
+            if (existing instanceof Map) {
+                field.putAll((Map) existing);
+            }
+            if (entry.getValue() instanceof Map) {
+                field.putAll((Map) entry.getValue());
+            } else {
+                field.put("value", entry.getValue());
+            }
+            merged.put(entry.getKey(), field);
+        }
+        return merged;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void putHeader(JSONObject json, String key, Map headers, String headerKey) {
+        Object header = headers.get(headerKey);
+        if (header instanceof Map && ((Map) header).get("value") != null) {
+            json.put(key, ((Map) header).get("value"));
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package com.urbanairship.digitalwallet.client;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/*
+ * Downloaded .pkpass bundles kept on disk, so Pass.downloadPass can serve a pass it has fetched before
+ * without transferring it again.
+ *
+ * Each file in a bundle is stored once under the SHA-256 of its contents, so the logo and icons that every
+ * pass of a template carries take the space of one copy.  A pass is kept as the list of its files and a
+ * content hash over them.  When the files take more than maxBytes, the passes used longest ago are dropped
+ * along with the files no other pass uses.  The bundles written back are zipped afresh: the same files,
+ * not the same bytes as the download.
+ *
+ * Pass.update, delete and the location calls drop the pass they change.  By an external id this client
+ * hasn't seen under it, which pass that is isn't known, so they drop every pass, as Template.updateTemplate
+ * and Tag.updatePasses do.  A download that a drop overtakes isn't
+ * stored.  A pass changed any other way (by another client, or by a tag update the API finishes later) is
+ * only downloaded again once maxAgeMillis has passed, a day unless set.
+ *
+ *      PassTools.passStore = new PassStore(new File("/var/cache/myapp/passes"), 512 * 1024 * 1024);
+ *      Pass.downloadPass(passId, file);        // from disk after the first time
+ */
+public class PassStore {
+    public static final long DEFAULT_MAX_AGE_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final String missingDirectoryError = "please pass a valid directory in!";
+    private static final int MAX_INVALIDATED = 4096;   /* passes whose drop is remembered, past that it counts as a clear */
+
+    private final File blobs;
+    private final File passes;
+    private final long maxBytes;
+    private volatile long maxAgeMillis = DEFAULT_MAX_AGE_MILLIS;
+
+    private final LinkedHashMap<Long, Bundle> bundles = new LinkedHashMap<Long, Bundle>(16, 0.75f, true);   /* least recently used first */
+    private final Map<String, Blob> blobsByHash = new HashMap<String, Blob>();
+    private final Map<Long, Long> invalidated = new HashMap<Long, Long>();   /* generation each pass was last dropped at */
+    private long generation;
+    private long clearedAt;
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * Open the store, reading the passes already in the directory.
+     *
+     * @param directory where the files are kept, created if missing.
+     * @param maxBytes  most space the stored files may take.
+     */
+    public PassStore(File directory, long maxBytes) {
+        checkNotNull(directory, missingDirectoryError);
+        this.blobs = new File(directory, "blobs");
+        this.passes = new File(directory, "passes");
+        this.maxBytes = maxBytes;
+        try {
+            if (!blobs.isDirectory() && !blobs.mkdirs() || !passes.isDirectory() && !passes.mkdirs()) {
+                throw new IOException("could not create " + directory);
+            }
+            load();
+        } catch (RuntimeException rte) {
+            throw rte;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Passes stored longer than this are downloaded again, 0 keeps them until they are changed or evicted.
+     * DEFAULT_MAX_AGE_MILLIS unless set.
+     */
+    public void setMaxAgeMillis(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Write the stored bundle of a pass.
+     *
+     * @param passId    the pass.
+     * @param to        file to write the .pkpass to.
+     * @return          false, leaving the file alone, if the pass isn't stored or is too old.
+     */
+    public boolean get(long passId, File to) throws IOException {
+        Bundle bundle;
+        List<InputStream> ins = new ArrayList<InputStream>();
+        synchronized (this) {
+            bundle = bundles.get(passId);
+            long maxAge = maxAgeMillis;
+            if (bundle != null && maxAge > 0 && System.currentTimeMillis() - bundle.stored > maxAge) {
+                remove(passId);
+                bundle = null;
+            }
+            if (bundle != null) {
+                /* opened while the files are held, so a drop after the lock is let go doesn't take them away */
+                try {
+                    for (Entry entry : bundle.entries) {
+                        ins.add(new FileInputStream(blobFile(entry.hash)));
+                    }
+                } catch (FileNotFoundException e) {
+                    closeAll(ins);
+                    remove(passId);   /* a file was deleted from under the store */
+                    bundle = null;
+                }
+            }
+            if (bundle == null) {
+                misses++;
+                return false;
+            }
+            hits++;
+        }
+
+        try {
+            ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(to));
+            try {
+                byte[] buffer = new byte[8192];
+                for (int i = 0; i < ins.size(); i++) {
+                    zip.putNextEntry(new ZipEntry(bundle.entries.get(i).name));
+                    InputStream in = ins.get(i);
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        zip.write(buffer, 0, read);
+                    }
+                    zip.closeEntry();
+                }
+            } finally {
+                zip.close();
+            }
+        } finally {
+            closeAll(ins);
+        }
+        new File(passes, passId + ".pass").setLastModified(System.currentTimeMillis());   /* keeps the use order over a restart */
+        return true;
+    }
+
+    /**
+     * @return the generation to hand to put for a download started now.
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Store the bundle of a pass, in place of any stored before.
+     *
+     * @param passId    the pass.
+     * @param pkpass    the downloaded .pkpass.
+     * @return          the content hash of the bundle.
+     */
+    public String put(long passId, File pkpass) throws IOException {
+        return put(passId, pkpass, getGeneration());
+    }
+
+    /**
+     * Store the bundle of a pass, unless the pass has been dropped since the download started.
+     *
+     * @param passId        the pass.
+     * @param pkpass        the downloaded .pkpass.
+     * @param generation    getGeneration(), read before the download started.
+     * @return              the content hash of the bundle, or null if it was out of date and not stored.
+     * @throws IOException  if the file isn't a .pkpass, one with no files in it included.
+     */
+    public String put(long passId, File pkpass, long generation) throws IOException {
+        /* the files are read and written before the lock is taken, so gets and puts of other passes don't wait on them */
+        List<Entry> entries = new ArrayList<Entry>();
+        Map<String, byte[]> contents = new HashMap<String, byte[]>();
+        ZipInputStream zip = new ZipInputStream(new FileInputStream(pkpass));
+        try {
+            ZipEntry zipEntry;
+            while ((zipEntry = zip.getNextEntry()) != null) {
+                if (zipEntry.isDirectory()) {
+                    continue;
+                }
+                byte[] content = readAll(zip);
+                String hash = DigestUtils.sha256Hex(content);
+                if (!contents.containsKey(hash) && !blobFile(hash).exists()) {
+                    writeAside(blobFile(hash), content);
+                }
+                contents.put(hash, content);
+                entries.add(new Entry(zipEntry.getName(), hash, content.length));
+            }
+        } finally {
+            zip.close();
+        }
+        if (entries.isEmpty()) {
+            throw new IOException("not a .pkpass, it has no files: " + pkpass);
+        }
+
+        Bundle bundle = new Bundle(contentHash(entries), System.currentTimeMillis(), entries);
+        StringBuilder manifest = new StringBuilder();
+        manifest.append(bundle.hash).append(' ').append(bundle.stored).append('\n');
+        for (Entry entry : entries) {
+            manifest.append(entry.hash).append(' ').append(entry.size).append(' ').append(entry.name).append('\n');
+        }
+
+        synchronized (this) {
+            Long dropped = invalidated.get(passId);
+            if (generation < clearedAt || dropped != null && generation < dropped) {
+                for (String hash : contents.keySet()) {
+                    if (!blobsByHash.containsKey(hash)) {
+                        blobFile(hash).delete();
+                    }
+                }
+                return null;
+            }
+            /* a file no pass held may have been deleted since it was written */
+            for (Map.Entry<String, byte[]> content : contents.entrySet()) {
+                if (!blobsByHash.containsKey(content.getKey()) && !blobFile(content.getKey()).exists()) {
+                    writeAside(blobFile(content.getKey()), content.getValue());
+                }
+            }
+            writeAside(new File(passes, passId + ".pass"), manifest.toString().getBytes("UTF-8"));
+            Bundle previous = bundles.remove(passId);
+            add(passId, bundle);
+            if (previous != null) {
+                release(previous);   /* after the new bundle holds the files the two share */
+            }
+            evict();
+            return bundle.hash;
+        }
+    }
+
+    /**
+     * @return the content hash of the pass's stored bundle, or null if it isn't stored.
+     */
+    public synchronized String getContentHash(long passId) {
+        Bundle bundle = bundles.get(passId);
+        return bundle == null ? null : bundle.hash;
+    }
+
+    /**
+     * Drop the stored bundle of a pass, so it is downloaded again next time.
+     */
+    public synchronized void invalidate(long passId) {
+        remove(passId);
+        invalidated.put(passId, ++generation);
+        if (invalidated.size() > MAX_INVALIDATED) {
+            invalidated.clear();
+            clearedAt = generation;
+        }
+    }
+
+    /**
+     * Drop every stored bundle, so each pass is downloaded again next time.
+     */
+    public synchronized void clear() {
+        while (!bundles.isEmpty()) {
+            remove(bundles.keySet().iterator().next());
+        }
+        invalidated.clear();
+        clearedAt = ++generation;
+    }
+
+    /**
+     * @return the space the stored files take.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return bundles.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /* read the stored passes, most recently used last, and drop files no pass refers to */
+    private void load() throws IOException {
+        File[] manifests = passes.listFiles();
+        Arrays.sort(manifests, new Comparator<File>() {
+            public int compare(File a, File b) {
+                long left = a.lastModified();
+                long right = b.lastModified();
+                return left < right ? -1 : (left == right ? 0 : 1);
+            }
+        });
+        for (File manifest : manifests) {
+            String name = manifest.getName();
+            if (!name.endsWith(".pass")) {
+                manifest.delete();   /* left over from a write that didn't finish */
+                continue;
+            }
+            Bundle bundle = readManifest(manifest);
+            if (bundle == null) {
+                manifest.delete();
+                continue;
+            }
+            add(Long.parseLong(name.substring(0, name.length() - ".pass".length())), bundle);
+        }
+
+        File[] prefixes = blobs.listFiles();
+        for (File prefix : prefixes) {
+            File[] files = prefix.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (!blobsByHash.containsKey(file.getName())) {
+                    file.delete();
+                }
+            }
+        }
+        evict();
+    }
+
+    private Bundle readManifest(File manifest) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), "UTF-8"));
+        try {
+            String line = reader.readLine();
+            String[] header = line == null ? new String[0] : line.split(" ");
+            if (header.length != 2) {
+                return null;
+            }
+            List<Entry> entries = new ArrayList<Entry>();
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ", 3);
+                if (parts.length != 3 || !blobFile(parts[0]).exists()) {
+                    return null;
+                }
+                entries.add(new Entry(parts[2], parts[0], Long.parseLong(parts[1])));
+            }
+            return new Bundle(header[0], Long.parseLong(header[1]), entries);
+        } catch (NumberFormatException e) {
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void add(long passId, Bundle bundle) {
+        bundles.put(passId, bundle);
+        for (Entry entry : bundle.entries) {
+            Blob blob = blobsByHash.get(entry.hash);
+            if (blob == null) {
+                blob = new Blob(entry.size);
+                blobsByHash.put(entry.hash, blob);
+                bytes += entry.size;
+            }
+            blob.references++;
+        }
+    }
+
+    private void remove(long passId) {
+        Bundle bundle = bundles.remove(passId);
+        if (bundle != null) {
+            new File(passes, passId + ".pass").delete();
+            release(bundle);
+        }
+    }
+
+    /* drop the bundle's hold on its files, deleting those no other pass uses */
+    private void release(Bundle bundle) {
+        for (Entry entry : bundle.entries) {
+            Blob blob = blobsByHash.get(entry.hash);
+            if (blob != null && --blob.references == 0) {
+                blobsByHash.remove(entry.hash);
+                blobFile(entry.hash).delete();
+                bytes -= blob.size;
+            }
+        }
+    }
+
+    private void evict() {
+        while (bytes > maxBytes && !bundles.isEmpty()) {
+            remove(bundles.keySet().iterator().next());
+        }
+    }
+
+    private File blobFile(String hash) {
+        return new File(new File(blobs, hash.substring(0, 2)), hash);
+    }
+
+    /* the bundle's files by name and content, in order */
+    private static String contentHash(List<Entry> entries) {
+        StringBuilder builder = new StringBuilder();
+        for (Entry entry : entries) {
+            builder.append(entry.name).append('\u0000').append(entry.hash).append('\n');
+        }
+        return DigestUtils.sha256Hex(builder.toString());
+    }
+
+    /* write next to the file and rename over it, so a crash never leaves half a file */
+    private static void writeAside(File file, byte[] content) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("could not create " + parent);
+        }
+        File temp = File.createTempFile(file.getName(), ".tmp", parent);   /* puts of the same file may run at once */
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            file.delete();
+            if (!temp.renameTo(file)) {
+                throw new IOException("could not write " + file);
+            }
+        }
+    }
+
+    private static void closeAll(List<InputStream> ins) throws IOException {
+        for (InputStream in : ins) {
+            in.close();
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static class Bundle {
+        final String hash;
+        final long stored;
+        final List<Entry> entries;
+
+        Bundle(String hash, long stored, List<Entry> entries) {
+            this.hash = hash;
+            this.stored = stored;
+            this.entries = entries;
+        }
+    }
+
+    private static class Entry {
+        final String name;
+        final String hash;
+        final long size;
+
+        Entry(String name, String hash, long size) {
+            this.name = name;
+            this.hash = hash;
+            this.size = size;
+        }
+    }
+
+    private static class Blob {
+        final long size;
+        int references;
+
+        Blob(long size) {
+            this.size = size;
+        }
+    }
+}
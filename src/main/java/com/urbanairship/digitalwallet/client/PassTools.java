@@ -3,9 +3,53 @@ package com.urbanairship.digitalwallet.client;
 
 import org.apache.http.client.HttpClient;
 
+import java.security.KeyStore;
+import java.util.List;
+
 public abstract class PassTools {
     public static String API_BASE = "https://api.passtools.com/v1";
     public static final String VERSION = "1.2";
     public static String apiKey;    //this is your given secret key
     public static HttpClient client;        /* used for mock testing */
+
+    /*
+     * Connection settings, read when the shared http client is built.
+     * Call PassToolsClient.shutdown() after changing them to have them picked up.
+     */
+    public static KeyStore trustStore;              /* certificates trusted for https, null uses the JVM's default trust store */
+    public static boolean verifyHostname = true;    /* check the server certificate matches the API host */
+    public static int tlsSessionTimeout = 86400;    /* seconds a TLS session can be resumed for */
+    public static int maxConnections = 20;          /* size of the connection pool */
+    public static int warmUpConnections = 0;        /* connections opened when the client is built, see PassToolsSystem.warmUp */
+    public static int connectTimeout = 10000;       /* milliseconds to wait for a connection to open, 0 for no limit */
+    public static int socketTimeout = 60000;        /* milliseconds to wait for data from the server, 0 for no limit */
+    public static int connectionPoolTimeout = 10000;    /* milliseconds to wait for a free pooled connection, 0 for no limit */
+
+    /*
+     * When set, calls to API_BASE go instead to whichever of these base URLs has been answering fastest.
+     * Bases that keep failing are left out for a while, and every base's /system/status is checked now and then.
+     */
+    public static List<String> apiBases;
+    public static long apiBaseProbeMillis = 10000;  /* between checks of every base, read when apiBases changes */
+    public static long apiBaseEjectMillis = 30000;  /* a failing base is left out for, longer if it fails again when back */
+
+    /* How calls share the connections when they're all taken, see Priority.  Read on every call. */
+    public static int interactiveWeight = 4;        /* interactive calls let through per bulk call, while both are waiting */
+    public static int bulkWeight = 1;
+    public static double bulkMaxShare = 0.75;       /* most of the connections bulk calls can hold, leaving the rest for interactive calls */
+
+    public static double maxRequestsPerSecond = 0;  /* API calls are held back to this rate, 0 for no limit */
+    public static boolean coalesceGets = true;      /* identical GETs made at the same time share one request */
+    public static boolean hedgeGets = false;        /* a GET slower than most is sent again and the first answer is used */
+    public static double hedgePercentile = 95;      /* percentile of recent GET latency a GET is hedged after */
+    public static double hedgeBudget = 0.05;        /* most hedges sent, as a fraction of GETs */
+
+    /* Pass external ids known to exist or not, used by Pass.upsert.  Read when Pass is first used. */
+    public static long externalIdCacheSize = 100000;
+    public static long externalIdCacheSeconds = 3600;
+
+    public static LocationDedupeCache locationDedupeCache;     /* when set, Location.create returns the id of an identical location created before */
+    public static TagIndex tagIndex;    /* when set, answers Pass.getTags and is kept current by tag calls, see TagIndex */
+    public static PassStore passStore;    /* when set, Pass.downloadPass serves passes it has downloaded before from disk, see PassStore */
+    public static ResponseLeakListener responseLeakListener;   /* when set, told about responses garbage collected without being closed */
 }
@@ -3,22 +3,36 @@ package com.urbanairship.digitalwallet.client;
 
 import com.google.common.base.Preconditions;
 import com.urbanairship.digitalwallet.client.exception.*;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpMessage;
 import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
+import org.apache.http.StatusLine;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
-import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.message.BasicHttpResponse;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
@@ -26,15 +40,48 @@ import org.json.simple.JSONAware;
 import org.json.simple.JSONObject;
 
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
+import javax.net.ssl.TrustManagerFactory;
 import java.io.IOException;
+import java.net.URI;
 import java.net.URLEncoder;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class PassToolsClient {
+    private static volatile HttpClient sharedClient;
+    private static volatile ExecutorService sharedExecutor;
+    private static volatile EndpointRouter sharedRouter;
+    private static final RateLimiter rateLimiter = new RateLimiter();
+    private static final SingleFlight<String, BufferedResponse> inFlightGets = new SingleFlight<String, BufferedResponse>();
+    private static final ScheduledExecutorService deadlineTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "passtools-deadline");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    private static final PriorityScheduler scheduler = new PriorityScheduler();
+    private static final Hedger hedger = new Hedger();
+    private static final ExecutorService hedgeExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "passtools-hedge-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    private static final DateTimeFormatter dateTimeParser = ISODateTimeFormat.dateTimeParser();   /* joda formatters are thread safe */
 
     private static void handleAPIError(String responseBody, int responseCode) throws PassToolsException {
         switch (responseCode) {
@@ -42,6 +89,8 @@ public abstract class PassToolsClient {
                 throw new InvalidRequestException(responseBody);
             case 401:
                 throw new AuthenticationException(responseBody);
+            case 404:
+                throw new NotFoundException(responseBody);
             case 406:
                 throw new InvalidRequestException(responseBody);
             case 429:
@@ -49,6 +98,9 @@ public abstract class PassToolsClient {
             case 500:
                 throw new InternalServerException(responseBody);
             default:
+                if (responseCode >= 500) {
+                    throw new InternalServerException(responseBody);
+                }
                 throw new ApiException(responseBody);
         }
     }
@@ -80,29 +132,172 @@ public abstract class PassToolsClient {
             return PassTools.client;
         }
 
-        HttpClient base = new DefaultHttpClient();
-        SSLContext ctx = SSLContext.getInstance("TLS");
-        X509TrustManager tm = new X509TrustManager() {
+        HttpClient client = sharedClient;
+        if (client == null) {
+            boolean built = false;
+            synchronized (PassToolsClient.class) {
+                if (sharedClient == null) {
+                    sharedClient = buildHttpClient();
+                    built = true;
+                }
+                client = sharedClient;
+            }
+            if (built && PassTools.warmUpConnections > 0) {
+                PassToolsSystem.warmUp(PassTools.warmUpConnections);
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Close the pooled connections of the shared http client and stop the threads used for bulk calls
+     * and for probing PassTools.apiBases.  The next request builds a new client from the current PassTools settings.
+     */
+    public static void shutdown() {
+        HttpClient client;
+        ExecutorService executor;
+        EndpointRouter router;
+        synchronized (PassToolsClient.class) {
+            client = sharedClient;
+            executor = sharedExecutor;
+            router = sharedRouter;
+            sharedClient = null;
+            sharedExecutor = null;
+            sharedRouter = null;
+        }
+        if (router != null) {
+            router.shutdown();
+        }
+        if (client != null) {
+            client.getConnectionManager().shutdown();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
 
-            public void checkClientTrusted(X509Certificate[] xcs, String string) throws CertificateException {
+    /* the router for PassTools.apiBases, or null if calls all go to PassTools.API_BASE */
+    private static EndpointRouter getRouter() {
+        List<String> bases = PassTools.apiBases;
+        EndpointRouter router = sharedRouter;
+        if (bases == null || bases.isEmpty()) {
+            if (router != null) {
+                synchronized (PassToolsClient.class) {
+                    if (sharedRouter == router) {
+                        sharedRouter = null;
+                        router.shutdown();
+                    }
+                }
             }
+            return null;
+        }
+        if (router == null || !router.routes(bases)) {
+            synchronized (PassToolsClient.class) {
+                if (sharedRouter == null || !sharedRouter.routes(bases)) {
+                    if (sharedRouter != null) {
+                        sharedRouter.shutdown();
+                    }
+                    sharedRouter = new EndpointRouter(bases);
+                }
+                router = sharedRouter;
+            }
+        }
+        return router;
+    }
 
-            public void checkServerTrusted(X509Certificate[] xcs, String string) throws CertificateException {
+    /**
+     * The threads bulk calls fan out on, sized to the connection pool.
+     */
+    protected static ExecutorService getExecutor() {
+        ExecutorService executor = sharedExecutor;
+        if (executor == null) {
+            synchronized (PassToolsClient.class) {
+                if (sharedExecutor == null) {
+                    sharedExecutor = Executors.newFixedThreadPool(PassTools.maxConnections, new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "passtools-client-" + count.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+                }
+                executor = sharedExecutor;
             }
+        }
+        return executor;
+    }
 
-            public X509Certificate[] getAcceptedIssuers() {
-                return null;
+    /**
+     * Run the calls concurrently on the shared executor and wait for all of them.
+     *
+     * @param calls calls keyed by id, in the order the results should be reported.
+     * @return a result or error per id.
+     */
+    protected static <K, V> BulkResult<K, V> executeAll(Map<K, Callable<V>> calls) {
+        ExecutorService executor = getExecutor();
+        Map<K, Future<V>> futures = new LinkedHashMap<K, Future<V>>();
+        for (Map.Entry<K, Callable<V>> call : calls.entrySet()) {
+            futures.put(call.getKey(), executor.submit(Priority.propagate(Deadline.propagate(call.getValue()), Priority.BULK)));
+        }
+
+        BulkResult<K, V> result = new BulkResult<K, V>();
+        try {
+            for (Map.Entry<K, Future<V>> future : futures.entrySet()) {
+                try {
+                    result.addResult(future.getKey(), future.getValue().get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    result.addError(future.getKey(), cause instanceof Exception ? (Exception) cause : e);
+                }
             }
-        };
-        ctx.init(null, new TrustManager[]{tm}, null);
-        SSLSocketFactory ssf = new SSLSocketFactory(ctx);
-        ssf.setHostnameVerifier(SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
-        ClientConnectionManager ccm = base.getConnectionManager();
-        SchemeRegistry sr = ccm.getSchemeRegistry();
-        sr.register(new Scheme("https", ssf, 443));
+        } catch (InterruptedException e) {
+            for (Future<V> future : futures.values()) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        return result;
+    }
 
+    /* one TLS context, socket factory and connection pool for every request, so TLS sessions get reused */
+    private static HttpClient buildHttpClient() throws Exception {
+        TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        tmf.init(PassTools.trustStore);
 
-        return new DefaultHttpClient(ccm, base.getParams());
+        SSLContext ctx = SSLContext.getInstance("TLS");
+        ctx.init(null, tmf.getTrustManagers(), null);
+        ctx.getClientSessionContext().setSessionTimeout(PassTools.tlsSessionTimeout);
+
+        X509HostnameVerifier verifier = PassTools.verifyHostname ? SSLSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER : SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER;
+
+        SchemeRegistry sr = new SchemeRegistry();
+        sr.register(new Scheme("http", 80, PlainSocketFactory.getSocketFactory()));
+        sr.register(new Scheme("https", 443, new ResumableSSLSocketFactory(ctx, verifier)));
+
+        ThreadSafeClientConnManager ccm = new ThreadSafeClientConnManager(sr);
+        ccm.setMaxTotal(PassTools.maxConnections);
+        ccm.setDefaultMaxPerRoute(PassTools.maxConnections);
+
+        DefaultHttpClient client = new DefaultHttpClient(ccm);
+        client.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler() {
+            @Override
+            public boolean retryRequest(IOException exception, int executionCount, HttpContext context) {
+                /* a request aborted for its deadline isn't tried again */
+                Deadline deadline = Deadline.current();
+                if (deadline != null && deadline.isExpired()) {
+                    return false;
+                }
+                return super.retryRequest(exception, executionCount, context);
+            }
+        });
+        HttpParams params = client.getParams();
+        HttpConnectionParams.setConnectionTimeout(params, PassTools.connectTimeout);
+        HttpConnectionParams.setSoTimeout(params, PassTools.socketTimeout);
+        ConnManagerParams.setTimeout(params, PassTools.connectionPoolTimeout);
+        return client;
     }
 
     protected static PassToolsResponse _rawGet(String url) throws Exception {
@@ -112,6 +307,7 @@ public abstract class PassToolsClient {
         HttpResponse response = httpclient.execute(get);
 
         handleError(response);
+        buffer(response);
 
         return new PassToolsResponse(response);
     }
@@ -121,17 +317,284 @@ public abstract class PassToolsClient {
 
         apiKeyCheck();
 
-        HttpClient httpclient = getHttpClient();
-        HttpGet get = new HttpGet(addApiKey(url));
+        final String fullUrl = addApiKey(url);
+        if (!PassTools.coalesceGets) {
+            return new PassToolsResponse(executeGet(fullUrl));
+        }
+
+        /*
+         * Identical GETs in flight at the same time share one request, each caller gets its own copy of the body.
+         * A caller waits on someone else's request only as long as its own deadline allows, and doesn't take
+         * the other caller's deadline passing as its own: it sends the GET itself instead.  Only callers at the
+         * same priority share, so an interactive GET never waits in the bulk lane behind a bulk one.
+         */
+        Deadline deadline = Deadline.current();
+        BufferedResponse shared;
+        try {
+            shared = inFlightGets.execute(Priority.current() + " " + fullUrl, new Callable<BufferedResponse>() {
+                public BufferedResponse call() throws Exception {
+                    return new BufferedResponse(executeGet(fullUrl));
+                }
+            }, deadline == null ? -1 : deadline.remaining(TimeUnit.NANOSECONDS), DeadlineExceededException.class);
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException("deadline passed waiting on an identical GET " + new URI(fullUrl).getPath(), e);
+        }
+        return new PassToolsResponse(shared.copy());
+
+    }
+
+    /*
+     * A GET whose body is left on the connection to be read as it arrives, for responses too big to hold.
+     * The caller has to close the response to give the connection back.
+     */
+    protected static PassToolsResponse getStreaming(String url) throws Exception {
+        apiKeyCheck();
+        return new PassToolsResponse(executeGet(addApiKey(url)));
+    }
+
+    private static HttpResponse executeGet(String fullUrl) throws Exception {
+        if (PassTools.hedgeGets) {
+            return executeHedged(fullUrl);
+        }
+        return execute(newGet(fullUrl));
+    }
+
+    private static HttpGet newGet(String fullUrl) {
+        HttpGet get = new HttpGet(fullUrl);
 
         setHeaders(get, defaultHeaders());
 
-        HttpResponse response = httpclient.execute(get);
+        return get;
+    }
+
+    /*
+     * The GET goes out on this thread, and if it hasn't answered by PassTools.hedgePercentile of recent
+     * GET latency a second copy goes out beside it.  Whichever answers first is used and the other is aborted.
+     */
+    private static HttpResponse executeHedged(String fullUrl) throws Exception {
+        hedger.earn(PassTools.hedgeBudget);
+        HttpGet primary = newGet(fullUrl);
+        long delay = hedger.delayNanos(PassTools.hedgePercentile);
+        long start = System.nanoTime();
+        if (delay < 0) {
+            HttpResponse response = execute(primary);
+            hedger.record(System.nanoTime() - start);
+            return response;
+        }
+
+        final HedgedGet hedge = new HedgedGet(fullUrl, primary);
+        final Runnable send = Priority.propagate(Deadline.propagate(hedge));
+        ScheduledFuture<?> timer = deadlineTimer.schedule(new Runnable() {
+            public void run() {
+                hedgeExecutor.execute(send);
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+
+        HttpResponse response;
+        try {
+            response = execute(primary);
+        } catch (Exception e) {
+            timer.cancel(false);
+            HttpResponse hedged = hedge.await();
+            if (hedged == null) {
+                throw e;
+            }
+            hedger.record(System.nanoTime() - start);   /* at least this long, had the hedge not won */
+            return hedged;
+        }
+        timer.cancel(false);
+        hedger.record(System.nanoTime() - start);
+
+        HttpResponse hedged = hedge.cancel();
+        if (hedged != null) {
+            HedgedGet.consumeQuietly(response);   /* already aborted by the hedge */
+            return hedged;
+        }
+        return response;
+    }
+
+    /* the second copy of a hedged GET, run once the first has taken too long */
+    private static class HedgedGet implements Runnable {
+        private final String fullUrl;
+        private final HttpUriRequest primary;
+        private HttpGet request;            /* all guarded by this */
+        private HttpResponse response;
+        private boolean done;
+        private boolean cancelled;
+
+        HedgedGet(String fullUrl, HttpUriRequest primary) {
+            this.fullUrl = fullUrl;
+            this.primary = primary;
+        }
+
+        public void run() {
+            HttpGet get;
+            synchronized (this) {
+                if (cancelled || !hedger.spend()) {
+                    done = true;
+                    notifyAll();
+                    return;
+                }
+                get = newGet(fullUrl);
+                request = get;
+            }
+
+            HttpResponse hedged = null;
+            try {
+                hedged = execute(get);
+            } catch (Exception e) {
+                /* the first copy's answer, or its error, is used instead */
+            }
+
+            synchronized (this) {
+                done = true;
+                notifyAll();
+                if (hedged == null) {
+                    return;
+                }
+                if (cancelled) {
+                    consumeQuietly(hedged);
+                    return;
+                }
+                response = hedged;
+            }
+            primary.abort();
+        }
+
+        /* the hedge's answer once it has one, or null if it was never sent or failed */
+        synchronized HttpResponse await() throws InterruptedException {
+            if (request == null) {
+                cancelled = true;
+                return null;
+            }
+            while (!done) {
+                wait();
+            }
+            return response;
+        }
+
+        /* called with the first copy's answer, returns the hedge's if it got in first */
+        synchronized HttpResponse cancel() {
+            if (response != null) {
+                return response;
+            }
+            cancelled = true;
+            if (request != null && !done) {
+                request.abort();
+            }
+            return null;
+        }
+
+        private static void consumeQuietly(HttpResponse response) {
+            try {
+                EntityUtils.consume(response.getEntity());
+            } catch (IOException e) {
+                /* the connection is dropped instead of reused */
+            }
+        }
+    }
+
+    /*
+     * Every API call goes out through here, queued by the thread's Priority for a connection, at no more
+     * than PassTools.maxRequestsPerSecond and within the thread's Deadline, if it has one.
+     */
+    private static HttpResponse execute(HttpUriRequest request) throws Exception {
+        Priority priority = Priority.current();
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            scheduler.acquire(priority);
+        } else if (!scheduler.acquire(priority, deadline.remaining(TimeUnit.NANOSECONDS))) {
+            throw deadlineExceeded(request, null);
+        }
+        try {
+            return send(request, deadline);
+        } finally {
+            scheduler.release(priority);
+        }
+    }
+
+    private static HttpResponse send(HttpUriRequest request, Deadline deadline) throws Exception {
+        HttpClient httpclient = getHttpClient();
+        if (deadline == null) {
+            rateLimiter.acquire(PassTools.maxRequestsPerSecond);
+
+            HttpResponse response = route(httpclient, request);
+
+            handleError(response);
+
+            return response;
+        }
+
+        if (!rateLimiter.acquire(PassTools.maxRequestsPerSecond, deadline.remaining(TimeUnit.NANOSECONDS))
+                || deadline.isExpired()) {
+            throw deadlineExceeded(request, null);
+        }
+        long remaining = Math.max(1, deadline.remaining(TimeUnit.MILLISECONDS));
+        HttpParams params = request.getParams();
+        HttpConnectionParams.setConnectionTimeout(params, within(PassTools.connectTimeout, remaining));
+        HttpConnectionParams.setSoTimeout(params, within(PassTools.socketTimeout, remaining));
+        ConnManagerParams.setTimeout(params, within(PassTools.connectionPoolTimeout, remaining));
+
+        final HttpUriRequest aborted = request;
+        ScheduledFuture<?> abort = deadlineTimer.schedule(new Runnable() {
+            public void run() {
+                aborted.abort();
+            }
+        }, deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);   /* not before the deadline, so retries see it passed */
+
+        HttpResponse response;
+        try {
+            response = route(httpclient, request);
+        } catch (IOException e) {
+            if (deadline.isExpired() || request.isAborted()) {
+                throw deadlineExceeded(request, e);
+            }
+            throw e;
+        } finally {
+            abort.cancel(false);
+        }
+        if (request.isAborted()) {
+            throw deadlineExceeded(request, null);   /* aborted just as the response came in, the connection is already dropped */
+        }
 
         handleError(response);
 
-        return new PassToolsResponse(response);
+        return response;
+    }
+
+    /* send the request to the base PassTools.apiBases says is best, and tell it how that went */
+    private static HttpResponse route(HttpClient httpclient, HttpUriRequest request) throws Exception {
+        EndpointRouter router = getRouter();
+        EndpointRouter.Endpoint endpoint = router == null ? null : router.route(request);
+        if (endpoint == null) {
+            return httpclient.execute(request);
+        }
+
+        long start = System.nanoTime();
+        HttpResponse response;
+        try {
+            response = httpclient.execute(request);
+        } catch (IOException e) {
+            if (!request.isAborted()) {
+                router.failed(endpoint);
+            }
+            throw e;
+        }
+        if (response.getStatusLine().getStatusCode() >= 500) {
+            router.failed(endpoint);
+        } else {
+            router.succeeded(endpoint, System.nanoTime() - start);
+        }
+        return response;
+    }
+
+    /* a timeout in milliseconds no longer than what's left, with 0 meaning no limit */
+    private static int within(int timeout, long remaining) {
+        return (int) (timeout <= 0 ? remaining : Math.min(timeout, remaining));
+    }
 
+    private static DeadlineExceededException deadlineExceeded(HttpUriRequest request, Throwable cause) {
+        return new DeadlineExceededException("deadline passed before " + request.getMethod() + " " + request.getURI().getPath() + " finished", cause);
     }
 
 
@@ -159,7 +622,6 @@ public abstract class PassToolsClient {
     protected static PassToolsResponse post(String url, Map formFields, Map headers) throws Exception {
         apiKeyCheck();
 
-        HttpClient httpclient = getHttpClient();
         HttpPost post = new HttpPost(url);
 
         setHeaders(post, headers);
@@ -180,9 +642,7 @@ public abstract class PassToolsClient {
         entity.setContentEncoding(HTTP.UTF_8);
         post.setEntity(entity);
 
-        HttpResponse response = httpclient.execute(post);
-
-        handleError(response);
+        HttpResponse response = execute(post);
 
         return new PassToolsResponse(response);
     }
@@ -192,11 +652,37 @@ public abstract class PassToolsClient {
         return post(url, formFields, defaultHeaders());
     }
 
+    /**
+     * Post a form whose json parameter is written by body as the request goes out.
+     */
+    protected static PassToolsResponse postJSON(String url, JSONFormEntity.Body body) throws Exception {
+        apiKeyCheck();
+        return postEntity(url, new JSONFormEntity(body, PassTools.apiKey));
+    }
+
+    /**
+     * Post a form whose json parameter was url-encoded up front by JSONFormEntity.encode.
+     */
+    protected static PassToolsResponse postJSON(String url, byte[] encodedJSON) throws Exception {
+        apiKeyCheck();
+        return postEntity(url, new JSONFormEntity(encodedJSON, PassTools.apiKey));
+    }
+
+    private static PassToolsResponse postEntity(String url, HttpEntity entity) throws Exception {
+        HttpPost post = new HttpPost(url);
+
+        setHeaders(post, defaultHeaders());
+        post.setEntity(entity);
+
+        HttpResponse response = execute(post);
+
+        return new PassToolsResponse(response);
+    }
+
 
     protected static PassToolsResponse put(String url, Map formFields, Map headers) throws Exception {
         apiKeyCheck();
 
-        HttpClient httpclient = getHttpClient();
         HttpPut put = new HttpPut(url);
 
         setHeaders(put, headers);
@@ -214,9 +700,7 @@ public abstract class PassToolsClient {
         entity.setContentEncoding(HTTP.UTF_8);
         put.setEntity(entity);
 
-        HttpResponse response = httpclient.execute(put);
-
-        handleError(response);
+        HttpResponse response = execute(put);
 
         return new PassToolsResponse(response);
     }
@@ -232,21 +716,60 @@ public abstract class PassToolsClient {
     protected static PassToolsResponse delete(String url, Map headers) throws Exception {
         apiKeyCheck();
 
-        HttpClient httpclient = getHttpClient();
         HttpDelete delete = new HttpDelete(addApiKey(url));
 
         setHeaders(delete, headers);
 
 
-        HttpResponse response = httpclient.execute(delete);
-
-        handleError(response);
+        HttpResponse response = execute(delete);
+        buffer(response);
 
         return new PassToolsResponse(response);
 
 
     }
 
+    /*
+     * Read the body into memory so the pooled connection goes back to the pool straight away,
+     * for small responses that callers are free to ignore.
+     */
+    private static void buffer(HttpResponse response) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity != null && !entity.isRepeatable()) {
+            response.setEntity(new BufferedHttpEntity(entity));
+            EntityUtils.consume(entity);
+        }
+    }
+
+    /*
+     * A response read fully into memory, which any number of callers can take a private copy of.
+     */
+    private static class BufferedResponse {
+        private final StatusLine statusLine;
+        private final Header[] headers;
+        private final byte[] body;
+        private final Header contentType;
+
+        BufferedResponse(HttpResponse response) throws IOException {
+            HttpEntity entity = response.getEntity();
+            statusLine = response.getStatusLine();
+            headers = response.getAllHeaders();
+            body = entity == null ? null : EntityUtils.toByteArray(entity);
+            contentType = entity == null ? null : entity.getContentType();
+        }
+
+        HttpResponse copy() {
+            HttpResponse response = new BasicHttpResponse(statusLine);
+            response.setHeaders(headers);
+            if (body != null) {
+                ByteArrayEntity entity = new ByteArrayEntity(body);
+                entity.setContentType(contentType);
+                response.setEntity(entity);
+            }
+            return response;
+        }
+    }
+
     protected static void checkNotNull(Object o, String message) {
         try {
             Preconditions.checkNotNull(o, message);
@@ -257,8 +780,7 @@ public abstract class PassToolsClient {
 
 
     protected Date toTime(String time) {
-        DateTimeFormatter fmt = ISODateTimeFormat.dateTimeParser();
-        org.joda.time.DateTime dt = fmt.parseDateTime(time);
+        org.joda.time.DateTime dt = dateTimeParser.parseDateTime(time);
         if (dt != null) {
             return dt.toDate();
         }
@@ -1,19 +1,37 @@
 package com.urbanairship.digitalwallet.client;
 
 
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.util.EntityUtils;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 
-public class PassToolsResponse {
+import java.io.Closeable;
+import java.io.IOException;
+
+/*
+ * An API response.  Reading the body with getBodyAsJSONObject or getBodyAsJSONArray closes it; a response
+ * whose body isn't read has to be closed, or its pooled connection is held until the response is garbage
+ * collected.  Set PassTools.responseLeakListener to find responses that weren't.
+ */
+public class PassToolsResponse implements Closeable {
     public HttpResponse response;
     public JSONParser parser;
+    private final ResponseLeakDetector.Tracker tracker;
+    private volatile boolean closed;
 
     public PassToolsResponse(HttpResponse resp) {
         response = resp;
         parser = new JSONParser();
+
+        HttpEntity entity = resp.getEntity();
+        if (PassTools.responseLeakListener != null && entity != null && entity.isStreaming()) {
+            tracker = ResponseLeakDetector.track(this, entity);
+        } else {
+            tracker = null;
+        }
     }
 
 
@@ -28,6 +46,8 @@ public class PassToolsResponse {
             return (JSONObject) parser.parse(responseStr);
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            close();
         }
 
     }
@@ -39,8 +59,28 @@ public class PassToolsResponse {
             return (JSONArray) parser.parse(responseStr);
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            close();
         }
 
     }
 
+    /**
+     * Read whatever is left of the body so the connection goes back to the pool.  Closing twice is harmless.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (tracker != null) {
+            tracker.closed();
+        }
+        try {
+            EntityUtils.consume(response.getEntity());
+        } catch (IOException e) {
+            /* the connection is dropped instead of reused */
+        }
+    }
+
 }
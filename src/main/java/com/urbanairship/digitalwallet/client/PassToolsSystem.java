@@ -1,7 +1,18 @@
 package com.urbanairship.digitalwallet.client;
 
 
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
 public class PassToolsSystem extends PassToolsClient {
+    private static volatile WarmUpResult lastWarmUp;
 
     public static boolean isServiceUp() {
 
@@ -24,4 +35,105 @@ public class PassToolsSystem extends PassToolsClient {
         }
 
     }
+
+    /**
+     * Resolve the API hosts and open connections to them ahead of time, so the first real calls don't pay for
+     * DNS, TCP connect and the TLS handshake.  Each of PassTools.apiBases is warmed up when they're set, as calls
+     * may go to any of them, otherwise PassTools.API_BASE.  Each connection is opened by a concurrent
+     * /system/status call.  Failures are reported in the result rather than thrown.
+     *
+     * @param connections   number of connections to open to each base, at most PassTools.maxConnections in all.
+     * @return              what was done and how long it took.
+     */
+    public static WarmUpResult warmUp(int connections) {
+        List<String> bases = PassTools.apiBases;
+        if (bases == null || bases.isEmpty()) {
+            bases = Collections.singletonList(PassTools.API_BASE);
+        }
+        final int perBase = Math.max(0, Math.min(connections, PassTools.maxConnections / bases.size()));
+        final List<Exception> errors = new ArrayList<Exception>();
+        long start = System.nanoTime();
+
+        List<String> hosts = new ArrayList<String>();
+        long resolveMillis = 0;
+        try {
+            for (String base : bases) {
+                String host = new URI(base).getHost();
+                InetAddress.getAllByName(host);   /* fills the JVM's address cache */
+                hosts.add(host);
+            }
+            resolveMillis = (System.nanoTime() - start) / 1000000;
+        } catch (Exception e) {
+            errors.add(e);
+        }
+
+        int count = perBase * bases.size();
+        int validated = 0;
+        if (errors.isEmpty() && count > 0) {
+            final CountDownLatch ready = new CountDownLatch(1);
+            final boolean[] succeeded = new boolean[count];
+            List<Thread> threads = new ArrayList<Thread>();
+
+            /* the calls go out together so each one needs a connection of its own */
+            for (int i = 0; i < count; i++) {
+                final int index = i;
+                final String url = bases.get(i / perBase) + "/system/status";
+                Thread thread = new Thread(new Runnable() {
+                    public void run() {
+                        try {
+                            ready.await();
+                            _rawGet(url);
+                            succeeded[index] = true;
+                        } catch (Exception e) {
+                            synchronized (errors) {
+                                errors.add(e);
+                            }
+                        }
+                    }
+                }, "passtools-warmup-" + i);
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+            ready.countDown();
+
+            try {
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                errors.add(e);
+            }
+            for (boolean success : succeeded) {
+                if (success) {
+                    validated++;
+                }
+            }
+        }
+
+        int pooled = -1;
+        try {
+            ClientConnectionManager ccm = getHttpClient().getConnectionManager();
+            if (ccm instanceof ThreadSafeClientConnManager) {
+                pooled = ((ThreadSafeClientConnManager) ccm).getConnectionsInPool();
+            }
+        } catch (Exception e) {
+            errors.add(e);
+        }
+
+        WarmUpResult result;
+        synchronized (errors) {
+            result = new WarmUpResult(hosts, resolveMillis, (System.nanoTime() - start) / 1000000, count, validated, pooled, errors);
+        }
+        lastWarmUp = result;
+        return result;
+    }
+
+    /**
+     * @return the result of the last warm-up, including the one done when the shared client is built, or null.
+     */
+    public static WarmUpResult getLastWarmUp() {
+        return lastWarmUp;
+    }
 }
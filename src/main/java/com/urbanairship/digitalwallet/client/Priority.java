@@ -0,0 +1,107 @@
+package com.urbanairship.digitalwallet.client;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+
+/*
+ * The lane API calls made on a thread queue in for a connection.  When the connection pool is busy, waiting
+ * calls are let through in proportion to PassTools.interactiveWeight and PassTools.bulkWeight, and bulk calls
+ * never hold more than PassTools.bulkMaxShare of the connections, so a nightly job can't hold up a checkout.
+ * Calls are INTERACTIVE unless made inside a BULK scope; bulk calls fan out as BULK unless the caller set a priority.
+ *
+ *      Priority.Scope scope = Priority.BULK.use();
+ *      try {
+ *          for (long passId : passIds) {
+ *              Pass.update(passId, fields);
+ *          }
+ *      } finally {
+ *          scope.close();
+ *      }
+ */
+public enum Priority {
+    INTERACTIVE,
+    BULK;
+
+    private static final ThreadLocal<Priority> current = new ThreadLocal<Priority>();
+
+    /**
+     * @return the priority of calls made on this thread.
+     */
+    public static Priority current() {
+        Priority priority = current.get();
+        return priority == null ? INTERACTIVE : priority;
+    }
+
+    /**
+     * Make calls on this thread at this priority until the scope is closed.
+     */
+    public Scope use() {
+        Scope scope = new Scope(current.get());
+        current.set(this);
+        return scope;
+    }
+
+    /**
+     * @return a call that runs at the current thread's priority, on whatever thread runs it.
+     */
+    public static <V> Callable<V> propagate(Callable<V> call) {
+        return propagate(call, null);
+    }
+
+    /**
+     * @return a task that runs at the current thread's priority, on whatever thread runs it.
+     */
+    public static Runnable propagate(final Runnable task) {
+        final Priority priority = current.get();
+        if (priority == null) {
+            return task;
+        }
+        return new Runnable() {
+            public void run() {
+                Scope scope = priority.use();
+                try {
+                    task.run();
+                } finally {
+                    scope.close();
+                }
+            }
+        };
+    }
+
+    /* as propagate, with calls from a thread that set no priority run at the given one */
+    static <V> Callable<V> propagate(final Callable<V> call, Priority unset) {
+        final Priority priority = current.get() != null ? current.get() : unset;
+        if (priority == null) {
+            return call;
+        }
+        return new Callable<V>() {
+            public V call() throws Exception {
+                Scope scope = priority.use();
+                try {
+                    return call.call();
+                } finally {
+                    scope.close();
+                }
+            }
+        };
+    }
+
+    public static final class Scope implements Closeable {
+        private final Priority previous;
+
+        private Scope(Priority previous) {
+            this.previous = previous;
+        }
+
+        /**
+         * Go back to the priority this thread had before.
+         */
+        public void close() {
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.urbanairship.digitalwallet.client;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/*
+ * Weighted fair queueing of API calls for the connection pool, one queue per Priority.
+ *
+ * A call goes straight through while a connection is free.  Once they're all taken, calls queue in their
+ * priority's lane, and as connections come back the lane that has been let through least for its weight
+ * goes next.  A lane that has been idle starts level with the others rather than with credit saved up.
+ */
+class PriorityScheduler {
+    private final Deque<Waiter>[] queues;
+    private final int[] inFlight;
+    private final double[] served;
+    private int total;
+    private double clock;
+
+    @SuppressWarnings("unchecked")
+    PriorityScheduler() {
+        int lanes = Priority.values().length;
+        queues = new Deque[lanes];
+        for (int i = 0; i < lanes; i++) {
+            queues[i] = new ArrayDeque<Waiter>();
+        }
+        inFlight = new int[lanes];
+        served = new double[lanes];
+    }
+
+    /**
+     * Wait for a connection for a call at this priority, unless that would take longer than maxWaitNanos.
+     *
+     * @return false, without a connection, if the wait would be too long.
+     */
+    synchronized boolean acquire(Priority priority, long maxWaitNanos) throws InterruptedException {
+        int lane = priority.ordinal();
+        if (queues[lane].isEmpty()) {
+            served[lane] = Math.max(served[lane], clock);
+        }
+        Waiter waiter = new Waiter();
+        queues[lane].addLast(waiter);
+        dispatch();
+
+        long deadline = System.nanoTime() + maxWaitNanos;
+        try {
+            while (!waiter.granted) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    queues[lane].remove(waiter);
+                    return false;
+                }
+                wait(remaining / 1000000, (int) (remaining % 1000000));
+            }
+        } catch (InterruptedException e) {
+            if (!waiter.granted) {
+                queues[lane].remove(waiter);
+                throw e;
+            }
+            Thread.currentThread().interrupt();
+        }
+        return true;
+    }
+
+    synchronized void acquire(Priority priority) throws InterruptedException {
+        acquire(priority, Long.MAX_VALUE / 2);
+    }
+
+    /**
+     * Hand back the connection a call at this priority was let through with.
+     */
+    synchronized void release(Priority priority) {
+        total--;
+        inFlight[priority.ordinal()]--;
+        dispatch();
+    }
+
+    /* let waiting calls through while there are connections for them */
+    private void dispatch() {
+        boolean granted = false;
+        while (total < PassTools.maxConnections) {
+            int next = -1;
+            for (int lane = 0; lane < queues.length; lane++) {
+                if (queues[lane].isEmpty() || inFlight[lane] >= limit(lane)) {
+                    continue;
+                }
+                if (next < 0 || served[lane] < served[next]) {
+                    next = lane;
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            queues[next].removeFirst().granted = true;
+            total++;
+            inFlight[next]++;
+            clock = served[next];
+            served[next] += 1.0 / weight(next);
+            granted = true;
+        }
+        if (granted) {
+            notifyAll();
+        }
+    }
+
+    /* most connections a lane can hold */
+    private static int limit(int lane) {
+        if (lane == Priority.BULK.ordinal()) {
+            return Math.max(1, (int) (PassTools.maxConnections * PassTools.bulkMaxShare));
+        }
+        return PassTools.maxConnections;
+    }
+
+    private static double weight(int lane) {
+        return Math.max(1, lane == Priority.BULK.ordinal() ? PassTools.bulkWeight : PassTools.interactiveWeight);
+    }
+
+    private static class Waiter {
+        boolean granted;
+    }
+}
@@ -191,7 +191,7 @@ public class Project extends PassToolsClient {
     public static void deleteProject(long id) {
         try {
             String url = getBaseUrl() + "/" + id;
-            PassToolsResponse response = delete(url);
+            delete(url).close();
         } catch (RuntimeException rte) {
             throw rte;
         } catch (Exception e) {
@@ -208,7 +208,7 @@ public class Project extends PassToolsClient {
         try {
             checkNotNull(externalId, missingExternalIdError);
             String url = getBaseUrl() + "/id/" + externalId;
-            PassToolsResponse response = delete(url);
+            delete(url).close();
         } catch (RuntimeException rte) {
             throw rte;
         } catch (Exception e) {
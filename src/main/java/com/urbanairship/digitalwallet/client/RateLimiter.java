@@ -0,0 +1,50 @@
+package com.urbanairship.digitalwallet.client;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Token bucket that lets through a steady number of requests per second, with up to a second's worth
+ * saved up for bursts.  Callers over the rate queue behind each other rather than being turned away.
+ */
+class RateLimiter {
+    private double storedPermits = 1;
+    private long lastNanos = System.nanoTime();
+
+    /**
+     * Wait until a request may go out.
+     *
+     * @param permitsPerSecond  the current rate, zero or less for no limit.
+     */
+    void acquire(double permitsPerSecond) throws InterruptedException {
+        acquire(permitsPerSecond, Long.MAX_VALUE);
+    }
+
+    /**
+     * Wait until a request may go out, unless that would take longer than maxWaitNanos.
+     *
+     * @param permitsPerSecond  the current rate, zero or less for no limit.
+     * @return false, without taking a permit, if the wait would be too long.
+     */
+    boolean acquire(double permitsPerSecond, long maxWaitNanos) throws InterruptedException {
+        if (permitsPerSecond <= 0) {
+            return true;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            double burst = Math.max(1, permitsPerSecond);
+            storedPermits = Math.min(burst, storedPermits + (now - lastNanos) * permitsPerSecond / 1e9);
+            lastNanos = now;
+            storedPermits -= 1;   /* goes negative while callers are queued */
+            waitNanos = storedPermits >= 0 ? 0 : (long) (-storedPermits / permitsPerSecond * 1e9);
+            if (waitNanos > maxWaitNanos) {
+                storedPermits += 1;
+                return false;
+            }
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+package com.urbanairship.digitalwallet.client;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.util.EntityUtils;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Watches responses that still hold a pooled connection.  Each gets a phantom reference that remembers
+ * where the response was made and its entity, but not the response itself; when the response is collected
+ * without having been closed, PassTools.responseLeakListener hears where it came from and the entity is
+ * consumed so the connection goes back to the pool instead of waiting on the pool's own cleanup.
+ */
+class ResponseLeakDetector {
+    private static final ReferenceQueue<PassToolsResponse> queue = new ReferenceQueue<PassToolsResponse>();
+    private static final Set<Tracker> tracked = Collections.newSetFromMap(new ConcurrentHashMap<Tracker, Boolean>());
+    private static Thread reaper;
+
+    static Tracker track(PassToolsResponse response, HttpEntity entity) {
+        startReaper();
+        Tracker tracker = new Tracker(response, entity,
+                new Throwable("response " + response.response.getStatusLine() + " created here was never closed"));
+        tracked.add(tracker);
+        return tracker;
+    }
+
+    private static synchronized void startReaper() {
+        if (reaper != null) {
+            return;
+        }
+        reaper = new Thread(new Runnable() {
+            public void run() {
+                while (true) {
+                    Tracker tracker;
+                    try {
+                        tracker = (Tracker) queue.remove();
+                    } catch (InterruptedException e) {
+                        continue;
+                    }
+                    tracked.remove(tracker);
+                    if (!tracker.closed) {
+                        tracker.leaked();
+                    }
+                }
+            }
+        }, "passtools-leak-detector");
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    static class Tracker extends PhantomReference<PassToolsResponse> {
+        private final HttpEntity entity;
+        private final Throwable createdAt;
+        private volatile boolean closed;
+
+        Tracker(PassToolsResponse response, HttpEntity entity, Throwable createdAt) {
+            super(response, queue);
+            this.entity = entity;
+            this.createdAt = createdAt;
+        }
+
+        void closed() {
+            closed = true;
+            tracked.remove(this);
+        }
+
+        private void leaked() {
+            try {
+                EntityUtils.consume(entity);
+            } catch (Exception e) {
+                /* the connection is dropped instead */
+            }
+            ResponseLeakListener listener = PassTools.responseLeakListener;
+            if (listener != null) {
+                listener.responseLeaked(createdAt);
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.urbanairship.digitalwallet.client;
+
+/*
+ * Told when a PassToolsResponse that still held its connection was garbage collected without being closed.
+ * createdAt carries the stack trace of where the response was made.  Called from the leak detector's thread.
+ */
+public interface ResponseLeakListener {
+
+    void responseLeaked(Throwable createdAt);
+}
@@ -0,0 +1,27 @@
+package com.urbanairship.digitalwallet.client;
+
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.conn.ssl.X509HostnameVerifier;
+import org.apache.http.params.HttpParams;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.Socket;
+
+/*
+ * The stock factory hands out unconnected SSL sockets, which the JSSE can't match against its session
+ * cache because they don't know their peer.  Handing out a plain socket instead makes connectSocket
+ * layer TLS over it with the host name and port, so a reconnect to the same host resumes the cached
+ * session rather than doing a full handshake.
+ */
+class ResumableSSLSocketFactory extends SSLSocketFactory {
+
+    ResumableSSLSocketFactory(SSLContext context, X509HostnameVerifier hostnameVerifier) {
+        super(context, hostnameVerifier);
+    }
+
+    @Override
+    public Socket createSocket(HttpParams params) throws IOException {
+        return new Socket();
+    }
+}
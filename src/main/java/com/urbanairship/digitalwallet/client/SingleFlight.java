@@ -0,0 +1,77 @@
+package com.urbanairship.digitalwallet.client;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+ * Collapses concurrent calls for the same key into one: the first caller runs the call, callers that
+ * arrive while it is in flight wait for it and get the same result, or the same exception.  A waiting caller
+ * can give up after its own timeout, and can run the call again rather than take an exception that was
+ * only the first caller's, such as its deadline passing.
+ * Nothing is cached, a call that arrives after the first one finished runs again.
+ */
+class SingleFlight<K, V> {
+    private final ConcurrentMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<K, FutureTask<V>>();
+
+    V execute(K key, Callable<V> call) throws Exception {
+        return execute(key, call, -1, null);
+    }
+
+    /**
+     * @param timeoutNanos  longest a caller waits on someone else's call, less than zero for no limit.
+     * @param notShared     an exception from someone else's call that isn't passed on: the caller runs the call
+     *                      itself instead, or joins another that started since.  Null passes every exception on.
+     * @throws TimeoutException if the caller waited timeoutNanos on someone else's call.
+     */
+    V execute(K key, Callable<V> call, long timeoutNanos, Class<? extends Exception> notShared) throws Exception {
+        long expires = System.nanoTime() + timeoutNanos;
+        while (true) {
+            FutureTask<V> task = new FutureTask<V>(call);
+            FutureTask<V> existing = inFlight.putIfAbsent(key, task);
+
+            if (existing == null) {
+                try {
+                    task.run();
+                } finally {
+                    inFlight.remove(key, task);
+                }
+                return get(task, -1);
+            }
+
+            try {
+                return get(existing, timeoutNanos < 0 ? -1 : Math.max(0, expires - System.nanoTime()));
+            } catch (Exception e) {
+                if (notShared == null || !notShared.isInstance(e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /* the result of the task, waiting at most timeoutNanos for it unless that is less than zero */
+    private static <V> V get(FutureTask<V> task, long timeoutNanos) throws Exception {
+        try {
+            if (timeoutNanos < 0) {
+                return task.get();
+            }
+            return task.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+}
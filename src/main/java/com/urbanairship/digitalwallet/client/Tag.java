@@ -11,6 +11,7 @@ package com.urbanairship.digitalwallet.client;
     DELETE      /{tag}/pass/id/{externalId}     Remove a pass from a tag by it's external id.
  */
 
+import com.urbanairship.digitalwallet.client.util.LongSet;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
@@ -26,6 +27,7 @@ public class Tag extends PassToolsClient {
     private List<Long> passIds;
 
     private final static String missingTagError = "Please provide a tag!";
+    private final static int passIdPageSize = 1000;
 
     public Tag() {
 
@@ -39,6 +41,11 @@ public class Tag extends PassToolsClient {
 
     }
 
+    Tag(Long id, String tag) {
+        this.id = id;
+        this.tag = tag;
+    }
+
     public Long getId() {
         return id;
     }
@@ -51,6 +58,13 @@ public class Tag extends PassToolsClient {
         return passIds;
     }
 
+    /**
+     * @return the pass ids as a compact set that supports union, intersection and difference, null if there are none.
+     */
+    public LongSet getPassIdSet() {
+        return passIds == null ? null : LongSet.of(passIds);
+    }
+
     /**
      * Get the list of your tags.
      *
@@ -120,6 +134,28 @@ public class Tag extends PassToolsClient {
         }
     }
 
+    /**
+     * Get the ids of all of the passes on a tag, reading pages until one comes back empty.
+     *
+     * @param tag   Tag you want the pass ids for.
+     * @return      the pass ids, as a compact set that supports union, intersection and difference.
+     */
+    public static LongSet getPassIds(String tag) {
+        checkNotNull(tag, missingTagError);
+        LongSet passIds = new LongSet();
+        for (int page = 1; ; page++) {
+            List<Pass> passes = getPasses(tag, passIdPageSize, page);
+            for (Pass pass : passes) {
+                if (pass.getPassId() != null) {
+                    passIds.add(pass.getPassId());
+                }
+            }
+            if (passes.isEmpty()) {   /* the server may return short pages before the last */
+                return passIds;
+            }
+        }
+    }
+
     /**
      * Update all of the passes on a tag.
      *
@@ -136,6 +172,7 @@ public class Tag extends PassToolsClient {
             Map formParams = new HashMap<String, Object>();
             formParams.put("json", new JSONObject(fields));
             PassToolsResponse response = put(builder.toString(), formParams);
+            Pass.passesChanged();
 
             JSONObject jsonObjResponse = response.getBodyAsJSONObject();
             return (Long) jsonObjResponse.get("ticketId");
@@ -161,7 +198,12 @@ public class Tag extends PassToolsClient {
         try {
             String url = getBaseUrl() + "/" + URLEncoder.encode(tag, "UTF-8");
             PassToolsResponse response = delete(url);
-            return response.getBodyAsJSONObject();
+            JSONObject json = response.getBodyAsJSONObject();
+            TagIndex index = PassTools.tagIndex;
+            if (index != null) {
+                index.cleared(tag, true);
+            }
+            return json;
         } catch (RuntimeException e) {
             throw e;
         } catch (Exception e) {
@@ -185,7 +227,12 @@ public class Tag extends PassToolsClient {
             StringBuilder builder = new StringBuilder(getBaseUrl());
             builder.append("/").append(URLEncoder.encode(tag, "UTF-8")).append("/passes");
             PassToolsResponse response = delete(builder.toString());
-            return response.getBodyAsJSONObject();
+            JSONObject json = response.getBodyAsJSONObject();
+            TagIndex index = PassTools.tagIndex;
+            if (index != null) {
+                index.cleared(tag, false);
+            }
+            return json;
 
         } catch (RuntimeException e) {
             throw e;
@@ -210,7 +257,12 @@ public class Tag extends PassToolsClient {
             StringBuilder builder = new StringBuilder(getBaseUrl());
             builder.append("/").append(URLEncoder.encode(tag, "UTF-8")).append("/pass/").append(passId);
             PassToolsResponse response = delete(builder.toString());
-            return response.getBodyAsJSONObject();
+            JSONObject json = response.getBodyAsJSONObject();
+            TagIndex index = PassTools.tagIndex;
+            if (index != null) {
+                index.removed(tag, passId);
+            }
+            return json;
         } catch (RuntimeException e) {
             throw e;
         } catch (Exception e) {
@@ -233,7 +285,17 @@ public class Tag extends PassToolsClient {
             StringBuilder builder = new StringBuilder(getBaseUrl());
             builder.append("/").append(URLEncoder.encode(tag, "UTF-8")).append("/pass/id/").append(externalId);
             PassToolsResponse response = delete(builder.toString());
-            return response.getBodyAsJSONObject();
+            JSONObject json = response.getBodyAsJSONObject();
+            TagIndex index = PassTools.tagIndex;
+            if (index != null) {
+                index.removed(tag, externalId);
+                Long passId = json.get("passId") instanceof Number
+                        ? ((Number) json.get("passId")).longValue() : Pass.knownPassId(externalId);
+                if (passId != null) {
+                    index.removed(tag, passId);
+                }
+            }
+            return json;
         } catch (RuntimeException e) {
             throw e;
         } catch (Exception e) {
@@ -260,6 +322,14 @@ public class Tag extends PassToolsClient {
             } else if (o.get("name") != null) {
                 tag = (String) o.get("name");
             }
+            if (o.get("passIds") instanceof JSONArray) {
+                passIds = new ArrayList<Long>();
+                for (Object passId : (JSONArray) o.get("passIds")) {
+                    if (passId instanceof Number) {
+                        passIds.add(((Number) passId).longValue());
+                    }
+                }
+            }
         }
     }
 
@@ -0,0 +1,346 @@
+package com.urbanairship.digitalwallet.client;
+
+import com.urbanairship.digitalwallet.client.util.LongIterator;
+import com.urbanairship.digitalwallet.client.util.LongObjectMap;
+import com.urbanairship.digitalwallet.client.util.LongSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * An in-memory copy of which passes carry which tags.
+ *
+ * Seed it with load(), then set PassTools.tagIndex to have Pass.getTags answered from it and to have
+ * Pass.addTag/addTags, Tag.removeFromPass, Tag.removeFromPasses, Tag.deleteTag, Pass.delete and
+ * Pass.deleteX keep it current.  Tag changes made by other clients aren't seen until the next load().
+ * Tags added by external id to a pass whose id this client hasn't seen yet are held back until a Pass call
+ * returns that pass, rather than looking the pass up.
+ *
+ * Each tag gets a small ordinal: a tag's passes are a LongSet, and a pass's tags an int array of ordinals
+ * in a map keyed by the primitive pass id.
+ *
+ *      PassTools.tagIndex = TagIndex.load();
+ *      if (PassTools.tagIndex.hasTag(passId, "vip")) ...
+ */
+public class TagIndex extends PassToolsClient {
+    private static final int pageSize = 1000;
+    private static final int[] NO_TAGS = new int[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ordinals = new HashMap<String, Integer>();
+    private final List<String> names = new ArrayList<String>();         /* by ordinal, null once deleted */
+    private final List<Long> tagIds = new ArrayList<Long>();            /* by ordinal */
+    private final List<LongSet> passesByTag = new ArrayList<LongSet>(); /* by ordinal */
+    private final LongObjectMap<int[]> tagsByPass = new LongObjectMap<int[]>();
+    private final Map<String, Set<String>> pendingByExternalId = new HashMap<String, Set<String>>();
+
+    public TagIndex() {
+
+    }
+
+    /**
+     * Build an index from the server: every tag from Tag.getList, and each tag's passes from Tag.getPasses,
+     * read concurrently.
+     *
+     * @return the loaded index.
+     */
+    public static TagIndex load() {
+        TagIndex index = new TagIndex();
+        index.reload();
+        return index;
+    }
+
+    /**
+     * Replace the contents of this index with what the server has now.
+     */
+    public void reload() {
+        Map<String, Long> ids = new LinkedHashMap<String, Long>();
+        for (int page = 1; ; page++) {
+            List<Tag> tags = Tag.getList(pageSize, page);
+            if (tags.isEmpty()) {   /* the server may return short pages before the last */
+                break;
+            }
+            for (Tag tag : tags) {
+                ids.put(tag.getTag(), tag.getId());
+            }
+        }
+
+        Map<String, Callable<LongSet>> calls = new LinkedHashMap<String, Callable<LongSet>>();
+        for (final String tag : ids.keySet()) {
+            calls.put(tag, new Callable<LongSet>() {
+                public LongSet call() {
+                    return Tag.getPassIds(tag);
+                }
+            });
+        }
+        BulkResult<String, LongSet> members = executeAll(calls);
+        if (members.hasErrors()) {
+            Map.Entry<String, Exception> error = members.getErrors().entrySet().iterator().next();
+            throw new RuntimeException("could not load the passes of tag " + error.getKey(), error.getValue());
+        }
+
+        lock.writeLock().lock();
+        try {
+            ordinals.clear();
+            names.clear();
+            tagIds.clear();
+            passesByTag.clear();
+            tagsByPass.clear();
+            pendingByExternalId.clear();
+            for (Map.Entry<String, Long> entry : ids.entrySet()) {
+                int ordinal = ordinal(entry.getKey());
+                tagIds.set(ordinal, entry.getValue());
+                LongSet passIds = members.getResults().get(entry.getKey());
+                if (passIds != null) {
+                    passesByTag.set(ordinal, passIds);
+                    LongIterator i = passIds.iterator();
+                    while (i.hasNext()) {
+                        tag(i.next(), ordinal);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean hasTag(long passId, String tag) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(tag);
+            return ordinal != null && passesByTag.get(ordinal).contains(passId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the names of the tags on the pass.
+     */
+    public Set<String> getTagNames(long passId) {
+        lock.readLock().lock();
+        try {
+            Set<String> result = new HashSet<String>();
+            for (int ordinal : tagsOf(passId)) {
+                result.add(names.get(ordinal));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the tags on the pass, as Pass.getTags would.  Tags first seen through Pass.addTag have no id.
+     */
+    public List<Tag> getTags(long passId) {
+        lock.readLock().lock();
+        try {
+            List<Tag> result = new ArrayList<Tag>();
+            for (int ordinal : tagsOf(passId)) {
+                result.add(new Tag(tagIds.get(ordinal), names.get(ordinal)));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return a copy of the ids of the passes carrying the tag, empty for an unknown tag.
+     */
+    public LongSet getPassIds(String tag) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(tag);
+            return ordinal == null ? new LongSet() : passesByTag.get(ordinal).copy();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Set<String> getTagNames() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<String>(ordinals.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void added(long passId, Collection<String> tags) {
+        lock.writeLock().lock();
+        try {
+            for (String tag : tags) {
+                int ordinal = ordinal(tag);
+                passesByTag.get(ordinal).add(passId);
+                tag(passId, ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* tags added to a pass known only by external id, applied once passFound gives its id */
+    void added(String externalId, Collection<String> tags) {
+        lock.writeLock().lock();
+        try {
+            Set<String> pending = pendingByExternalId.get(externalId);
+            if (pending == null) {
+                pending = new HashSet<String>();
+                pendingByExternalId.put(externalId, pending);
+            }
+            pending.addAll(tags);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void passFound(String externalId, long passId) {
+        Set<String> pending;
+        lock.writeLock().lock();
+        try {
+            if (pendingByExternalId.isEmpty()) {
+                return;
+            }
+            pending = pendingByExternalId.remove(externalId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (pending != null) {
+            added(passId, pending);
+        }
+    }
+
+    /* the tag was taken off a pass known only by external id, so it isn't added once passFound gives its id */
+    void removed(String tag, String externalId) {
+        lock.writeLock().lock();
+        try {
+            Set<String> pending = pendingByExternalId.get(externalId);
+            if (pending != null && pending.remove(tag) && pending.isEmpty()) {
+                pendingByExternalId.remove(externalId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void removed(String tag, long passId) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(tag);
+            if (ordinal != null) {
+                passesByTag.get(ordinal).remove(passId);
+                untag(passId, ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* the tag was taken off all of its passes, and dropped altogether if deleted is set */
+    void cleared(String tag, boolean deleted) {
+        lock.writeLock().lock();
+        try {
+            for (Set<String> pending : pendingByExternalId.values()) {
+                pending.remove(tag);
+            }
+            Integer ordinal = ordinals.get(tag);
+            if (ordinal == null) {
+                return;
+            }
+            LongSet passIds = passesByTag.get(ordinal);
+            LongIterator i = passIds.iterator();
+            while (i.hasNext()) {
+                untag(i.next(), ordinal);
+            }
+            passIds.clear();
+            if (deleted) {
+                ordinals.remove(tag);
+                names.set(ordinal, null);
+                tagIds.set(ordinal, null);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void passDeleted(Long passId, String externalId) {
+        lock.writeLock().lock();
+        try {
+            if (externalId != null) {
+                pendingByExternalId.remove(externalId);
+            }
+            if (passId != null) {
+                int[] tags = tagsByPass.remove(passId);
+                if (tags != null) {
+                    for (int ordinal : tags) {
+                        passesByTag.get(ordinal).remove(passId);
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* the tag's ordinal, given a new one if it hasn't been seen; under the write lock */
+    private int ordinal(String tag) {
+        Integer ordinal = ordinals.get(tag);
+        if (ordinal == null) {
+            ordinal = names.size();
+            ordinals.put(tag, ordinal);
+            names.add(tag);
+            tagIds.add(null);
+            passesByTag.add(new LongSet());
+        }
+        return ordinal;
+    }
+
+    private int[] tagsOf(long passId) {
+        int[] tags = tagsByPass.get(passId);
+        return tags == null ? NO_TAGS : tags;
+    }
+
+    private void tag(long passId, int ordinal) {
+        int[] tags = tagsOf(passId);
+        for (int t : tags) {
+            if (t == ordinal) {
+                return;
+            }
+        }
+        int[] grown = Arrays.copyOf(tags, tags.length + 1);
+        grown[tags.length] = ordinal;
+        tagsByPass.put(passId, grown);
+    }
+
+    private void untag(long passId, int ordinal) {
+        int[] tags = tagsByPass.get(passId);
+        if (tags == null) {
+            return;
+        }
+        for (int i = 0; i < tags.length; i++) {
+            if (tags[i] == ordinal) {
+                if (tags.length == 1) {
+                    tagsByPass.remove(passId);
+                } else {
+                    int[] shrunk = new int[tags.length - 1];
+                    System.arraycopy(tags, 0, shrunk, 0, i);
+                    System.arraycopy(tags, i + 1, shrunk, i, tags.length - i - 1);
+                    tagsByPass.put(passId, shrunk);
+                }
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.urbanairship.digitalwallet.client;
+
+import java.util.Collections;
+import java.util.Map;
+
+/*
+ * Summary of a TagReconciler run.
+ */
+public class TagReconcileResult {
+    private final TagReconciler.Strategy strategy;
+    private final int readRequests;
+    private final int passCount;
+    private final int passesChanged;
+    private final int tagsAdded;
+    private final int tagsRemoved;
+    private final long millis;
+    private final Map<Long, Exception> errors;
+
+    TagReconcileResult(TagReconciler.Strategy strategy, int readRequests, int passCount, int passesChanged,
+                       int tagsAdded, int tagsRemoved, long millis, Map<Long, Exception> errors) {
+        this.strategy = strategy;
+        this.readRequests = readRequests;
+        this.passCount = passCount;
+        this.passesChanged = passesChanged;
+        this.tagsAdded = tagsAdded;
+        this.tagsRemoved = tagsRemoved;
+        this.millis = millis;
+        this.errors = Collections.unmodifiableMap(errors);
+    }
+
+    /**
+     * @return how the current tags were read.
+     */
+    public TagReconciler.Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * @return the number of requests made to read the current tags.
+     */
+    public int getReadRequests() {
+        return readRequests;
+    }
+
+    public int getPassCount() {
+        return passCount;
+    }
+
+    /**
+     * @return passes that needed tags added or removed.
+     */
+    public int getPassesChanged() {
+        return passesChanged;
+    }
+
+    /**
+     * @return tags added to passes, counting each pass and tag pair once.
+     */
+    public int getTagsAdded() {
+        return tagsAdded;
+    }
+
+    /**
+     * @return tags removed from passes, counting each pass and tag pair once.
+     */
+    public int getTagsRemoved() {
+        return tagsRemoved;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * @return the passes that couldn't be read or changed, with the reason.
+     */
+    public Map<Long, Exception> getErrors() {
+        return errors;
+    }
+
+    public boolean isSuccessful() {
+        return errors.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "TagReconcileResult{strategy=" + strategy + ", readRequests=" + readRequests + ", passCount=" + passCount
+                + ", passesChanged=" + passesChanged + ", tagsAdded=" + tagsAdded + ", tagsRemoved=" + tagsRemoved
+                + ", millis=" + millis + ", errors=" + errors.size() + "}";
+    }
+}
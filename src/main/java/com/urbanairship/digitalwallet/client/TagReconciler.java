@@ -0,0 +1,235 @@
+package com.urbanairship.digitalwallet.client;
+
+import com.urbanairship.digitalwallet.client.util.LongSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/*
+ * Makes the tags on a set of passes match a desired state with as few calls as possible.
+ *
+ * The current tags are read from PassTools.tagIndex when there is one.  Otherwise the tag list is read
+ * and each tag's passes are read page by page, a page of every unfinished tag at a time (tag-centric),
+ * for as long as that has taken fewer calls than reading each pass's tags would.  Once it hasn't, or with
+ * at least as many tags as passes, each pass's tags are read instead (pass-centric), so a few passes
+ * on a tag with a million members cost a few calls, not a thousand pages.  A tag page that can't be read
+ * also falls back to pass-centric, where a failure is reported against one pass.  Each pass then gets at most one
+ * Pass.addTags call plus one Tag.removeFromPass per tag it shouldn't carry.  Passes are read and
+ * changed concurrently on the shared executor, at no more than PassTools.maxRequestsPerSecond.
+ *
+ *      Map<Long, Set<String>> desired = ...;   // from the CRM
+ *      TagReconcileResult result = TagReconciler.reconcile(desired);
+ */
+public class TagReconciler extends PassToolsClient {
+    public enum Strategy {INDEX, TAG, PASS}
+
+    private static final int pageSize = 1000;
+    private static final String missingDesiredError = "please pass a map of pass ids to tags in!";
+
+    /**
+     * Change the tags of the passes in desired to match it.  Passes not in desired are left alone.
+     *
+     * @param desired   the tags each pass should carry, an empty collection to remove all of its tags.
+     * @return          a summary of what was read and changed.
+     */
+    public static TagReconcileResult reconcile(Map<Long, ? extends Collection<String>> desired) {
+        return reconcile(desired, false);
+    }
+
+    /**
+     * @param desired   the tags each pass should carry, an empty collection to remove all of its tags.
+     * @param dryRun    work out the changes and report them, without making them.
+     * @return          a summary of what was read and, unless dryRun is set, changed.
+     */
+    public static TagReconcileResult reconcile(Map<Long, ? extends Collection<String>> desired, boolean dryRun) {
+        checkNotNull(desired, missingDesiredError);
+        long start = System.currentTimeMillis();
+        Map<Long, Exception> errors = new LinkedHashMap<Long, Exception>();
+
+        Current current = readCurrent(desired.keySet(), errors);
+
+        /* the diff, per pass */
+        final Map<Long, List<String>> adds = new LinkedHashMap<Long, List<String>>();
+        final Map<Long, List<String>> removes = new LinkedHashMap<Long, List<String>>();
+        int tagsAdded = 0;
+        int tagsRemoved = 0;
+        for (Map.Entry<Long, ? extends Collection<String>> entry : desired.entrySet()) {
+            Long passId = entry.getKey();
+            if (errors.containsKey(passId)) {
+                continue;
+            }
+            Set<String> want = entry.getValue() == null ? new HashSet<String>() : new HashSet<String>(entry.getValue());
+            Set<String> have = current.tags(passId);
+
+            List<String> add = new ArrayList<String>();
+            for (String tag : want) {
+                if (!have.contains(tag)) {
+                    add.add(tag);
+                }
+            }
+            List<String> remove = new ArrayList<String>();
+            for (String tag : have) {
+                if (!want.contains(tag)) {
+                    remove.add(tag);
+                }
+            }
+            if (!add.isEmpty()) {
+                adds.put(passId, add);
+                tagsAdded += add.size();
+            }
+            if (!remove.isEmpty()) {
+                removes.put(passId, remove);
+                tagsRemoved += remove.size();
+            }
+        }
+
+        Set<Long> changed = new HashSet<Long>(adds.keySet());
+        changed.addAll(removes.keySet());
+        if (!dryRun) {
+            Map<Long, Callable<Void>> calls = new LinkedHashMap<Long, Callable<Void>>();
+            for (final Long passId : changed) {
+                calls.put(passId, new Callable<Void>() {
+                    public Void call() {
+                        List<String> add = adds.get(passId);
+                        if (add != null) {
+                            Pass.addTags(passId, add);
+                        }
+                        List<String> remove = removes.get(passId);
+                        if (remove != null) {
+                            for (String tag : remove) {
+                                Tag.removeFromPass(tag, passId);
+                            }
+                        }
+                        return null;
+                    }
+                });
+            }
+            errors.putAll(executeAll(calls).getErrors());
+        }
+
+        return new TagReconcileResult(current.strategy, current.requests, desired.size(), changed.size(),
+                tagsAdded, tagsRemoved, System.currentTimeMillis() - start, errors);
+    }
+
+    private static Current readCurrent(Set<Long> passIds, Map<Long, Exception> errors) {
+        TagIndex index = PassTools.tagIndex;
+        if (index != null) {
+            Current current = new Current(Strategy.INDEX);
+            for (Long passId : passIds) {
+                current.tagsByPass.put(passId, index.getTagNames(passId));
+            }
+            return current;
+        }
+
+        List<String> tags = new ArrayList<String>();
+        int listRequests = 0;
+        for (int page = 1; ; page++) {
+            List<Tag> list = Tag.getList(pageSize, page);
+            listRequests++;
+            if (list.isEmpty()) {   /* short pages aren't taken as the last here either */
+                break;
+            }
+            for (Tag tag : list) {
+                tags.add(tag.getTag());
+            }
+        }
+
+        if (tags.size() < passIds.size()) {
+            Current byTag = new Current(Strategy.TAG);
+            if (readByTag(byTag, tags, passIds, passIds.size())) {
+                byTag.requests += listRequests;
+                return byTag;
+            }
+            listRequests += byTag.requests;   /* pages read before giving up on the tags */
+        }
+
+        Current current = new Current(Strategy.PASS);
+        current.requests = listRequests + passIds.size();
+        Map<Long, Callable<List<Tag>>> calls = new LinkedHashMap<Long, Callable<List<Tag>>>();
+        for (final Long passId : passIds) {
+            calls.put(passId, new Callable<List<Tag>>() {
+                public List<Tag> call() {
+                    return Pass.getTags(passId);
+                }
+            });
+        }
+        BulkResult<Long, List<Tag>> passTags = executeAll(calls);
+        errors.putAll(passTags.getErrors());
+        for (Map.Entry<Long, List<Tag>> entry : passTags.getResults().entrySet()) {
+            Set<String> names = current.tags(entry.getKey());
+            for (Tag tag : entry.getValue()) {
+                names.add(tag.getTag());
+            }
+        }
+        return current;
+    }
+
+    /*
+     * Read the members of every tag into current a page per tag per round, giving up and returning false before
+     * the calls made would pass budget, or when a page can't be read.  Short pages aren't taken as the last,
+     * so every tag ends on an empty page.
+     */
+    private static boolean readByTag(Current current, List<String> tags, Set<Long> passIds, int budget) {
+        LongSet wanted = LongSet.of(passIds);
+        List<String> open = new ArrayList<String>(tags);
+        for (int page = 1; !open.isEmpty(); page++) {
+            if (current.requests + open.size() > budget) {
+                return false;
+            }
+            current.requests += open.size();
+            final int p = page;
+            Map<String, Callable<List<Pass>>> calls = new LinkedHashMap<String, Callable<List<Pass>>>();
+            for (final String tag : open) {
+                calls.put(tag, new Callable<List<Pass>>() {
+                    public List<Pass> call() {
+                        return Tag.getPasses(tag, pageSize, p);
+                    }
+                });
+            }
+            BulkResult<String, List<Pass>> pages = executeAll(calls);
+            if (pages.hasErrors()) {
+                return false;   /* read pass by pass instead, where a failure costs one pass, not the run */
+            }
+            open.clear();
+            for (Map.Entry<String, List<Pass>> entry : pages.getResults().entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    continue;
+                }
+                open.add(entry.getKey());
+                for (Pass pass : entry.getValue()) {
+                    Long passId = pass.getPassId();
+                    if (passId != null && wanted.contains(passId)) {
+                        current.tags(passId).add(entry.getKey());
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static class Current {
+        final Strategy strategy;
+        final Map<Long, Set<String>> tagsByPass = new HashMap<Long, Set<String>>();
+        int requests;
+
+        Current(Strategy strategy) {
+            this.strategy = strategy;
+        }
+
+        Set<String> tags(Long passId) {
+            Set<String> tags = tagsByPass.get(passId);
+            if (tags == null) {
+                tags = new HashSet<String>();
+                tagsByPass.put(passId, tags);
+            }
+            return tags;
+        }
+    }
+}
@@ -30,6 +30,17 @@ public class Template extends PassToolsClient {
     private boolean disabled;
     private String externalId;
 
+    /*
+     * Templates are decoded lazily, most callers (Project.getProjects in particular) only want the id and name.
+     * The header scalars are decoded together on first access, the dates and fieldsModel only when asked for.
+     */
+    private JSONObject source;
+    private Map<String, Object> headerSource;
+    private String updatedAtValue;
+    private String createdAtValue;
+    private volatile boolean headerDecoded;
+    private volatile boolean fieldsModelDecoded;
+
     private static final String missingExternalIdError = "please pass a valid external Id in!";
 
     /*
@@ -181,7 +192,7 @@ public class Template extends PassToolsClient {
     public static void delete(long templateId) {
         try {
             String url = PassTools.API_BASE + "/template/" + String.valueOf(templateId);
-            PassToolsResponse response = delete(url);
+            delete(url).close();
         } catch (RuntimeException rte) {
             throw rte;
         } catch (Exception e) {
@@ -199,7 +210,7 @@ public class Template extends PassToolsClient {
             checkNotNull(externalId, missingExternalIdError);
 
             String url = PassTools.API_BASE + "/template/id/" + URLEncoder.encode(externalId, "UTF-8");
-            PassToolsResponse response = delete(url);
+            delete(url).close();
         } catch (RuntimeException rte) {
             throw rte;
         } catch (Exception e) {
@@ -338,65 +349,101 @@ public class Template extends PassToolsClient {
      * ***************
      */
     public Map<String, Object> getTemplateHeader() {
+        decodeHeader();
         return templateHeader;
     }
 
+    @SuppressWarnings("unchecked")
     public Map<String, JSONObject> getFieldsModel() {
+        if (!fieldsModelDecoded) {
+            synchronized (this) {
+                if (!fieldsModelDecoded) {
+                    if (source != null && source.get("templateHeader") != null) {
+                        this.fieldsModel = (JSONObject) source.get("fieldsModel");
+                    }
+                    fieldsModelDecoded = true;
+                }
+            }
+        }
         return fieldsModel;
     }
 
     public String getName() {
+        decodeHeader();
         return name;
     }
 
     public String getDescription() {
+        decodeHeader();
         return description;
     }
 
     public String getType() {
+        decodeHeader();
         return type;
     }
 
     public Long getId() {
+        decodeHeader();
         return id;
     }
 
     public Long getProjectId() {
+        decodeHeader();
         return projectId;
     }
 
     public String getProjectType() {
+        decodeHeader();
         return projectType;
     }
 
     public Date getUpdatedAt() {
+        decodeHeader();
+        if (updatedAt == null && updatedAtValue != null) {
+            updatedAt = toTime(updatedAtValue);
+        }
         return updatedAt;
     }
 
     public Date getCreatedAt() {
+        decodeHeader();
+        if (createdAt == null && createdAtValue != null) {
+            createdAt = toTime(createdAtValue);
+        }
         return createdAt;
     }
 
     public String getVendor() {
+        decodeHeader();
         return vendor;
     }
 
     public Long getVendorId() {
+        decodeHeader();
         return vendorId;
     }
 
     public boolean isDeleted() {
+        decodeHeader();
         return deleted;
     }
 
     public boolean isDisabled() {
+        decodeHeader();
         return disabled;
     }
 
     public String getExternalId() {
+        decodeHeader();
         return externalId;
     }
 
+    /* the response this template was built from */
+    JSONObject toJSON() {
+        return source;
+    }
+
     /**
      * **************
      * private methods
@@ -418,9 +465,9 @@ public class Template extends PassToolsClient {
             } else if (key.equals("type")) {
                 this.type = value.toString();
             } else if (key.equals("updatedAt")) {
-                this.updatedAt = toTime(value.toString());
+                this.updatedAtValue = value.toString();
             } else if (key.equals("createdAt")) {
-                this.createdAt = toTime(value.toString());
+                this.createdAtValue = value.toString();
             } else if (key.equals("disabled")) {
                 this.disabled = toBool(value);
             } else if (key.equals("deleted")) {
@@ -439,18 +486,28 @@ public class Template extends PassToolsClient {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private void decodeHeader() {
+        if (!headerDecoded) {
+            synchronized (this) {
+                if (!headerDecoded) {
+                    if (headerSource != null) {
+                        this.templateHeader = new JSONObject();
+                        assignHeaders(headerSource);
+                    }
+                    headerDecoded = true;
+                }
+            }
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private void assign(JSONObject response) {
         reset();
 
+        this.source = response;
         JSONObject headers = (JSONObject) response.get("templateHeader");
-        this.templateHeader = new JSONObject();
-        if (headers != null) {
-            this.fieldsModel = (JSONObject) response.get("fieldsModel");
-            assignHeaders(headers);
-        } else {
-            assignHeaders(response);
-        }
+        this.headerSource = headers != null ? headers : response;
     }
 
     private void reset() {
@@ -464,8 +521,14 @@ public class Template extends PassToolsClient {
         this.projectType = null;
         this.updatedAt = null;
         this.createdAt = null;
+        this.updatedAtValue = null;
+        this.createdAtValue = null;
         this.vendor = null;
         this.vendorId = null;
+        this.source = null;
+        this.headerSource = null;
+        this.headerDecoded = false;
+        this.fieldsModelDecoded = false;
     }
 
     private static Long createTemplateInternal(String name, String description, String templateType, Map<String, Object> headers, Map<String, Object> fields, Long projectId, String externalId) {
@@ -573,6 +636,7 @@ public class Template extends PassToolsClient {
             formFields.put("json", new JSONObject(json));
 
             PassToolsResponse response = put(builder.toString(), formFields);
+            Pass.passesChanged();
 
             JSONObject jsonObj = response.getBodyAsJSONObject();
 
@@ -0,0 +1,14 @@
+package com.urbanairship.digitalwallet.client;
+
+/*
+ * Told by a TemplateMirror when a sync finds a template added, changed or gone.  Called on the thread
+ * doing the sync, after the mirror holds the new state.
+ */
+public interface TemplateListener {
+
+    void templateAdded(Template template);
+
+    void templateChanged(Template previous, Template current);
+
+    void templateRemoved(Template template);
+}
@@ -0,0 +1,306 @@
+package com.urbanairship.digitalwallet.client;
+
+import com.urbanairship.digitalwallet.client.exception.NotFoundException;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * A local copy of every template in the account, kept current by sync().
+ *
+ * Each sync lists the template headers and fetches, concurrently, only the templates that are new or whose
+ * updatedAt has moved; templates no longer listed are dropped.  Reads are answered from memory.  With a store
+ * file the mirror is saved after every sync that changed something and loaded again on construction, so a
+ * restart only fetches what changed while it was down.
+ *
+ *      TemplateMirror templates = new TemplateMirror(new File("/var/cache/myapp/templates.json"));
+ *      templates.addListener(listener);
+ *      templates.sync();
+ *      templates.start(1, TimeUnit.MINUTES);
+ *      Template template = templates.getTemplate(templateId);
+ */
+public class TemplateMirror extends PassToolsClient {
+    private final File storeFile;
+    private final Map<Long, Template> templates = new ConcurrentHashMap<Long, Template>();
+    private final Map<String, Long> externalIds = new ConcurrentHashMap<String, Long>();
+    private final List<TemplateListener> listeners = new CopyOnWriteArrayList<TemplateListener>();
+    private final Object syncLock = new Object();
+    private ScheduledExecutorService poller;
+    private volatile long lastSync;
+    private volatile int lastFetchCount;
+    private volatile Exception lastError;
+
+    public TemplateMirror() {
+        this(null);
+    }
+
+    /**
+     * @param storeFile where the mirror is saved between runs, loaded now if it exists.
+     */
+    public TemplateMirror(File storeFile) {
+        this.storeFile = storeFile;
+        if (storeFile != null && storeFile.exists()) {
+            try {
+                load();
+            } catch (RuntimeException rte) {
+                throw rte;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    public void addListener(TemplateListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TemplateListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Bring the mirror up to date with the server.
+     *
+     * @return the number of templates added, changed or removed.
+     */
+    public int sync() {
+        synchronized (syncLock) {
+            try {
+                List<JSONObject> headers = Template.getMyTemplateHeaders();
+                Set<Long> listed = new HashSet<Long>();
+                Map<Long, Callable<Template>> calls = new LinkedHashMap<Long, Callable<Template>>();
+                for (JSONObject header : headers) {
+                    Long id = toLong(header.get("id"));
+                    if (id == null || toBool(header.get("deleted"))) {
+                        continue;
+                    }
+                    listed.add(id);
+                    Template known = templates.get(id);
+                    if (known == null || !sameTime(known.getUpdatedAt(), header.get("updatedAt"))) {
+                        final long templateId = id;
+                        calls.put(id, new Callable<Template>() {
+                            public Template call() {
+                                return Template.getTemplate(templateId);
+                            }
+                        });
+                    }
+                }
+                BulkResult<Long, Template> fetched = executeAll(calls);
+
+                int changes = 0;
+                for (Map.Entry<Long, Template> entry : fetched.getResults().entrySet()) {
+                    Template previous = put(entry.getKey(), entry.getValue());
+                    for (TemplateListener listener : listeners) {
+                        if (previous == null) {
+                            listener.templateAdded(entry.getValue());
+                        } else {
+                            listener.templateChanged(previous, entry.getValue());
+                        }
+                    }
+                    changes++;
+                }
+                Map.Entry<Long, Exception> failed = null;
+                for (Map.Entry<Long, Exception> entry : fetched.getErrors().entrySet()) {
+                    if (entry.getValue().getCause() instanceof NotFoundException) {
+                        listed.remove(entry.getKey());      /* deleted since it was listed */
+                    } else if (failed == null) {
+                        failed = entry;
+                    }
+                }
+                for (Long id : new ArrayList<Long>(templates.keySet())) {
+                    if (!listed.contains(id)) {
+                        Template removed = remove(id);
+                        for (TemplateListener listener : listeners) {
+                            listener.templateRemoved(removed);
+                        }
+                        changes++;
+                    }
+                }
+
+                lastSync = System.currentTimeMillis();
+                lastFetchCount = fetched.size();
+                if (changes > 0 && storeFile != null) {
+                    save();
+                }
+                if (failed != null) {
+                    throw new RuntimeException("could not fetch template " + failed.getKey(), failed.getValue());
+                }
+                lastError = null;
+                return changes;
+            } catch (RuntimeException rte) {
+                lastError = rte;
+                throw rte;
+            } catch (Exception e) {
+                lastError = e;
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Sync in the background every interval until close().  Failed syncs are kept in getLastError() and
+     * retried at the next interval.
+     */
+    public synchronized void start(long interval, TimeUnit unit) {
+        if (poller != null) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "passtools-template-mirror");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        poller.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    sync();
+                } catch (RuntimeException e) {
+                    /* kept in lastError, the next run tries again */
+                }
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Stop background syncs.
+     */
+    public synchronized void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    /**
+     * @return the template, or null if the mirror doesn't have it.
+     */
+    public Template getTemplate(long templateId) {
+        return templates.get(templateId);
+    }
+
+    /**
+     * @return the template with that external id, or null if the mirror doesn't have it.
+     */
+    public Template getTemplate(String externalId) {
+        Long id = externalIds.get(externalId);
+        return id == null ? null : templates.get(id);
+    }
+
+    public Collection<Template> getTemplates() {
+        return new ArrayList<Template>(templates.values());
+    }
+
+    public int size() {
+        return templates.size();
+    }
+
+    /**
+     * @return when the last sync finished, 0 if none has.
+     */
+    public long getLastSync() {
+        return lastSync;
+    }
+
+    /**
+     * @return templates fetched in full by the last sync.
+     */
+    public int getLastFetchCount() {
+        return lastFetchCount;
+    }
+
+    /**
+     * @return why the last sync failed, null if it didn't.
+     */
+    public Exception getLastError() {
+        return lastError;
+    }
+
+    private Template put(Long id, Template template) {
+        Template previous = templates.put(id, template);
+        if (previous != null && previous.getExternalId() != null) {
+            externalIds.remove(previous.getExternalId());
+        }
+        if (template.getExternalId() != null) {
+            externalIds.put(template.getExternalId(), id);
+        }
+        return previous;
+    }
+
+    private Template remove(Long id) {
+        Template removed = templates.remove(id);
+        if (removed != null && removed.getExternalId() != null) {
+            externalIds.remove(removed.getExternalId());
+        }
+        return removed;
+    }
+
+    private boolean sameTime(Date known, Object listed) {
+        if (known == null || listed == null) {
+            return known == null && listed == null;
+        }
+        return known.equals(toTime(listed.toString()));
+    }
+
+    private void load() throws Exception {
+        Reader in = new InputStreamReader(new FileInputStream(storeFile), "UTF-8");
+        try {
+            JSONArray stored = (JSONArray) new JSONParser().parse(in);
+            for (Object o : stored) {
+                Template template = new Template((JSONObject) o);
+                if (template.getId() != null) {
+                    put(template.getId(), template);
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /* written aside and renamed over, so a crash never leaves half a store */
+    @SuppressWarnings("unchecked")
+    private void save() throws IOException {
+        JSONArray stored = new JSONArray();
+        for (Template template : templates.values()) {
+            stored.add(template.toJSON());
+        }
+        File temp = new File(storeFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            Writer writer = new OutputStreamWriter(out, "UTF-8");
+            stored.writeJSONString(writer);
+            writer.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(storeFile)) {
+            throw new IOException("could not replace " + storeFile);
+        }
+    }
+}
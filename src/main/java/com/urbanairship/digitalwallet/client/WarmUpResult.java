@@ -0,0 +1,89 @@
+package com.urbanairship.digitalwallet.client;
+
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * What a connection warm-up did and how long it took.
+ */
+public class WarmUpResult {
+    private final List<String> hosts;
+    private final long resolveMillis;
+    private final long millis;
+    private final int requestedConnections;
+    private final int validatedConnections;
+    private final int pooledConnections;
+    private final List<Exception> errors;
+
+    WarmUpResult(List<String> hosts, long resolveMillis, long millis, int requestedConnections, int validatedConnections,
+                 int pooledConnections, List<Exception> errors) {
+        this.hosts = Collections.unmodifiableList(hosts);
+        this.resolveMillis = resolveMillis;
+        this.millis = millis;
+        this.requestedConnections = requestedConnections;
+        this.validatedConnections = validatedConnections;
+        this.pooledConnections = pooledConnections;
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * @return the API host that was warmed up, the first of them when there were several.
+     */
+    public String getHost() {
+        return hosts.isEmpty() ? null : hosts.get(0);
+    }
+
+    /**
+     * @return the API hosts that were warmed up, one per base.
+     */
+    public List<String> getHosts() {
+        return hosts;
+    }
+
+    /**
+     * @return milliseconds spent resolving the API hosts.
+     */
+    public long getResolveMillis() {
+        return resolveMillis;
+    }
+
+    /**
+     * @return milliseconds the whole warm-up took, resolution included.
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    public int getRequestedConnections() {
+        return requestedConnections;
+    }
+
+    /**
+     * @return the number of status calls that succeeded.
+     */
+    public int getValidatedConnections() {
+        return validatedConnections;
+    }
+
+    /**
+     * @return idle connections left in the shared pool afterwards, -1 when a custom PassTools.client is used.
+     */
+    public int getPooledConnections() {
+        return pooledConnections;
+    }
+
+    public List<Exception> getErrors() {
+        return errors;
+    }
+
+    public boolean isSuccessful() {
+        return errors.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "WarmUpResult{hosts=" + hosts + ", resolveMillis=" + resolveMillis + ", millis=" + millis
+                + ", validatedConnections=" + validatedConnections + "/" + requestedConnections
+                + ", pooledConnections=" + pooledConnections + ", errors=" + errors.size() + "}";
+    }
+}
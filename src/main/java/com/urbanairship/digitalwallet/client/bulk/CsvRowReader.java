@@ -0,0 +1,138 @@
+package com.urbanairship.digitalwallet.client.bulk;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Reads CSV with a header row, as RFC 4180 describes it: fields may be quoted, quoted fields may hold
+ * commas, line breaks and doubled quotes.  Values are Strings; empty unquoted values are left out of the row.
+ */
+public class CsvRowReader implements RowReader {
+    private final CountingInputStream counter;
+    private final BufferedReader reader;
+    private final long totalBytes;
+    private final char separator;
+    private List<String> header;
+
+    public CsvRowReader(File file) throws IOException {
+        this(new FileInputStream(file), file.length(), ',');
+    }
+
+    /**
+     * @param in            the CSV, UTF-8 encoded.
+     * @param totalBytes    the size of the input, or -1 if not known.
+     * @param separator     the field separator, usually ','.
+     */
+    public CsvRowReader(InputStream in, long totalBytes, char separator) throws IOException {
+        this.counter = new CountingInputStream(in);
+        this.reader = new BufferedReader(new InputStreamReader(counter, "UTF-8"), 65536);
+        this.totalBytes = totalBytes;
+        this.separator = separator;
+    }
+
+    public Map<String, Object> next() throws IOException {
+        if (header == null) {
+            header = readRecord();
+            if (header == null) {
+                return null;
+            }
+            if (!header.isEmpty() && header.get(0).startsWith("\uFEFF")) {
+                header.set(0, header.get(0).substring(1));
+            }
+        }
+        List<String> values;
+        do {
+            values = readRecord();
+            if (values == null) {
+                return null;
+            }
+        } while (values.size() == 1 && values.get(0).length() == 0);   /* blank line */
+
+        Map<String, Object> row = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < values.size() && i < header.size(); i++) {
+            if (values.get(i) != null) {
+                row.put(header.get(i), values.get(i));
+            }
+        }
+        return row;
+    }
+
+    public long getBytesRead() {
+        return counter.getCount();
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /* one record, which may span lines when a quoted field holds a line break; empty unquoted fields are null */
+    private List<String> readRecord() throws IOException {
+        int c = reader.read();
+        if (c < 0) {
+            return null;
+        }
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        while (true) {
+            if (quoted) {
+                if (c < 0) {
+                    throw new IOException("unterminated quoted field");
+                }
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (next >= 0) {
+                            reader.reset();
+                        }
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == separator) {
+                fields.add(value(field, wasQuoted));
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '\n' || c == '\r' || c < 0) {
+                if (c == '\r') {
+                    reader.mark(1);
+                    if (reader.read() != '\n') {
+                        reader.reset();
+                    }
+                }
+                fields.add(value(field, wasQuoted));
+                if (fields.size() == 1 && fields.get(0) == null) {
+                    fields.set(0, "");
+                }
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+
+    private static String value(StringBuilder field, boolean wasQuoted) {
+        return field.length() == 0 && !wasQuoted ? null : field.toString();
+    }
+}
@@ -0,0 +1,54 @@
+package com.urbanairship.digitalwallet.client.bulk;
+
+/*
+ * What a PassExporter run wrote, counting pages and passes written by earlier runs it resumed.
+ */
+public class ExportResult {
+    private final int pages;
+    private final long passes;
+    private final long bytes;
+    private final long millis;
+    private final boolean resumed;
+
+    ExportResult(int pages, long passes, long bytes, long millis, boolean resumed) {
+        this.pages = pages;
+        this.passes = passes;
+        this.bytes = bytes;
+        this.millis = millis;
+        this.resumed = resumed;
+    }
+
+    public int getPages() {
+        return pages;
+    }
+
+    public long getPasses() {
+        return passes;
+    }
+
+    /**
+     * @return the size of the compressed file.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return time taken by this run.
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * @return true if this run carried on from a checkpoint.
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    @Override
+    public String toString() {
+        return passes + " passes in " + pages + " pages, " + bytes + " bytes, " + millis + "ms" + (resumed ? " (resumed)" : "");
+    }
+}
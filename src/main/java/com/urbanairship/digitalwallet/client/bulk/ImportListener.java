@@ -0,0 +1,18 @@
+package com.urbanairship.digitalwallet.client.bulk;
+
+import com.urbanairship.digitalwallet.client.Pass;
+
+import java.util.Map;
+
+/*
+ * Told about each row of a PassImporter run, and about its progress.  created and failed are called from
+ * the sender threads, concurrently and not in row order; progress is called from the thread running the import.
+ */
+public interface ImportListener {
+
+    void created(long row, Map<String, Object> columns, Pass pass);
+
+    void failed(long row, Map<String, Object> columns, Exception e);
+
+    void progress(ImportProgress progress);
+}
@@ -0,0 +1,126 @@
+package com.urbanairship.digitalwallet.client.bulk;
+
+/*
+ * A snapshot of a PassImporter run.  Rows are numbered from 1, not counting a CSV header.
+ */
+public class ImportProgress {
+    private final long rowsRead;
+    private final long rowsSkipped;
+    private final long rowsCreated;
+    private final long rowsFailed;
+    private final long committedRow;
+    private final long rowsToRetry;
+    private final long bytesRead;
+    private final long totalBytes;
+    private final long millis;
+    private final long etaMillis;
+    private final boolean finished;
+
+    ImportProgress(long rowsRead, long rowsSkipped, long rowsCreated, long rowsFailed, long committedRow, long rowsToRetry,
+                   long bytesRead, long totalBytes, long millis, long etaMillis, boolean finished) {
+        this.rowsRead = rowsRead;
+        this.rowsSkipped = rowsSkipped;
+        this.rowsCreated = rowsCreated;
+        this.rowsFailed = rowsFailed;
+        this.committedRow = committedRow;
+        this.rowsToRetry = rowsToRetry;
+        this.bytesRead = bytesRead;
+        this.totalBytes = totalBytes;
+        this.millis = millis;
+        this.etaMillis = etaMillis;
+        this.finished = finished;
+    }
+
+    /**
+     * @return rows read from the file, including skipped ones.
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * @return rows skipped because an earlier run had already committed them.
+     */
+    public long getRowsSkipped() {
+        return rowsSkipped;
+    }
+
+    public long getRowsCreated() {
+        return rowsCreated;
+    }
+
+    public long getRowsFailed() {
+        return rowsFailed;
+    }
+
+    /**
+     * @return the last row such that it and every row before it has been sent, successfully or not.
+     */
+    public long getCommittedRow() {
+        return committedRow;
+    }
+
+    /**
+     * @return committed rows that failed without being refused, such as on a network error, which a later run
+     *         with the same checkpoint sends again.
+     */
+    public long getRowsToRetry() {
+        return rowsToRetry;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return the size of the file, or -1 if it isn't known.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * @return rows sent per second in this run.
+     */
+    public double getRowsPerSecond() {
+        return millis == 0 ? 0 : (rowsCreated + rowsFailed) * 1000.0 / millis;
+    }
+
+    /**
+     * @return estimated time left, from the share of the file read so far, or -1 if it can't be told yet.
+     */
+    public long getEtaMillis() {
+        return etaMillis;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(rowsCreated).append(" created, ").append(rowsFailed).append(" failed");
+        if (rowsSkipped > 0) {
+            sb.append(", ").append(rowsSkipped).append(" skipped");
+        }
+        sb.append(", committed through row ").append(committedRow);
+        if (rowsToRetry > 0) {
+            sb.append(", ").append(rowsToRetry).append(" to retry");
+        }
+        sb.append(String.format(", %.1f rows/s", getRowsPerSecond()));
+        if (totalBytes > 0) {
+            sb.append(String.format(", %.1f%% read", bytesRead * 100.0 / totalBytes));
+        }
+        if (finished) {
+            sb.append(", finished in ").append(millis).append("ms");
+        } else if (etaMillis >= 0) {
+            sb.append(", ").append(etaMillis / 1000).append("s left");
+        }
+        return sb.toString();
+    }
+}
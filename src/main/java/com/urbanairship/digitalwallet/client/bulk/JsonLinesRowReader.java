@@ -0,0 +1,72 @@
+package com.urbanairship.digitalwallet.client.bulk;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Map;
+
+/*
+ * Reads one JSON object per line.  Blank lines are skipped.
+ */
+public class JsonLinesRowReader implements RowReader {
+    private final CountingInputStream counter;
+    private final BufferedReader reader;
+    private final long totalBytes;
+    private final JSONParser parser = new JSONParser();
+    private long line;
+
+    public JsonLinesRowReader(File file) throws IOException {
+        this(new FileInputStream(file), file.length());
+    }
+
+    /**
+     * @param in            the JSON lines, UTF-8 encoded.
+     * @param totalBytes    the size of the input, or -1 if not known.
+     */
+    public JsonLinesRowReader(InputStream in, long totalBytes) throws IOException {
+        this.counter = new CountingInputStream(in);
+        this.reader = new BufferedReader(new InputStreamReader(counter, "UTF-8"), 65536);
+        this.totalBytes = totalBytes;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> next() throws IOException {
+        String text;
+        do {
+            text = reader.readLine();
+            line++;
+            if (text == null) {
+                return null;
+            }
+        } while (text.trim().length() == 0);
+
+        try {
+            Object json = parser.parse(text);
+            if (!(json instanceof JSONObject)) {
+                throw new IOException("line " + line + " is not a JSON object");
+            }
+            return (Map<String, Object>) json;
+        } catch (ParseException e) {
+            throw new IOException("line " + line + " is not valid JSON: " + e);
+        }
+    }
+
+    public long getBytesRead() {
+        return counter.getCount();
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,349 @@
+package com.urbanairship.digitalwallet.client.bulk;
+
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.PassToolsClient;
+import com.urbanairship.digitalwallet.client.PassToolsResponse;
+import com.urbanairship.digitalwallet.client.Priority;
+import com.urbanairship.digitalwallet.client.exception.InvalidParameterException;
+import com.urbanairship.digitalwallet.client.exception.NotFoundException;
+import org.apache.http.HttpEntity;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.util.LinkedList;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * Writes every pass in the account, on a tag or of a template to a gzip-compressed JSON lines file, one
+ * {"id", "externalId", "templateId", "url", "fields"} object per line.  Each page is parsed as it comes off the
+ * connection and each pass written as soon as it is complete, so only one pass is held in memory at a time.
+ *
+ * Every page is written as a gzip member of its own (gzip readers, GZIPInputStream included, read
+ * concatenated members as one stream).  With a checkpoint file, the page number and file length are recorded
+ * after each page is synced to disk; a later run cuts the file back to that length, dropping any half-written
+ * page, and carries on with the next page.  The export finishes at the first empty page, and the checkpoint is
+ * deleted then.
+ *
+ *      PassExporter exporter = PassExporter.forTag("vip");
+ *      exporter.setCheckpointFile(new File("vip.jsonl.gz.checkpoint"));
+ *      ExportResult result = exporter.export(new File("vip.jsonl.gz"));
+ *
+ * The API has no per-template listing, so a template export pages through the whole account and keeps that
+ * template's passes.
+ */
+public class PassExporter extends PassToolsClient {
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    private final String tag;
+    private final Long templateId;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private File checkpointFile;
+
+    private PassExporter(String tag, Long templateId) {
+        this.tag = tag;
+        this.templateId = templateId;
+    }
+
+    /**
+     * @return an exporter for every pass in the account.
+     */
+    public static PassExporter forAccount() {
+        return new PassExporter(null, null);
+    }
+
+    /**
+     * @return an exporter for the passes on a tag.
+     */
+    public static PassExporter forTag(String tag) {
+        checkNotNull(tag, "please pass a valid tag in!");
+        return new PassExporter(tag, null);
+    }
+
+    /**
+     * @return an exporter for the passes of one template.
+     */
+    public static PassExporter forTemplate(long templateId) {
+        return new PassExporter(null, templateId);
+    }
+
+    public void setPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new InvalidParameterException("pageSize must be positive");
+        }
+        this.pageSize = pageSize;
+    }
+
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * Export the passes to a file, carrying on from the checkpoint if there is one.
+     *
+     * @param file  the .jsonl.gz file to write.
+     * @return      what was written.
+     */
+    public ExportResult export(File file) {
+        checkNotNull(file, "please pass a valid file in!");
+        try {
+            long start = System.currentTimeMillis();
+            long[] checkpoint = readCheckpoint();
+            boolean resumed = checkpoint != null && file.exists();
+            int page = resumed ? (int) checkpoint[0] : 0;
+            long passes = resumed ? checkpoint[2] : 0;
+
+            RandomAccessFile truncate = new RandomAccessFile(file, "rw");
+            try {
+                truncate.setLength(resumed ? checkpoint[1] : 0);
+            } finally {
+                truncate.close();
+            }
+
+            FileOutputStream out = new FileOutputStream(file, true);
+            Priority.Scope scope = Priority.BULK.use();   /* page fetches queue behind interactive calls */
+            try {
+                while (true) {
+                    page++;
+                    PageWriter writer = new PageWriter(out, templateId);
+                    int listed = fetchPage(page, writer);
+                    writer.finish();
+                    passes += writer.written;
+                    out.getFD().sync();
+                    writeCheckpoint(page, file.length(), passes);
+                    if (listed == 0) {   /* a short page isn't necessarily the last */
+                        break;
+                    }
+                }
+            } finally {
+                scope.close();
+                out.close();
+            }
+            if (checkpointFile != null) {
+                checkpointFile.delete();
+            }
+            return new ExportResult(page, passes, file.length(), System.currentTimeMillis() - start, resumed);
+        } catch (RuntimeException rte) {
+            throw rte;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /* @return the number of passes the page listed, before any template filter */
+    private int fetchPage(int page, PageWriter writer) throws Exception {
+        StringBuilder builder = new StringBuilder(PassTools.API_BASE);
+        if (tag != null) {
+            builder.append("/tag/").append(URLEncoder.encode(tag, "UTF-8")).append("/passes");
+        } else {
+            builder.append("/pass");
+        }
+        builder.append("?pageSize=").append(pageSize).append("&page=").append(page);
+
+        PassToolsResponse response;
+        try {
+            response = getStreaming(builder.toString());
+        } catch (NotFoundException e) {
+            return 0;   /* nobody has the tag */
+        }
+        try {
+            HttpEntity entity = response.response.getEntity();
+            if (entity == null) {
+                return 0;
+            }
+            Reader reader = new BufferedReader(new InputStreamReader(entity.getContent(), "UTF-8"));
+            new JSONParser().parse(reader, writer);
+            return writer.listed;
+        } finally {
+            response.close();
+        }
+    }
+
+    /* page, file length, passes written; null when there is no checkpoint */
+    private long[] readCheckpoint() throws IOException {
+        if (checkpointFile == null || !checkpointFile.exists()) {
+            return null;
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(checkpointFile), "UTF-8"));
+        try {
+            String line = in.readLine();
+            String[] parts = line == null ? new String[0] : line.trim().split(" ");
+            if (parts.length != 3) {
+                throw new IOException("bad checkpoint in " + checkpointFile);
+            }
+            return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2])};
+        } catch (NumberFormatException e) {
+            throw new IOException("bad checkpoint in " + checkpointFile + ": " + e.getMessage());
+        } finally {
+            in.close();
+        }
+    }
+
+    /* written aside and renamed over, so a crash never leaves half a checkpoint */
+    private void writeCheckpoint(int page, long length, long passes) throws IOException {
+        if (checkpointFile == null) {
+            return;
+        }
+        File temp = new File(checkpointFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            out.write((page + " " + length + " " + passes + "\n").getBytes("UTF-8"));
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(checkpointFile)) {
+            throw new IOException("could not replace " + checkpointFile);
+        }
+    }
+
+    /*
+     * Parses one page of the listing into a gzip member of its own, writing each pass in the "passes" array
+     * as soon as its closing brace is read.  Only the pass being parsed is held.
+     */
+    private static class PageWriter implements ContentHandler {
+        private final GZIPOutputStream gzip;
+        private final Writer out;
+        private final Long templateId;
+        private final LinkedList<Object> containers = new LinkedList<Object>();
+        private final LinkedList<String> keys = new LinkedList<String>();
+        private String topKey;
+        private boolean inPasses;
+        private int depth;
+        int listed;
+        long written;
+
+        PageWriter(OutputStream file, Long templateId) throws IOException {
+            this.gzip = new GZIPOutputStream(new FilterOutputStream(file) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() {
+                    /* the file stays open for the next page */
+                }
+            }, 65536);
+            this.out = new BufferedWriter(new OutputStreamWriter(gzip, "UTF-8"), 65536);
+            this.templateId = templateId;
+        }
+
+        void finish() throws IOException {
+            out.flush();
+            gzip.finish();
+        }
+
+        public void startJSON() {
+        }
+
+        public void endJSON() {
+        }
+
+        public boolean startObject() {
+            depth++;
+            if (inPasses && depth >= 3) {
+                containers.push(new JSONObject());
+            }
+            return true;
+        }
+
+        public boolean endObject() throws org.json.simple.parser.ParseException, IOException {
+            if (inPasses && depth >= 3) {
+                Object done = containers.pop();
+                if (depth == 3) {
+                    pass((JSONObject) done);
+                } else {
+                    add(done);
+                }
+            }
+            depth--;
+            return true;
+        }
+
+        public boolean startObjectEntry(String key) {
+            if (depth == 1) {
+                topKey = key;
+            } else if (inPasses && depth >= 3) {
+                keys.push(key);
+            }
+            return true;
+        }
+
+        public boolean endObjectEntry() {
+            if (inPasses && depth >= 3) {
+                keys.pop();
+            }
+            return true;
+        }
+
+        public boolean startArray() {
+            depth++;
+            if (depth == 2 && "passes".equals(topKey)) {
+                inPasses = true;
+            } else if (inPasses && depth >= 3) {
+                containers.push(new JSONArray());
+            }
+            return true;
+        }
+
+        public boolean endArray() {
+            if (inPasses && depth >= 3) {
+                add(containers.pop());
+            } else if (depth == 2) {
+                inPasses = false;
+            }
+            depth--;
+            return true;
+        }
+
+        public boolean primitive(Object value) {
+            if (inPasses && depth >= 3) {
+                add(value);
+            }
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void add(Object value) {
+            Object container = containers.peek();
+            if (container instanceof JSONObject) {
+                ((JSONObject) container).put(keys.peek(), value);
+            } else {
+                ((JSONArray) container).add(value);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void pass(JSONObject pass) throws IOException {
+            listed++;
+            if (templateId != null && !templateId.equals(pass.get("templateId"))) {
+                return;
+            }
+            JSONObject line = new JSONObject();
+            line.put("id", pass.get("id"));
+            line.put("externalId", pass.get("externalId"));
+            line.put("templateId", pass.get("templateId"));
+            line.put("url", pass.get("url"));
+            line.put("fields", pass.get("fields"));
+            line.writeJSONString(out);
+            out.write('\n');
+            written++;
+        }
+    }
+}
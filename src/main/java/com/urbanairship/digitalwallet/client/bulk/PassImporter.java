@@ -0,0 +1,498 @@
+package com.urbanairship.digitalwallet.client.bulk;
+
+import com.urbanairship.digitalwallet.client.Deadline;
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.Priority;
+import com.urbanairship.digitalwallet.client.exception.ApiException;
+import com.urbanairship.digitalwallet.client.exception.AuthenticationException;
+import com.urbanairship.digitalwallet.client.exception.DeadlineExceededException;
+import com.urbanairship.digitalwallet.client.exception.InvalidParameterException;
+import com.urbanairship.digitalwallet.client.exception.InvalidRequestException;
+import com.urbanairship.digitalwallet.client.exception.PassToolsException;
+import com.urbanairship.digitalwallet.client.util.LongSet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Creates a pass for each row of a file, streaming it through three stages: a reader thread, a mapper thread
+ * that turns rows into pass fields, and a pool of sender threads.  The stages are joined by bounded queues, so
+ * the reader waits when the senders fall behind and memory stays flat however big the file is.
+ *
+ * With a checkpoint file, the last row committed (that row and every one before it has been sent) is written
+ * to it as the import goes, and a later run with the same file skips up to that row.  Committed rows that failed
+ * without being refused (retries ran out on throttling, server or network errors, or the deadline passed) are
+ * listed in the checkpoint too, and the later run sends them again; rows the server refused, or the mapper
+ * couldn't map, are not.  Rows sent after the checkpoint but before a crash are sent again; give rows an
+ * external id column so they are upserted, or they may be created twice.  The checkpoint is left in place
+ * when the import finishes.
+ *
+ *      PassImporter importer = new PassImporter(templateId, new CsvRowReader(file), new TemplateRowMapper(template));
+ *      importer.setExternalIdColumn("customerId");
+ *      importer.setCheckpointFile(new File(file.getPath() + ".checkpoint"));
+ *      ImportProgress done = importer.run();
+ *
+ * Throttling, server errors and network failures are retried with backoff; a row that still fails, or is
+ * refused, is counted as failed and handed to the listener.  Requests are paced by PassTools.maxRequestsPerSecond,
+ * and held to the Deadline of the thread calling run(), if it has one.
+ */
+public class PassImporter {
+    public static final int DEFAULT_SENDERS = 8;
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+    private static final long MIN_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+    private static final Row END = new Row(0, null);
+
+    private final long templateId;
+    private final RowReader reader;
+    private final RowMapper mapper;
+    private String externalIdColumn;
+    private int senders = DEFAULT_SENDERS;
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+    private int maxAttempts = 5;
+    private long progressIntervalMillis = 5000;
+    private File checkpointFile;
+    private ImportListener listener;
+
+    private final Object lock = new Object();
+    private final LongSet completed = new LongSet();
+    private final LongSet retry = new LongSet();    /* committed or completed rows to send again in a later run */
+    private final LongSet replay = new LongSet();   /* rows up to the checkpoint that this run sends again */
+    private int retryChanges;
+    private int retryChangesWritten;
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsCreated = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+    private volatile boolean stopped;
+    private volatile Exception error;
+    private long rowsSkipped;
+    private long committed;
+    private long written = -1;
+    private long started;
+    private long sendingStarted;
+    private long sendingStartBytes;
+
+    public PassImporter(long templateId, RowReader reader, RowMapper mapper) {
+        this.templateId = templateId;
+        this.reader = reader;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Upsert each row by the external id in this column, rather than creating it without one.
+     */
+    public void setExternalIdColumn(String externalIdColumn) {
+        this.externalIdColumn = externalIdColumn;
+    }
+
+    public void setSenders(int senders) {
+        if (senders < 1) {
+            throw new InvalidParameterException("at least one sender is needed");
+        }
+        this.senders = senders;
+    }
+
+    /**
+     * @param queueSize rows held between each pair of stages.
+     */
+    public void setQueueSize(int queueSize) {
+        if (queueSize < 1) {
+            throw new InvalidParameterException("queueSize must be positive");
+        }
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * @param maxAttempts tries for a row that keeps being throttled or hitting server errors.
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    public void setProgressIntervalMillis(long progressIntervalMillis) {
+        this.progressIntervalMillis = Math.max(1, progressIntervalMillis);
+    }
+
+    public void setCheckpointFile(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    public void setListener(ImportListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Stop reading and sending.  Rows already being sent finish; run() then returns.
+     */
+    public void cancel() {
+        stopped = true;
+    }
+
+    /**
+     * Run the import, blocking until every row is sent or the import is cancelled.  The reader is closed.
+     *
+     * @return the final progress.
+     */
+    public ImportProgress run() {
+        try {
+            started = System.currentTimeMillis();
+            committed = readCheckpoint();
+            retry.addAll(replay);
+            final long skipTo = committed;
+            final BlockingQueue<Row> rows = new ArrayBlockingQueue<Row>(queueSize);
+            final BlockingQueue<Row> mapped = new ArrayBlockingQueue<Row>(queueSize);
+
+            List<Thread> threads = new ArrayList<Thread>();
+            threads.add(new Thread(new Runnable() {
+                public void run() {
+                    read(rows, skipTo);
+                }
+            }, "passtools-import-reader"));
+            threads.add(new Thread(new Runnable() {
+                public void run() {
+                    map(rows, mapped);
+                }
+            }, "passtools-import-mapper"));
+            for (int i = 0; i < senders; i++) {
+                /* senders are held to the caller's deadline, if it has one, and queue behind interactive calls */
+                threads.add(new Thread(Deadline.propagate(new Runnable() {
+                    public void run() {
+                        Priority.Scope scope = Priority.BULK.use();
+                        try {
+                            send(mapped);
+                        } finally {
+                            scope.close();
+                        }
+                    }
+                }), "passtools-import-sender-" + i));
+            }
+            for (Thread thread : threads) {
+                thread.setDaemon(true);
+                thread.start();
+            }
+
+            for (Thread thread : threads) {
+                while (thread.isAlive()) {
+                    thread.join(progressIntervalMillis);
+                    if (thread.isAlive()) {
+                        checkpoint(false);
+                    }
+                }
+            }
+            ImportProgress progress = checkpoint(true);
+            if (error != null) {
+                throw error;
+            }
+            return progress;
+        } catch (RuntimeException rte) {
+            throw rte;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                /* nothing more to read */
+            }
+        }
+    }
+
+    /**
+     * @return how far the import has got.
+     */
+    public ImportProgress getProgress() {
+        return progress(false);
+    }
+
+    private void read(BlockingQueue<Row> rows, long skipTo) {
+        try {
+            long number = 0;
+            Map<String, Object> columns;
+            while (!stopped && (columns = reader.next()) != null) {
+                number++;
+                rowsRead.incrementAndGet();
+                if (number <= skipTo && !replay.contains(number)) {
+                    synchronized (lock) {
+                        rowsSkipped++;
+                    }
+                    continue;
+                }
+                if (sendingStarted == 0) {
+                    synchronized (lock) {
+                        sendingStarted = System.currentTimeMillis();
+                        sendingStartBytes = reader.getBytesRead();
+                    }
+                }
+                rows.put(new Row(number, columns));
+            }
+        } catch (InterruptedException e) {
+            stopped = true;
+        } catch (Exception e) {
+            error = e;
+            stopped = true;
+        } finally {
+            putQuietly(rows, END);
+        }
+    }
+
+    private void map(BlockingQueue<Row> rows, BlockingQueue<Row> mapped) {
+        try {
+            while (true) {
+                Row row = rows.take();
+                if (row == END) {
+                    break;
+                }
+                if (stopped) {
+                    continue;
+                }
+                try {
+                    row.fields = mapper.toFields(row.columns);
+                } catch (RuntimeException e) {
+                    failed(row, e, false);   /* the same row maps the same way next time */
+                    continue;
+                }
+                mapped.put(row);
+            }
+        } catch (InterruptedException e) {
+            stopped = true;
+        } finally {
+            for (int i = 0; i < senders; i++) {
+                putQuietly(mapped, END);
+            }
+        }
+    }
+
+    private void send(BlockingQueue<Row> mapped) {
+        try {
+            while (true) {
+                Row row = mapped.take();
+                if (row == END) {
+                    return;
+                }
+                if (stopped) {
+                    continue;
+                }
+                Pass pass;
+                try {
+                    pass = sendWithRetries(row);
+                } catch (InterruptedException e) {
+                    stopped = true;
+                    return;
+                } catch (RuntimeException e) {
+                    failed(row, e, !isRefused(e));
+                    continue;
+                }
+                rowsCreated.incrementAndGet();
+                complete(row.number, false);
+                if (listener != null) {
+                    listener.created(row.number, row.columns, pass);
+                }
+            }
+        } catch (InterruptedException e) {
+            stopped = true;
+        }
+    }
+
+    private Pass sendWithRetries(Row row) throws InterruptedException {
+        long backoff = MIN_BACKOFF_MILLIS;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (externalIdColumn == null) {
+                    return Pass.create(templateId, row.fields);
+                }
+                Object externalId = row.columns.get(externalIdColumn);
+                if (externalId == null || externalId.toString().length() == 0) {
+                    throw new InvalidParameterException("row " + row.number + " has no " + externalIdColumn);
+                }
+                return Pass.upsert(templateId, externalId.toString(), row.fields);
+            } catch (RuntimeException e) {
+                Deadline deadline = Deadline.current();
+                if (attempt >= maxAttempts || stopped || !isRetryable(e)
+                        || (deadline != null && deadline.remaining(TimeUnit.MILLISECONDS) < backoff)) {
+                    throw e;
+                }
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private void failed(Row row, Exception e, boolean sendAgain) {
+        rowsFailed.incrementAndGet();
+        complete(row.number, sendAgain);
+        if (listener != null) {
+            listener.failed(row.number, row.columns, e);
+        }
+    }
+
+    /* advance the committed row over every contiguous completed row, remembering the row if it's to be sent again */
+    private void complete(long number, boolean sendAgain) {
+        synchronized (lock) {
+            if (sendAgain ? retry.add(number) : retry.remove(number)) {
+                retryChanges++;
+            }
+            if (number <= committed) {
+                return;   /* a row from the checkpoint's retry list */
+            }
+            if (number == committed + 1) {
+                committed = number;
+                while (completed.remove(committed + 1)) {
+                    committed++;
+                }
+            } else {
+                completed.add(number);
+            }
+        }
+    }
+
+    private ImportProgress checkpoint(boolean finished) throws IOException {
+        ImportProgress progress = progress(finished);
+        if (checkpointFile != null) {
+            long row;
+            long[] retryRows;
+            int changes;
+            synchronized (lock) {
+                row = committed;
+                changes = retryChanges;
+                retryRows = retryRowsThrough(row);
+            }
+            if (row != written || changes != retryChangesWritten) {
+                writeCheckpoint(row, retryRows);
+                written = row;
+                retryChangesWritten = changes;
+            }
+        }
+        if (listener != null) {
+            listener.progress(progress);
+        }
+        return progress;
+    }
+
+    private ImportProgress progress(boolean finished) {
+        long now = System.currentTimeMillis();
+        long bytesRead = reader.getBytesRead();
+        long totalBytes = reader.getTotalBytes();
+        synchronized (lock) {
+            long eta = -1;
+            if (finished) {
+                eta = 0;
+            } else if (totalBytes > 0 && sendingStarted > 0 && bytesRead > sendingStartBytes) {
+                double rate = (double) (bytesRead - sendingStartBytes) / Math.max(1, now - sendingStarted);
+                eta = (long) (Math.max(0, totalBytes - bytesRead) / rate);
+            }
+            return new ImportProgress(rowsRead.get(), rowsSkipped, rowsCreated.get(), rowsFailed.get(), committed,
+                    retryRowsThrough(committed).length,
+                    bytesRead, totalBytes, now - started, eta, finished);
+        }
+    }
+
+    /* rows to send again that a checkpoint at this row has to list; under lock */
+    private long[] retryRowsThrough(long row) {
+        long[] rows = retry.toArray();
+        int n = 0;
+        while (n < rows.length && rows[n] <= row) {
+            n++;
+        }
+        return n == rows.length ? rows : Arrays.copyOf(rows, n);
+    }
+
+    /* the committed row on the first line, then any rows to send again one per line */
+    private long readCheckpoint() throws IOException {
+        if (checkpointFile == null || !checkpointFile.exists()) {
+            return 0;
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(checkpointFile), "UTF-8"));
+        try {
+            String line = in.readLine();
+            long row = line == null || line.trim().length() == 0 ? 0 : Long.parseLong(line.trim());
+            while ((line = in.readLine()) != null) {
+                if (line.trim().length() > 0) {
+                    replay.add(Long.parseLong(line.trim()));
+                }
+            }
+            return row;
+        } catch (NumberFormatException e) {
+            throw new IOException("bad checkpoint in " + checkpointFile + ": " + e.getMessage());
+        } finally {
+            in.close();
+        }
+    }
+
+    /* written aside and renamed over, so a crash never leaves half a checkpoint */
+    private void writeCheckpoint(long row, long[] retryRows) throws IOException {
+        File temp = new File(checkpointFile.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            StringBuilder text = new StringBuilder().append(row).append('\n');
+            for (long retryRow : retryRows) {
+                text.append(retryRow).append('\n');
+            }
+            out.write(text.toString().getBytes("UTF-8"));
+            ((FileOutputStream) out).getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(checkpointFile)) {
+            throw new IOException("could not replace " + checkpointFile);
+        }
+    }
+
+    private static void putQuietly(BlockingQueue<Row> queue, Row row) {
+        while (true) {
+            try {
+                queue.put(row);
+                return;
+            } catch (InterruptedException e) {
+                /* the next stage has to hear that we're done */
+            }
+        }
+    }
+
+    /* the server turned the row itself down, so sending it again won't help */
+    private static boolean isRefused(RuntimeException e) {
+        Throwable cause = e;
+        while (cause != null && !(cause instanceof PassToolsException || cause instanceof InvalidParameterException)) {
+            cause = cause.getCause();
+        }
+        return cause instanceof ApiException || cause instanceof InvalidRequestException
+                || cause instanceof InvalidParameterException;
+    }
+
+    /* throttling, 5xx and anything that never got an answer from the server */
+    private static boolean isRetryable(RuntimeException e) {
+        Throwable cause = e;
+        while (cause != null && !(cause instanceof PassToolsException || cause instanceof InvalidParameterException)) {
+            cause = cause.getCause();
+        }
+        if (cause == null) {
+            return true;
+        }
+        return !(cause instanceof ApiException || cause instanceof InvalidRequestException
+                || cause instanceof AuthenticationException || cause instanceof InvalidParameterException
+                || cause instanceof DeadlineExceededException);
+    }
+
+    private static class Row {
+        final long number;
+        final Map<String, Object> columns;
+        Map<String, Object> fields;
+
+        Row(long number, Map<String, Object> columns) {
+            this.number = number;
+            this.columns = columns;
+        }
+    }
+}
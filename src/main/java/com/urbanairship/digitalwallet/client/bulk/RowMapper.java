@@ -0,0 +1,14 @@
+package com.urbanairship.digitalwallet.client.bulk;
+
+import java.util.Map;
+
+/*
+ * Turns an import row into the fields for Pass.create.
+ */
+public interface RowMapper {
+
+    /**
+     * @return the pass fields for the row.
+     */
+    Map<String, Object> toFields(Map<String, Object> row);
+}
@@ -0,0 +1,26 @@
+package com.urbanairship.digitalwallet.client.bulk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/*
+ * Reads an import file one row at a time.
+ */
+public interface RowReader extends Closeable {
+
+    /**
+     * @return the next row as column name to value, or null at the end of the file.
+     */
+    Map<String, Object> next() throws IOException;
+
+    /**
+     * @return bytes of the file read so far.
+     */
+    long getBytesRead();
+
+    /**
+     * @return the size of the file in bytes, or -1 if it isn't known.
+     */
+    long getTotalBytes();
+}
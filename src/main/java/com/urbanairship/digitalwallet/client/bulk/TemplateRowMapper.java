@@ -0,0 +1,60 @@
+package com.urbanairship.digitalwallet.client.bulk;
+
+import com.urbanairship.digitalwallet.client.Template;
+import com.urbanairship.digitalwallet.client.exception.InvalidParameterException;
+import org.json.simple.JSONObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * Maps row columns onto the fields of a template's fieldsModel.  A column named like a field fills that
+ * field's value; other columns can be pointed at a field with map().  Columns that match no field are ignored.
+ */
+public class TemplateRowMapper implements RowMapper {
+    private final Set<String> fieldNames;
+    private final Map<String, String> columns = new HashMap<String, String>();
+
+    public TemplateRowMapper(Template template) {
+        this(template.getFieldsModel());
+    }
+
+    @SuppressWarnings("unchecked")
+    public TemplateRowMapper(Map fieldsModel) {
+        if (fieldsModel == null) {
+            throw new InvalidParameterException("the template has no fieldsModel");
+        }
+        this.fieldNames = fieldsModel.keySet();
+    }
+
+    /**
+     * Fill a field from a column with a different name.
+     *
+     * @return this mapper.
+     */
+    public TemplateRowMapper map(String column, String field) {
+        if (!fieldNames.contains(field)) {
+            throw new InvalidParameterException("the template has no field " + field);
+        }
+        columns.put(column, field);
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> toFields(Map<String, Object> row) {
+        Map<String, Object> fields = new JSONObject();
+        for (Map.Entry<String, Object> column : row.entrySet()) {
+            String field = columns.get(column.getKey());
+            if (field == null && fieldNames.contains(column.getKey())) {
+                field = column.getKey();
+            }
+            if (field != null && column.getValue() != null) {
+                JSONObject value = new JSONObject();
+                value.put("value", column.getValue());
+                fields.put(field, value);
+            }
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,364 @@
+package com.urbanairship.digitalwallet.client.data;
+
+import com.urbanairship.digitalwallet.client.exception.InvalidParameterException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Finds the locations nearest to a point, for picking the handful of store locations to put on a pass.
+ *
+ * Each location is turned into a point on the unit sphere, so distances are right across the
+ * antimeridian and near the poles, and the points are kept in a balanced k-d tree laid out in
+ * primitive arrays.  The index can't be changed once built and is safe to query from many threads.
+ *
+ *      LocationIndex stores = new LocationIndex(storeLocations);
+ *      Pass.addLocations(passId, stores.nearest(home.latitude, home.longitude, 10));
+ */
+public class LocationIndex {
+    public static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    private final LocationInfo[] locations;
+    private final double[] x, y, z;     /* tree order */
+    private final int[] ids;            /* tree position to index in locations */
+    private final byte[] axes;          /* the axis each node splits on */
+
+    /**
+     * @param locations locations to index, each with a latitude and longitude.
+     */
+    public LocationIndex(List<LocationInfo> locations) {
+        if (locations == null) {
+            throw new InvalidParameterException("please pass a list of locations in!");
+        }
+        int n = locations.size();
+        this.locations = locations.toArray(new LocationInfo[n]);
+        x = new double[n];
+        y = new double[n];
+        z = new double[n];
+        ids = new int[n];
+        axes = new byte[n];
+
+        double[] point = new double[3];
+        for (int i = 0; i < n; i++) {
+            LocationInfo location = this.locations[i];
+            if (location == null || location.latitude == null || location.longitude == null) {
+                throw new InvalidParameterException("latitude and longitude are required!");
+            }
+            toPoint(location.latitude, location.longitude, point);
+            x[i] = point[0];
+            y[i] = point[1];
+            z[i] = point[2];
+            ids[i] = i;
+        }
+        build(0, n);
+    }
+
+    public int size() {
+        return locations.length;
+    }
+
+    public LocationInfo get(int index) {
+        return locations[index];
+    }
+
+    /**
+     * @return up to k locations, nearest first.
+     */
+    public List<LocationInfo> nearest(double latitude, double longitude, int k) {
+        return toLocations(nearestIndexes(latitude, longitude, k));
+    }
+
+    /**
+     * @return the positions, for get(), of up to k locations, nearest first.
+     */
+    public int[] nearestIndexes(double latitude, double longitude, int k) {
+        int count = Math.min(Math.max(k, 0), locations.length);
+        if (count == 0) {
+            return new int[0];
+        }
+        double[] point = new double[3];
+        toPoint(latitude, longitude, point);
+        Heap heap = new Heap(count);
+        searchNearest(0, locations.length, point[0], point[1], point[2], heap);
+        return heap.sorted();
+    }
+
+    /**
+     * @return the locations within radiusMeters along the surface, nearest first.
+     */
+    public List<LocationInfo> within(double latitude, double longitude, double radiusMeters) {
+        return toLocations(withinIndexes(latitude, longitude, radiusMeters));
+    }
+
+    /**
+     * @return the positions, for get(), of the locations within radiusMeters along the surface, nearest first.
+     */
+    public int[] withinIndexes(double latitude, double longitude, double radiusMeters) {
+        if (radiusMeters < 0 || locations.length == 0) {
+            return new int[0];
+        }
+        double angle = Math.min(Math.PI, radiusMeters / EARTH_RADIUS_METERS);
+        double chord = 2 * Math.sin(angle / 2);
+        double[] point = new double[3];
+        toPoint(latitude, longitude, point);
+
+        Found found = new Found();
+        searchWithin(0, locations.length, point[0], point[1], point[2], chord * chord * (1 + 1e-12), found);
+        return found.sorted();
+    }
+
+    /**
+     * @return the great circle distance between two points, in meters.
+     */
+    public static double distanceMeters(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double dLat = Math.toRadians(latitude2 - latitude1);
+        double dLon = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private static void toPoint(double latitude, double longitude, double[] point) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+        point[0] = cosLat * Math.cos(lon);
+        point[1] = cosLat * Math.sin(lon);
+        point[2] = Math.sin(lat);
+    }
+
+    private List<LocationInfo> toLocations(int[] indexes) {
+        List<LocationInfo> result = new ArrayList<LocationInfo>(indexes.length);
+        for (int index : indexes) {
+            result.add(locations[index]);
+        }
+        return result;
+    }
+
+    private double coordinate(int axis, int i) {
+        return axis == 0 ? x[i] : axis == 1 ? y[i] : z[i];
+    }
+
+    /* the node for [lo, hi) is the median at (lo + hi) / 2, split on the axis with the widest spread */
+    private void build(int lo, int hi) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+        double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (int i = lo; i < hi; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                double c = coordinate(axis, i);
+                min[axis] = Math.min(min[axis], c);
+                max[axis] = Math.max(max[axis], c);
+            }
+        }
+        int axis = 0;
+        for (int a = 1; a < 3; a++) {
+            if (max[a] - min[a] > max[axis] - min[axis]) {
+                axis = a;
+            }
+        }
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, axis);
+        axes[mid] = (byte) axis;
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    /* quickselect, leaving the k-th smallest on axis at k with smaller ones before it */
+    private void select(int left, int right, int k, int axis) {
+        while (right > left) {
+            int pivotIndex = (left + right) >>> 1;
+            double pivot = coordinate(axis, pivotIndex);
+            swap(pivotIndex, right);
+            int store = left;
+            for (int i = left; i < right; i++) {
+                if (coordinate(axis, i) < pivot) {
+                    swap(i, store++);
+                }
+            }
+            swap(store, right);
+            if (store == k) {
+                return;
+            } else if (store < k) {
+                left = store + 1;
+            } else {
+                right = store - 1;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        double t = x[i]; x[i] = x[j]; x[j] = t;
+        t = y[i]; y[i] = y[j]; y[j] = t;
+        t = z[i]; z[i] = z[j]; z[j] = t;
+        int id = ids[i]; ids[i] = ids[j]; ids[j] = id;
+    }
+
+    private double distanceSquared(int i, double px, double py, double pz) {
+        double dx = x[i] - px, dy = y[i] - py, dz = z[i] - pz;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private void searchNearest(int lo, int hi, double px, double py, double pz, Heap heap) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        heap.offer(ids[mid], distanceSquared(mid, px, py, pz));
+        if (hi - lo == 1) {
+            return;
+        }
+        int axis = axes[mid];
+        double diff = (axis == 0 ? px : axis == 1 ? py : pz) - coordinate(axis, mid);
+        if (diff < 0) {
+            searchNearest(lo, mid, px, py, pz, heap);
+            if (diff * diff < heap.bound()) {
+                searchNearest(mid + 1, hi, px, py, pz, heap);
+            }
+        } else {
+            searchNearest(mid + 1, hi, px, py, pz, heap);
+            if (diff * diff < heap.bound()) {
+                searchNearest(lo, mid, px, py, pz, heap);
+            }
+        }
+    }
+
+    private void searchWithin(int lo, int hi, double px, double py, double pz, double limit, Found found) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double d = distanceSquared(mid, px, py, pz);
+        if (d <= limit) {
+            found.add(ids[mid], d);
+        }
+        if (hi - lo == 1) {
+            return;
+        }
+        int axis = axes[mid];
+        double diff = (axis == 0 ? px : axis == 1 ? py : pz) - coordinate(axis, mid);
+        if (diff < 0 || diff * diff <= limit) {
+            searchWithin(lo, mid, px, py, pz, limit, found);
+        }
+        if (diff >= 0 || diff * diff <= limit) {
+            searchWithin(mid + 1, hi, px, py, pz, limit, found);
+        }
+    }
+
+    /*
+     * The k nearest so far, as a max-heap on distance so the farthest can be dropped.
+     */
+    private static final class Heap {
+        final int[] ids;
+        final double[] distances;
+        int size;
+
+        Heap(int capacity) {
+            ids = new int[capacity];
+            distances = new double[capacity];
+        }
+
+        double bound() {
+            return size < ids.length ? Double.MAX_VALUE : distances[0];
+        }
+
+        void offer(int id, double distance) {
+            if (size < ids.length) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (distances[parent] >= distance) {
+                        break;
+                    }
+                    ids[i] = ids[parent];
+                    distances[i] = distances[parent];
+                    i = parent;
+                }
+                ids[i] = id;
+                distances[i] = distance;
+            } else if (distance < distances[0]) {
+                siftDown(id, distance, size);
+            }
+        }
+
+        private void siftDown(int id, double distance, int n) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= n) {
+                    break;
+                }
+                if (child + 1 < n && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (distances[child] <= distance) {
+                    break;
+                }
+                ids[i] = ids[child];
+                distances[i] = distances[child];
+                i = child;
+            }
+            ids[i] = id;
+            distances[i] = distance;
+        }
+
+        /* empties the heap, nearest first */
+        int[] sorted() {
+            int[] result = new int[size];
+            for (int n = size; n > 0; n--) {
+                result[n - 1] = ids[0];
+                siftDown(ids[n - 1], distances[n - 1], n - 1);
+            }
+            size = 0;
+            return result;
+        }
+    }
+
+    private static final class Found {
+        int[] ids = new int[16];
+        double[] distances = new double[16];
+        int size;
+
+        void add(int id, double distance) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            ids[size] = id;
+            distances[size++] = distance;
+        }
+
+        int[] sorted() {
+            sort(0, size - 1);
+            return Arrays.copyOf(ids, size);
+        }
+
+        /* quicksort on distance, moving the ids along */
+        private void sort(int left, int right) {
+            while (left < right) {
+                double pivot = distances[(left + right) >>> 1];
+                int i = left, j = right;
+                while (i <= j) {
+                    while (distances[i] < pivot) i++;
+                    while (distances[j] > pivot) j--;
+                    if (i <= j) {
+                        double d = distances[i]; distances[i] = distances[j]; distances[j] = d;
+                        int id = ids[i]; ids[i] = ids[j]; ids[j] = id;
+                        i++;
+                        j--;
+                    }
+                }
+                if (j - left < right - i) {
+                    sort(left, j);
+                    left = i;
+                } else {
+                    sort(i, right);
+                    right = j;
+                }
+            }
+        }
+    }
+}
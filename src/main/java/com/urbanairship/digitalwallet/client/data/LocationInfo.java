@@ -3,6 +3,11 @@ package com.urbanairship.digitalwallet.client.data;
 
 import com.urbanairship.digitalwallet.client.exception.InvalidParameterException;
 import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
 
 public class LocationInfo {
     public Long id;
@@ -71,6 +76,63 @@ public class LocationInfo {
     }
 
 
+    /**
+     * Write this location as a JSON object, with the same keys as toJSON() plus country,
+     * without building the JSONObject first.
+     */
+    public void writeJSON(Writer out) throws IOException {
+        out.write('{');
+        boolean first = writeMember(out, "longitude", longitude, true);
+        first = writeMember(out, "latitude", latitude, first);
+        first = writeMember(out, "city", city, first);
+        first = writeMember(out, "region", region, first);
+        first = writeMember(out, "regionCode", regionCode, first);
+        first = writeMember(out, "country", country, first);
+        first = writeMember(out, "relevantText", relevantText, first);
+        first = writeMember(out, "streetAddress1", streetAddress1, first);
+        writeMember(out, "streetAddress2", streetAddress2, first);
+        out.write('}');
+    }
+
+    /**
+     * Write the locations as a JSON array.
+     */
+    public static void writeJSON(List<LocationInfo> locations, Writer out) throws IOException {
+        out.write('[');
+        for (int i = 0; i < locations.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            LocationInfo location = locations.get(i);
+            if (location == null) {
+                throw new InvalidParameterException("please pass a non null locationInfo!");
+            }
+            location.writeJSON(out);
+        }
+        out.write(']');
+    }
+
+    private static boolean writeMember(Writer out, String key, Object value, boolean first) throws IOException {
+        if (value == null) {
+            return first;
+        }
+        if (!first) {
+            out.write(',');
+        }
+        out.write('"');
+        out.write(key);
+        out.write("\":");
+        if (value instanceof String) {
+            out.write('"');
+            out.write(JSONValue.escape((String) value));
+            out.write('"');
+        } else {
+            Double d = (Double) value;
+            out.write(d.isNaN() || d.isInfinite() ? "null" : d.toString());
+        }
+        return false;
+    }
+
     public static LocationInfo fromJSON(JSONObject json){
         LocationInfo loc = new LocationInfo();
 
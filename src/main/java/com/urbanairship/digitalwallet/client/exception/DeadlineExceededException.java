@@ -0,0 +1,7 @@
+package com.urbanairship.digitalwallet.client.exception;
+
+
+public class DeadlineExceededException extends PassToolsException {
+    public DeadlineExceededException(String msg){super(msg);}
+    public DeadlineExceededException(String msg, Throwable e){super(msg, e);}
+}
@@ -0,0 +1,5 @@
+package com.urbanairship.digitalwallet.client.exception;
+
+public class NotFoundException extends ApiException {
+    public NotFoundException(String msg){super(msg);}
+}
@@ -0,0 +1,107 @@
+package com.urbanairship.digitalwallet.client.journal;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import java.util.Map;
+
+/*
+ * One pass operation recorded in the journal.  Stored as a small JSON document.
+ */
+public class JournalEntry {
+    public enum Operation {CREATE, UPDATE, PUSH}
+
+    private final long sequence;
+    private final Operation operation;
+    private final Long templateId;
+    private final String templateExternalId;
+    private final Long passId;
+    private final String externalId;
+    private final Map fields;
+
+    JournalEntry(long sequence, Operation operation, Long templateId, String templateExternalId, Long passId, String externalId, Map fields) {
+        this.sequence = sequence;
+        this.operation = operation;
+        this.templateId = templateId;
+        this.templateExternalId = templateExternalId;
+        this.passId = passId;
+        this.externalId = externalId;
+        this.fields = fields;
+    }
+
+    /**
+     * @return the position of this entry in the journal, increasing in the order entries were appended.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public Long getTemplateId() {
+        return templateId;
+    }
+
+    public String getTemplateExternalId() {
+        return templateExternalId;
+    }
+
+    public Long getPassId() {
+        return passId;
+    }
+
+    public String getExternalId() {
+        return externalId;
+    }
+
+    public Map getFields() {
+        return fields;
+    }
+
+    @SuppressWarnings("unchecked")
+    byte[] toBytes() {
+        JSONObject json = new JSONObject();
+        json.put("op", operation.name());
+        putIfSet(json, "templateId", templateId);
+        putIfSet(json, "templateExternalId", templateExternalId);
+        putIfSet(json, "passId", passId);
+        putIfSet(json, "externalId", externalId);
+        putIfSet(json, "fields", fields);
+        try {
+            return json.toJSONString().getBytes("UTF-8");
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static JournalEntry fromBytes(long sequence, byte[] bytes) {
+        try {
+            JSONObject json = (JSONObject) new JSONParser().parse(new String(bytes, "UTF-8"));
+            return new JournalEntry(sequence,
+                    Operation.valueOf((String) json.get("op")),
+                    (Long) json.get("templateId"),
+                    (String) json.get("templateExternalId"),
+                    (Long) json.get("passId"),
+                    (String) json.get("externalId"),
+                    (Map) json.get("fields"));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void putIfSet(JSONObject json, String key, Object value) {
+        if (value != null) {
+            json.put(key, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JournalEntry{sequence=" + sequence + ", operation=" + operation + ", passId=" + passId + ", externalId=" + externalId + "}";
+    }
+}
@@ -0,0 +1,19 @@
+package com.urbanairship.digitalwallet.client.journal;
+
+/*
+ * Told about each journal entry once the server has taken it, or it has been given up on.
+ * Called on the journal's sender thread.  An exception thrown here is logged, and the entry settles all the same.
+ */
+public interface JournalListener {
+
+    /**
+     * @param entry     the entry that was sent.
+     * @param result    the Pass for creates and updates, the push response JSONObject for pushes.
+     */
+    void acknowledged(JournalEntry entry, Object result);
+
+    /**
+     * The server refused the entry, it won't be retried.
+     */
+    void failed(JournalEntry entry, Exception error);
+}
@@ -0,0 +1,137 @@
+package com.urbanairship.digitalwallet.client.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/*
+ * One preallocated, memory-mapped journal file.  Records are laid out back to back:
+ *
+ *      int length | int crc | byte state | long sequence | length bytes of entry
+ *
+ * The length is written last, so a record cut short by a crash reads as the end of the segment.
+ * The crc covers the sequence and entry; the state byte is rewritten in place when the record is settled.
+ */
+class JournalSegment {
+    static final byte PENDING = 0;
+    static final byte ACKED = 1;
+    static final byte FAILED = 2;
+
+    static final int HEADER_SIZE = 17;
+    private static final int STATE_OFFSET = 8;
+
+    private final File file;
+    private final long firstSequence;
+    private final MappedByteBuffer buffer;
+    private int writePosition;
+    private int pending;
+
+    JournalSegment(File file, long firstSequence, int size) throws IOException {
+        this.file = file;
+        this.firstSequence = firstSequence;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() < size) {
+                raf.setLength(size);
+            }
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        } finally {
+            raf.close();   /* the mapping stays valid */
+        }
+    }
+
+    interface Visitor {
+        void visit(int offset, byte state, long sequence, byte[] entry);
+    }
+
+    /**
+     * Walk the complete records and leave the write position after the last one.
+     */
+    void scan(Visitor visitor) {
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+            int crc = buffer.getInt(position + 4);
+            byte state = buffer.get(position + STATE_OFFSET);
+            long sequence = buffer.getLong(position + 9);
+            byte[] entry = new byte[length];
+            for (int i = 0; i < length; i++) {
+                entry[i] = buffer.get(position + HEADER_SIZE + i);
+            }
+            if (crc != crc(sequence, entry)) {
+                break;
+            }
+            if (state == PENDING) {
+                pending++;
+            }
+            visitor.visit(position, state, sequence, entry);
+            position += HEADER_SIZE + length;
+        }
+        writePosition = position;
+    }
+
+    /**
+     * @return the offset of the new record, or -1 when the segment hasn't room for it.
+     */
+    int append(long sequence, byte[] entry) {
+        int position = writePosition;
+        if (position + HEADER_SIZE + entry.length > buffer.capacity()) {
+            return -1;
+        }
+        buffer.putInt(position + 4, crc(sequence, entry));
+        buffer.put(position + STATE_OFFSET, PENDING);
+        buffer.putLong(position + 9, sequence);
+        for (int i = 0; i < entry.length; i++) {
+            buffer.put(position + HEADER_SIZE + i, entry[i]);
+        }
+        buffer.putInt(position, entry.length);
+        writePosition = position + HEADER_SIZE + entry.length;
+        pending++;
+        return position;
+    }
+
+    /**
+     * Settle a pending record.
+     *
+     * @return the number of records in this segment still pending.
+     */
+    int settle(int offset, byte state) {
+        buffer.put(offset + STATE_OFFSET, state);
+        return --pending;
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    boolean delete() {
+        return file.delete();
+    }
+
+    int getPendingCount() {
+        return pending;
+    }
+
+    long getFirstSequence() {
+        return firstSequence;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    private static int crc(long sequence, byte[] entry) {
+        CRC32 crc = new CRC32();
+        for (int i = 56; i >= 0; i -= 8) {
+            crc.update((int) (sequence >>> i) & 0xff);
+        }
+        crc.update(entry, 0, entry.length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,542 @@
+package com.urbanairship.digitalwallet.client.journal;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.exception.ApiException;
+import com.urbanairship.digitalwallet.client.exception.AuthenticationException;
+import com.urbanairship.digitalwallet.client.exception.InvalidParameterException;
+import com.urbanairship.digitalwallet.client.exception.InvalidRequestException;
+import com.urbanairship.digitalwallet.client.exception.PassToolsException;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/*
+ * A local write-ahead log for Pass.create, Pass.update and Pass.push.
+ *
+ * Operations are appended to memory-mapped segment files in the journal directory and return as soon as
+ * they are recorded.  Background threads send them to the server several at a time, paced together by
+ * PassTools.maxRequestsPerSecond.  Entries for the same pass id or external id are sent in the order they
+ * were appended; an update by pass id and one by external id aren't known to be the same pass.
+ * Throttling, server errors and network failures are retried with backoff while later entries for other
+ * passes go ahead, up to setMaxAttempts tries; after that, or on any other refusal, the entry is settled as
+ * failed and the listener is told.  The listener is called from the sender threads.
+ * Entries not yet acknowledged when the journal is closed, or the process dies, are sent after the next start().
+ * A create that reached the server just before a crash is recognised by its external id on replay;
+ * creates without an external id can't be, and may be sent twice.
+ *
+ *      PassJournal journal = new PassJournal(new File("/var/lib/myapp/passes"));
+ *      journal.start();
+ *      journal.update(passId, fields);
+ *      ...
+ *      journal.close();
+ */
+public class PassJournal {
+    public static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+    private static final Logger logger = Logger.getLogger(PassJournal.class.getName());
+    private static final String SUFFIX = ".journal";
+    private static final long MIN_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+    public static final int DEFAULT_SENDERS = 4;
+    public static final int DEFAULT_MAX_ATTEMPTS = 20;
+
+    private final File directory;
+    private final int segmentSize;
+    private final List<JournalSegment> segments = new ArrayList<JournalSegment>();
+    private final LinkedList<Pending> queue = new LinkedList<Pending>();
+    private final Object lock = new Object();
+    private long nextSequence = 1;
+    private int pendingCount;
+    private boolean syncWrites;
+    private int senderCount = DEFAULT_SENDERS;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private volatile JournalListener listener;
+    private volatile boolean running;
+    private final List<Thread> senders = new ArrayList<Thread>();
+
+    public PassJournal(File directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Open the journal, reading back whatever is still pending from an earlier run.
+     *
+     * @param directory     where the segment files live, created if missing.
+     * @param segmentSize   bytes per segment file; an entry bigger than this gets a segment of its own.
+     */
+    public PassJournal(File directory, int segmentSize) {
+        if (segmentSize <= JournalSegment.HEADER_SIZE) {
+            throw new InvalidParameterException("segment size is too small");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("could not create " + directory);
+            }
+            replay();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void setListener(JournalListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param syncWrites force each append out to the disk before returning.  Without it appends survive the
+     *                   process dying but not the machine going down.
+     */
+    public void setSyncWrites(boolean syncWrites) {
+        synchronized (lock) {
+            this.syncWrites = syncWrites;
+        }
+    }
+
+    /**
+     * @param senders   entries sent at the same time, read by start().
+     */
+    public void setSenders(int senders) {
+        if (senders < 1) {
+            throw new InvalidParameterException("at least one sender is needed");
+        }
+        synchronized (lock) {
+            this.senderCount = senders;
+        }
+    }
+
+    /**
+     * @param maxAttempts   tries at sending an entry the server keeps throttling or failing before it is settled as failed.
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new InvalidParameterException("at least one attempt is needed");
+        }
+        synchronized (lock) {
+            this.maxAttempts = maxAttempts;
+        }
+    }
+
+    public long create(long templateId, Map fields) {
+        return append(JournalEntry.Operation.CREATE, templateId, null, null, null, fields);
+    }
+
+    public long create(long templateId, String externalId, Map fields) {
+        return append(JournalEntry.Operation.CREATE, templateId, null, null, externalId, fields);
+    }
+
+    public long create(String templateExternalId, String externalId, Map fields) {
+        return append(JournalEntry.Operation.CREATE, null, templateExternalId, null, externalId, fields);
+    }
+
+    public long update(long passId, Map fields) {
+        return append(JournalEntry.Operation.UPDATE, null, null, passId, null, fields);
+    }
+
+    public long update(String externalId, Map fields) {
+        return append(JournalEntry.Operation.UPDATE, null, null, null, externalId, fields);
+    }
+
+    public long push(long passId) {
+        return append(JournalEntry.Operation.PUSH, null, null, passId, null, null);
+    }
+
+    public long push(String externalId) {
+        return append(JournalEntry.Operation.PUSH, null, null, null, externalId, null);
+    }
+
+    /**
+     * Start sending pending entries in the background.
+     */
+    public void start() {
+        synchronized (lock) {
+            if (running) {
+                return;
+            }
+            running = true;
+            for (int i = 0; i < senderCount; i++) {
+                Thread sender = new Thread(new Runnable() {
+                    public void run() {
+                        drain();
+                    }
+                }, "passtools-journal-" + directory.getName() + "-" + i);
+                sender.setDaemon(true);
+                senders.add(sender);
+                sender.start();
+            }
+        }
+    }
+
+    /**
+     * Stop the senders and flush the segments to disk.  Pending entries stay in the journal for the next start().
+     */
+    public void close() {
+        List<Thread> threads;
+        synchronized (lock) {
+            running = false;
+            threads = new ArrayList<Thread>(senders);
+            senders.clear();
+            lock.notifyAll();
+        }
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (lock) {
+            for (JournalSegment segment : segments) {
+                segment.force();
+            }
+        }
+    }
+
+    /**
+     * @return entries appended but not yet acknowledged or failed.
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pendingCount;
+        }
+    }
+
+    /**
+     * @return the number of segment files in use.
+     */
+    public int getSegmentCount() {
+        synchronized (lock) {
+            return segments.size();
+        }
+    }
+
+    /**
+     * Wait for every pending entry to be settled.
+     *
+     * @return false if the timeout ran out first.
+     */
+    public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (pendingCount > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            }
+            return true;
+        }
+    }
+
+    private long append(JournalEntry.Operation operation, Long templateId, String templateExternalId, Long passId, String externalId, Map fields) {
+        synchronized (lock) {
+            try {
+                long sequence = nextSequence;
+                JournalEntry entry = new JournalEntry(sequence, operation, templateId, templateExternalId, passId, externalId, fields);
+                byte[] bytes = entry.toBytes();
+
+                JournalSegment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+                int offset = segment == null ? -1 : segment.append(sequence, bytes);
+                if (offset < 0) {
+                    if (segment != null && segment.getPendingCount() == 0) {
+                        segments.remove(segment);
+                        segment.delete();
+                    }
+                    segment = newSegment(sequence, Math.max(segmentSize, JournalSegment.HEADER_SIZE + bytes.length));
+                    offset = segment.append(sequence, bytes);
+                }
+                if (syncWrites) {
+                    segment.force();
+                }
+
+                nextSequence++;
+                pendingCount++;
+                queue.addLast(new Pending(entry, segment, offset));
+                lock.notifyAll();
+                return sequence;
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private void replay() throws IOException {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SUFFIX);
+            }
+        });
+        Arrays.sort(files);   /* names are zero padded first sequence numbers */
+
+        for (int i = 0; i < files.length; i++) {
+            File file = files[i];
+            long first = Long.parseLong(file.getName().substring(0, file.getName().length() - SUFFIX.length()));
+            final JournalSegment segment = new JournalSegment(file, first, (int) file.length());
+            segment.scan(new JournalSegment.Visitor() {
+                public void visit(int offset, byte state, long sequence, byte[] entry) {
+                    nextSequence = Math.max(nextSequence, sequence + 1);
+                    if (state == JournalSegment.PENDING) {
+                        queue.addLast(new Pending(JournalEntry.fromBytes(sequence, entry), segment, offset));
+                        pendingCount++;
+                    }
+                }
+            });
+            if (segment.getPendingCount() == 0 && i < files.length - 1) {
+                segment.delete();
+            } else {
+                segments.add(segment);
+            }
+        }
+    }
+
+    private JournalSegment newSegment(long firstSequence, int size) throws IOException {
+        File file = new File(directory, String.format("%020d%s", firstSequence, SUFFIX));
+        JournalSegment segment = new JournalSegment(file, firstSequence, size);
+        segment.scan(new JournalSegment.Visitor() {
+            public void visit(int offset, byte state, long sequence, byte[] entry) {
+            }
+        });
+        segments.add(segment);
+        return segment;
+    }
+
+    private void drain() {
+        while (true) {
+            Pending pending;
+            int attempts;
+            synchronized (lock) {
+                while (true) {
+                    if (!running) {
+                        return;
+                    }
+                    long now = System.currentTimeMillis();
+                    pending = next(now);
+                    if (pending != null) {
+                        break;
+                    }
+                    long retryAt = nextRetry(now);
+                    try {
+                        lock.wait(retryAt == Long.MAX_VALUE ? 0 : retryAt - now);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                pending.sending = true;
+                pending.retryAt = 0;
+                attempts = ++pending.attempts;
+            }
+
+            Object result;
+            try {
+                result = send(pending.entry);
+            } catch (RuntimeException e) {
+                if (!running) {
+                    unclaim(pending, 0);
+                    return;
+                }
+                if (isRetryable(e) && attempts < maxAttempts()) {
+                    unclaim(pending, Math.min(MIN_BACKOFF_MILLIS << Math.min(attempts - 1, 20), MAX_BACKOFF_MILLIS));
+                    continue;
+                }
+                try {
+                    notifyFailed(pending.entry, e);
+                } finally {
+                    settle(pending, JournalSegment.FAILED);
+                }
+                continue;
+            }
+            /* told before it settles, so the next entry for the same pass is acknowledged after it */
+            try {
+                notifyAcknowledged(pending.entry, result);
+            } finally {
+                settle(pending, JournalSegment.ACKED);
+            }
+        }
+    }
+
+    /* the oldest entry not being sent or backing off, and with nothing older for its pass still unsettled; under lock */
+    private Pending next(long now) {
+        Set<Object> held = null;
+        for (Pending pending : queue) {
+            Object key = pending.key();
+            if (pending.sending || pending.retryAt > now) {
+                if (key != null) {
+                    if (held == null) {
+                        held = new HashSet<Object>();
+                    }
+                    held.add(key);
+                }
+            } else if (key == null || held == null || !held.contains(key)) {
+                return pending;
+            }
+        }
+        return null;
+    }
+
+    /* when the soonest entry backing off may be tried again, Long.MAX_VALUE if none is; under lock */
+    private long nextRetry(long now) {
+        long soonest = Long.MAX_VALUE;
+        for (Pending pending : queue) {
+            if (!pending.sending && pending.retryAt > now) {
+                soonest = Math.min(soonest, pending.retryAt);
+            }
+        }
+        return soonest;
+    }
+
+    private void unclaim(Pending pending, long backoffMillis) {
+        synchronized (lock) {
+            pending.sending = false;
+            pending.retryAt = backoffMillis > 0 ? System.currentTimeMillis() + backoffMillis : 0;
+            lock.notifyAll();
+        }
+    }
+
+    private int maxAttempts() {
+        synchronized (lock) {
+            return maxAttempts;
+        }
+    }
+
+    private Object send(JournalEntry entry) {
+        switch (entry.getOperation()) {
+            case CREATE:
+                try {
+                    if (entry.getTemplateExternalId() != null) {
+                        return Pass.create(entry.getTemplateExternalId(), entry.getExternalId(), entry.getFields());
+                    } else if (entry.getExternalId() != null) {
+                        return Pass.create(entry.getTemplateId(), entry.getExternalId(), entry.getFields());
+                    }
+                    return Pass.create(entry.getTemplateId(), entry.getFields());
+                } catch (RuntimeException e) {
+                    /* sent before a crash but never acknowledged, the server already has it */
+                    if (entry.getExternalId() != null && cause(e) instanceof InvalidRequestException) {
+                        Pass existing = findPass(entry.getExternalId());
+                        if (existing != null) {
+                            return existing;
+                        }
+                    }
+                    throw e;
+                }
+            case UPDATE:
+                if (entry.getPassId() != null) {
+                    return Pass.update(entry.getPassId(), entry.getFields());
+                }
+                return Pass.update(entry.getExternalId(), entry.getFields());
+            case PUSH:
+                if (entry.getPassId() != null) {
+                    return Pass.push(entry.getPassId());
+                }
+                return Pass.push(entry.getExternalId());
+            default:
+                throw new IllegalStateException("unknown operation " + entry.getOperation());
+        }
+    }
+
+    private static Pass findPass(String externalId) {
+        try {
+            return Pass.getPass(externalId);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /* throttling, 5xx and anything that never got an answer from the server */
+    private static boolean isRetryable(RuntimeException e) {
+        Throwable cause = cause(e);
+        if (cause instanceof InvalidParameterException) {
+            return false;
+        }
+        return !(cause instanceof ApiException || cause instanceof InvalidRequestException
+                || cause instanceof AuthenticationException);
+    }
+
+    private static Throwable cause(Throwable e) {
+        Throwable t = e;
+        while (t != null && !(t instanceof PassToolsException)) {
+            t = t.getCause();
+        }
+        return t == null ? e : t;
+    }
+
+    private void settle(Pending pending, byte state) {
+        synchronized (lock) {
+            queue.remove(pending);
+            int left = pending.segment.settle(pending.offset, state);
+            if (syncWrites) {
+                pending.segment.force();
+            }
+            if (left == 0 && pending.segment != segments.get(segments.size() - 1)) {
+                segments.remove(pending.segment);
+                pending.segment.delete();
+            }
+            pendingCount--;
+            lock.notifyAll();
+        }
+    }
+
+    /* a listener that throws is logged, not let out to kill the sender */
+    private void notifyAcknowledged(JournalEntry entry, Object result) {
+        JournalListener l = listener;
+        if (l != null) {
+            try {
+                l.acknowledged(entry, result);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "journal listener threw on acknowledged " + entry.getOperation(), e);
+            }
+        }
+    }
+
+    private void notifyFailed(JournalEntry entry, Exception error) {
+        JournalListener l = listener;
+        if (l != null) {
+            try {
+                l.failed(entry, error);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "journal listener threw on failed " + entry.getOperation(), e);
+            }
+        }
+    }
+
+    private static class Pending {
+        final JournalEntry entry;
+        final JournalSegment segment;
+        final int offset;
+        boolean sending;
+        int attempts;
+        long retryAt;
+
+        Pending(JournalEntry entry, JournalSegment segment, int offset) {
+            this.entry = entry;
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        /* the pass this entry is for, null for a create nothing later can refer to */
+        Object key() {
+            if (entry.getPassId() != null) {
+                return entry.getPassId();
+            }
+            return entry.getExternalId();
+        }
+    }
+}
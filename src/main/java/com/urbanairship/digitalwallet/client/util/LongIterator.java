@@ -0,0 +1,10 @@
+package com.urbanairship.digitalwallet.client.util;
+
+/*
+ * Iterates over primitive longs without boxing them.
+ */
+public interface LongIterator {
+    boolean hasNext();
+
+    long next();
+}
@@ -0,0 +1,518 @@
+package com.urbanairship.digitalwallet.client.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/*
+ * A sorted set of primitive longs, compressed along the lines of a roaring bitmap.
+ *
+ * Values are split into chunks by their upper 48 bits.  A chunk holds the lower 16 bits of its values
+ * as a sorted char array while it has up to 4096 of them, and as a 65536 bit bitmap once it has more,
+ * so sparse ids cost two bytes each and dense id ranges about one bit each.
+ * Union, intersection and difference work chunk by chunk without unpacking the values.
+ *
+ * Not thread safe.
+ */
+public class LongSet {
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private long[] keys;
+    private Chunk[] chunks;
+    private int chunkCount;
+
+    public LongSet() {
+        keys = new long[4];
+        chunks = new Chunk[4];
+    }
+
+    public static LongSet of(long... values) {
+        LongSet set = new LongSet();
+        for (long value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    public static LongSet of(Collection<Long> values) {
+        LongSet set = new LongSet();
+        for (Long value : values) {
+            set.add(value);
+        }
+        return set;
+    }
+
+    public static LongSet of(LongList values) {
+        LongSet set = new LongSet();
+        LongIterator i = values.iterator();
+        while (i.hasNext()) {
+            set.add(i.next());
+        }
+        return set;
+    }
+
+    /**
+     * @return true if the value wasn't in the set already.
+     */
+    public boolean add(long value) {
+        long key = value >> 16;
+        int index = Arrays.binarySearch(keys, 0, chunkCount, key);
+        if (index < 0) {
+            index = -index - 1;
+            insertChunk(index, key, new Chunk());
+        }
+        return chunks[index].add((int) (value & 0xffff));
+    }
+
+    /**
+     * @return true if the value was in the set.
+     */
+    public boolean remove(long value) {
+        int index = Arrays.binarySearch(keys, 0, chunkCount, value >> 16);
+        if (index < 0) {
+            return false;
+        }
+        boolean removed = chunks[index].remove((int) (value & 0xffff));
+        if (chunks[index].cardinality == 0) {
+            System.arraycopy(keys, index + 1, keys, index, chunkCount - index - 1);
+            System.arraycopy(chunks, index + 1, chunks, index, chunkCount - index - 1);
+            chunks[--chunkCount] = null;
+        }
+        return removed;
+    }
+
+    public boolean contains(long value) {
+        int index = Arrays.binarySearch(keys, 0, chunkCount, value >> 16);
+        return index >= 0 && chunks[index].contains((int) (value & 0xffff));
+    }
+
+    public void addAll(LongSet other) {
+        LongSet union = union(this, other);
+        keys = union.keys;
+        chunks = union.chunks;
+        chunkCount = union.chunkCount;
+    }
+
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            size += chunks[i].cardinality;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return chunkCount == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(chunks, 0, chunkCount, null);
+        chunkCount = 0;
+    }
+
+    /**
+     * @return roughly how many bytes of heap the set takes.
+     */
+    public long getSizeInBytes() {
+        long bytes = 32 + 8L * keys.length + 4L * chunks.length;
+        for (int i = 0; i < chunkCount; i++) {
+            bytes += chunks[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    public LongSet copy() {
+        LongSet copy = new LongSet();
+        copy.keys = Arrays.copyOf(keys, Math.max(4, chunkCount));
+        copy.chunks = new Chunk[copy.keys.length];
+        for (int i = 0; i < chunkCount; i++) {
+            copy.chunks[i] = chunks[i].copy();
+        }
+        copy.chunkCount = chunkCount;
+        return copy;
+    }
+
+    /**
+     * @return the values in ascending order.
+     */
+    public long[] toArray() {
+        long[] values = new long[size()];
+        int n = 0;
+        LongIterator i = iterator();
+        while (i.hasNext()) {
+            values[n++] = i.next();
+        }
+        return values;
+    }
+
+    /**
+     * @return the values in ascending order, boxed into a new list.
+     */
+    public List<Long> toList() {
+        List<Long> list = new ArrayList<Long>(size());
+        LongIterator i = iterator();
+        while (i.hasNext()) {
+            list.add(i.next());
+        }
+        return list;
+    }
+
+    /**
+     * @return the values in ascending order.
+     */
+    public LongIterator iterator() {
+        return new LongIterator() {
+            private int chunk;
+            private int position;   /* index into an array chunk, bit number in a bitmap chunk */
+            private long next;
+            private boolean ready;
+
+            public boolean hasNext() {
+                while (!ready && chunk < chunkCount) {
+                    int low = chunks[chunk].nextFrom(position);
+                    if (low < 0) {
+                        chunk++;
+                        position = 0;
+                    } else {
+                        next = (keys[chunk] << 16) | chunks[chunk].valueAt(low);
+                        position = chunks[chunk].bitmap == null ? low + 1 : chunks[chunk].valueAt(low) + 1;
+                        ready = true;
+                    }
+                }
+                return ready;
+            }
+
+            public long next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                return next;
+            }
+        };
+    }
+
+    /**
+     * @return a new set with the values in either set.
+     */
+    public static LongSet union(LongSet a, LongSet b) {
+        LongSet result = new LongSet();
+        int i = 0, j = 0;
+        while (i < a.chunkCount || j < b.chunkCount) {
+            if (j == b.chunkCount || (i < a.chunkCount && a.keys[i] < b.keys[j])) {
+                result.appendChunk(a.keys[i], a.chunks[i].copy());
+                i++;
+            } else if (i == a.chunkCount || b.keys[j] < a.keys[i]) {
+                result.appendChunk(b.keys[j], b.chunks[j].copy());
+                j++;
+            } else {
+                result.appendChunk(a.keys[i], Chunk.or(a.chunks[i], b.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return a new set with the values in both sets.
+     */
+    public static LongSet intersection(LongSet a, LongSet b) {
+        LongSet result = new LongSet();
+        int i = 0, j = 0;
+        while (i < a.chunkCount && j < b.chunkCount) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (b.keys[j] < a.keys[i]) {
+                j++;
+            } else {
+                result.appendChunk(a.keys[i], Chunk.and(a.chunks[i], b.chunks[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return a new set with the values in a that aren't in b.
+     */
+    public static LongSet difference(LongSet a, LongSet b) {
+        LongSet result = new LongSet();
+        int j = 0;
+        for (int i = 0; i < a.chunkCount; i++) {
+            while (j < b.chunkCount && b.keys[j] < a.keys[i]) {
+                j++;
+            }
+            if (j < b.chunkCount && b.keys[j] == a.keys[i]) {
+                result.appendChunk(a.keys[i], Chunk.andNot(a.chunks[i], b.chunks[j]));
+            } else {
+                result.appendChunk(a.keys[i], a.chunks[i].copy());
+            }
+        }
+        return result;
+    }
+
+    private void insertChunk(int index, long key, Chunk chunk) {
+        if (chunkCount == keys.length) {
+            keys = Arrays.copyOf(keys, chunkCount * 2);
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, chunkCount - index);
+        System.arraycopy(chunks, index, chunks, index + 1, chunkCount - index);
+        keys[index] = key;
+        chunks[index] = chunk;
+        chunkCount++;
+    }
+
+    /* chunks must come in key order, empty ones are dropped */
+    private void appendChunk(long key, Chunk chunk) {
+        if (chunk.cardinality > 0) {
+            insertChunk(chunkCount, key, chunk);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LongSet)) return false;
+        LongSet other = (LongSet) o;
+        if (chunkCount != other.chunkCount) return false;
+        for (int i = 0; i < chunkCount; i++) {
+            if (keys[i] != other.keys[i] || !Arrays.equals(chunks[i].words(), other.chunks[i].words())) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        LongIterator i = iterator();
+        while (i.hasNext()) {
+            long value = i.next();
+            hash = 31 * hash + (int) (value ^ (value >>> 32));
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /*
+     * The lower 16 bits of the values sharing one key: a sorted array while small, a bitmap when big.
+     */
+    private static final class Chunk {
+        char[] array = new char[4];
+        long[] bitmap;
+        int cardinality;
+
+        boolean contains(int low) {
+            if (bitmap != null) {
+                return (bitmap[low >>> 6] & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, cardinality, (char) low) >= 0;
+        }
+
+        boolean add(int low) {
+            if (bitmap != null) {
+                long bit = 1L << low;
+                if ((bitmap[low >>> 6] & bit) != 0) {
+                    return false;
+                }
+                bitmap[low >>> 6] |= bit;
+                cardinality++;
+                return true;
+            }
+            int index = Arrays.binarySearch(array, 0, cardinality, (char) low);
+            if (index >= 0) {
+                return false;
+            }
+            if (cardinality == ARRAY_MAX) {
+                bitmap = words();
+                array = null;
+                return add(low);
+            }
+            index = -index - 1;
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(array, index, array, index + 1, cardinality - index);
+            array[index] = (char) low;
+            cardinality++;
+            return true;
+        }
+
+        boolean remove(int low) {
+            if (bitmap != null) {
+                long bit = 1L << low;
+                if ((bitmap[low >>> 6] & bit) == 0) {
+                    return false;
+                }
+                bitmap[low >>> 6] &= ~bit;
+                if (--cardinality <= ARRAY_MAX) {
+                    array = toArray(bitmap, cardinality);
+                    bitmap = null;
+                }
+                return true;
+            }
+            int index = Arrays.binarySearch(array, 0, cardinality, (char) low);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(array, index + 1, array, index, cardinality - index - 1);
+            cardinality--;
+            return true;
+        }
+
+        /* the array index, or bit number, of the first value at or after position, -1 if none */
+        int nextFrom(int position) {
+            if (bitmap == null) {
+                return position < cardinality ? position : -1;
+            }
+            int word = position >>> 6;
+            if (word >= BITMAP_WORDS) {
+                return -1;
+            }
+            long bits = bitmap[word] & (-1L << position);
+            while (bits == 0) {
+                if (++word == BITMAP_WORDS) {
+                    return -1;
+                }
+                bits = bitmap[word];
+            }
+            return word * 64 + Long.numberOfTrailingZeros(bits);
+        }
+
+        /* the value at an array index, or the bit number itself for a bitmap */
+        int valueAt(int position) {
+            return bitmap == null ? array[position] : position;
+        }
+
+        long[] words() {
+            if (bitmap != null) {
+                return bitmap.clone();
+            }
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                words[array[i] >>> 6] |= 1L << array[i];
+            }
+            return words;
+        }
+
+        Chunk copy() {
+            Chunk copy = new Chunk();
+            copy.cardinality = cardinality;
+            copy.array = array == null ? null : Arrays.copyOf(array, Math.max(4, cardinality));
+            copy.bitmap = bitmap == null ? null : bitmap.clone();
+            return copy;
+        }
+
+        long sizeInBytes() {
+            return 24 + (bitmap != null ? 16 + 8L * bitmap.length : 16 + 2L * array.length);
+        }
+
+        static Chunk fromWords(long[] words) {
+            Chunk chunk = new Chunk();
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            chunk.cardinality = cardinality;
+            if (cardinality <= ARRAY_MAX) {
+                chunk.array = toArray(words, cardinality);
+            } else {
+                chunk.array = null;
+                chunk.bitmap = words;
+            }
+            return chunk;
+        }
+
+        static Chunk fromArray(char[] values, int cardinality) {
+            Chunk chunk = new Chunk();
+            chunk.array = values;
+            chunk.cardinality = cardinality;
+            return chunk;
+        }
+
+        static Chunk or(Chunk a, Chunk b) {
+            if (a.bitmap == null && b.bitmap == null && a.cardinality + b.cardinality <= ARRAY_MAX) {
+                char[] merged = new char[Math.max(4, a.cardinality + b.cardinality)];
+                int i = 0, j = 0, n = 0;
+                while (i < a.cardinality || j < b.cardinality) {
+                    if (j == b.cardinality || (i < a.cardinality && a.array[i] < b.array[j])) {
+                        merged[n++] = a.array[i++];
+                    } else if (i == a.cardinality || b.array[j] < a.array[i]) {
+                        merged[n++] = b.array[j++];
+                    } else {
+                        merged[n++] = a.array[i++];
+                        j++;
+                    }
+                }
+                return fromArray(merged, n);
+            }
+            long[] words = a.words();
+            long[] other = b.bitmap != null ? b.bitmap : b.words();
+            for (int k = 0; k < BITMAP_WORDS; k++) {
+                words[k] |= other[k];
+            }
+            return fromWords(words);
+        }
+
+        static Chunk and(Chunk a, Chunk b) {
+            if (a.bitmap == null || b.bitmap == null) {
+                Chunk small = a.bitmap == null ? a : b;
+                Chunk other = small == a ? b : a;
+                char[] values = new char[Math.max(4, small.cardinality)];
+                int n = 0;
+                for (int i = 0; i < small.cardinality; i++) {
+                    if (other.contains(small.array[i])) {
+                        values[n++] = small.array[i];
+                    }
+                }
+                return fromArray(values, n);
+            }
+            long[] words = a.words();
+            for (int k = 0; k < BITMAP_WORDS; k++) {
+                words[k] &= b.bitmap[k];
+            }
+            return fromWords(words);
+        }
+
+        static Chunk andNot(Chunk a, Chunk b) {
+            if (a.bitmap == null) {
+                char[] values = new char[Math.max(4, a.cardinality)];
+                int n = 0;
+                for (int i = 0; i < a.cardinality; i++) {
+                    if (!b.contains(a.array[i])) {
+                        values[n++] = a.array[i];
+                    }
+                }
+                return fromArray(values, n);
+            }
+            long[] words = a.words();
+            long[] other = b.bitmap != null ? b.bitmap : b.words();
+            for (int k = 0; k < BITMAP_WORDS; k++) {
+                words[k] &= ~other[k];
+            }
+            return fromWords(words);
+        }
+
+        private static char[] toArray(long[] words, int cardinality) {
+            char[] values = new char[Math.max(4, cardinality)];
+            int n = 0;
+            for (int k = 0; k < words.length; k++) {
+                long bits = words[k];
+                while (bits != 0) {
+                    values[n++] = (char) (k * 64 + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            return values;
+        }
+    }
+}
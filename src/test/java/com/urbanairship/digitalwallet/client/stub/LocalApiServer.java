@@ -0,0 +1,656 @@
+package com.urbanairship.digitalwallet.client.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONAware;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * An embeddable, in-memory stand-in for the PassTools API, for load and integration testing without
+ * an API key or network access.  It speaks the same routes as api.passtools.com (see the route tables
+ * in Pass, Template, Project and Tag) plus /location and /system/status.
+ *
+ *      LocalApiServer server = new LocalApiServer();
+ *      server.setLatency(5, 20);
+ *      server.setThrottleRate(0.01);
+ *      server.start();
+ *      PassTools.API_BASE = server.getApiBase();
+ *
+ * Latency, error and 429 injection apply to every route and can be changed while the server runs.
+ */
+@SuppressWarnings("unchecked")
+public class LocalApiServer {
+    public static final String BASE_PATH = "/v1";
+
+    private final int port;
+    private final int threads;
+    private final LocalApiStore store = new LocalApiStore();
+    private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicLong totalRequests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong injectedThrottles = new AtomicLong();
+    private final Random random = new Random();
+
+    private volatile long minLatencyMillis;
+    private volatile long maxLatencyMillis;
+    private volatile double errorRate;
+    private volatile int errorStatus = 500;
+    private volatile String errorPath;
+    private volatile double throttleRate;
+    private volatile String apiKey;
+    private volatile int maxPageSize;
+    private final AtomicInteger stalledRequests = new AtomicInteger();
+    private volatile long stallMillis;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    private static final String notFoundError = "not found";
+
+    /**
+     * A server on an ephemeral port of the loopback interface.
+     */
+    public LocalApiServer() {
+        this(0, 64);
+    }
+
+    /**
+     * @param port      Port to listen on, 0 picks a free one.
+     * @param threads   Number of request handling threads.
+     */
+    public LocalApiServer(int port, int threads) {
+        this.port = port;
+        this.threads = threads;
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "passtools-local-api-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.createContext(BASE_PATH, new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                LocalApiServer.this.handle(exchange);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+        store.setBaseUrl(getApiBase());
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+            executor = null;
+        }
+    }
+
+    /**
+     * @return the value to assign to PassTools.API_BASE, e.g. http://127.0.0.1:54321/v1
+     */
+    public synchronized String getApiBase() {
+        if (server == null) {
+            throw new IllegalStateException("the server has not been started");
+        }
+        return "http://127.0.0.1:" + server.getAddress().getPort() + BASE_PATH;
+    }
+
+    public synchronized int getPort() {
+        return server == null ? port : server.getAddress().getPort();
+    }
+
+    public LocalApiStore getStore() {
+        return store;
+    }
+
+    /***********
+     * fault injection
+     ***********/
+
+    /**
+     * Delay every response by a uniformly distributed time between min and max.
+     */
+    public void setLatency(long minMillis, long maxMillis) {
+        if (minMillis < 0 || maxMillis < minMillis) {
+            throw new IllegalArgumentException("please pass 0 <= min <= max");
+        }
+        this.minLatencyMillis = minMillis;
+        this.maxLatencyMillis = maxMillis;
+    }
+
+    /**
+     * Hold each of the next requests for an extra time, on top of any latency, for a slow tail.
+     */
+    public void stallNext(int requests, long millis) {
+        this.stallMillis = millis;
+        this.stalledRequests.set(requests);
+    }
+
+    /**
+     * Fail the given fraction of requests with the error status, 500 unless changed by setErrorStatus.
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = checkRate(errorRate);
+    }
+
+    public void setErrorStatus(int errorStatus) {
+        this.errorStatus = errorStatus;
+    }
+
+    /**
+     * Apply the error rate only to paths (decoded, after /v1) starting with this, null for every path.
+     */
+    public void setErrorPath(String errorPath) {
+        this.errorPath = errorPath;
+    }
+
+    /**
+     * Reject the given fraction of requests with 429 Too Many Requests.
+     */
+    public void setThrottleRate(double throttleRate) {
+        this.throttleRate = checkRate(throttleRate);
+    }
+
+    /**
+     * Serve at most this many items a page, whatever pageSize asks for, so pages come back short
+     * before the last.  0 for no limit.
+     */
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Require this api key on every request but /system/status, null accepts anything.
+     */
+    public void setApiKey(String apiKey) {
+        this.apiKey = apiKey;
+    }
+
+    /***********
+     * request counts
+     ***********/
+
+    public long getRequestCount() {
+        return totalRequests.get();
+    }
+
+    /**
+     * @param method    HTTP method, e.g. GET
+     * @param path      Path below the base path, e.g. /pass/12
+     * @return          the number of requests made for exactly that method and path.
+     */
+    public long getRequestCount(String method, String path) {
+        AtomicLong count = requestCounts.get(method + " " + path);
+        return count == null ? 0 : count.get();
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    public long getInjectedThrottleCount() {
+        return injectedThrottles.get();
+    }
+
+    public void resetCounts() {
+        requestCounts.clear();
+        totalRequests.set(0);
+        injectedErrors.set(0);
+        injectedThrottles.set(0);
+    }
+
+    /***********
+     * private methods
+     ***********/
+
+    private void handle(HttpExchange exchange) throws IOException {
+        Reply reply;
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getRawPath().substring(BASE_PATH.length());
+            Map<String, String> params = parseForm(exchange.getRequestURI().getRawQuery());
+            params.putAll(parseForm(readBody(exchange.getRequestBody())));
+
+            totalRequests.incrementAndGet();
+            String decoded = decodePath(path);
+            count(method + " " + decoded);
+
+            reply = inject(decoded);
+            if (reply == null) {
+                if (apiKey != null && !path.equals("/system/status") && !apiKeyMatches(params.get("api_key"))) {
+                    reply = Reply.error(401, "invalid api key");
+                } else {
+                    reply = route(method, segments(path), params);
+                }
+            }
+        } catch (ParseException e) {
+            reply = Reply.error(400, "invalid json: " + e);
+        } catch (NumberFormatException e) {
+            reply = Reply.error(400, "invalid id: " + e.getMessage());
+        } catch (IllegalStateException e) {
+            reply = Reply.error(400, e.getMessage());
+        } catch (Exception e) {
+            reply = Reply.error(500, String.valueOf(e));
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", reply.contentType);
+        exchange.sendResponseHeaders(reply.status, reply.body.length == 0 ? -1 : reply.body.length);
+        OutputStream os = exchange.getResponseBody();
+        try {
+            os.write(reply.body);
+        } finally {
+            os.close();
+            exchange.close();
+        }
+    }
+
+    private Reply inject(String path) throws InterruptedException {
+        long min = minLatencyMillis;
+        long max = maxLatencyMillis;
+        if (max > 0) {
+            long delay = min + (max > min ? (long) (nextDouble() * (max - min + 1)) : 0);
+            TimeUnit.MILLISECONDS.sleep(delay);
+        }
+        for (int stalled = stalledRequests.get(); stalled > 0; stalled = stalledRequests.get()) {
+            if (stalledRequests.compareAndSet(stalled, stalled - 1)) {
+                TimeUnit.MILLISECONDS.sleep(stallMillis);
+                break;
+            }
+        }
+        if (throttleRate > 0 && nextDouble() < throttleRate) {
+            injectedThrottles.incrementAndGet();
+            return Reply.error(429, "too many requests");
+        }
+        String failing = errorPath;
+        if (errorRate > 0 && (failing == null || path.startsWith(failing)) && nextDouble() < errorRate) {
+            injectedErrors.incrementAndGet();
+            return Reply.error(errorStatus, "injected error");
+        }
+        return null;
+    }
+
+    private Reply route(String method, List<String> path, Map<String, String> params) throws Exception {
+        if (path.isEmpty()) {
+            return Reply.error(404, notFoundError);
+        }
+        String resource = path.remove(0);
+        if (resource.equals("pass")) {
+            return routePass(method, path, params);
+        } else if (resource.equals("template")) {
+            return routeTemplate(method, path, params);
+        } else if (resource.equals("project")) {
+            return routeProject(method, path, params);
+        } else if (resource.equals("tag")) {
+            return routeTag(method, path, params);
+        } else if (resource.equals("location") && method.equals("POST") && path.isEmpty()) {
+            return Reply.json(store.createLocation(jsonObject(params)));
+        } else if (resource.equals("system") && path.size() == 1 && path.get(0).equals("status")) {
+            JSONObject status = new JSONObject();
+            status.put("status", "ok");
+            return Reply.json(status);
+        }
+        return Reply.error(404, notFoundError);
+    }
+
+    private Reply routePass(String method, List<String> path, Map<String, String> params) throws Exception {
+        if (path.isEmpty()) {
+            if (method.equals("GET")) {
+                JSONObject json = new JSONObject();
+                json.put("passes", store.listPasses(pageSize(params), intParam(params, "page", 1)));
+                return Reply.json(json);
+            }
+            return Reply.error(405, "method not allowed");
+        }
+
+        if (method.equals("POST") && !path.get(0).equals("id") && path.size() != 2) {
+            /* POST /{templateId} and /{templateId}/id/{externalId} */
+            Long templateId = Long.valueOf(path.get(0));
+            String externalId = path.size() == 3 && path.get(1).equals("id") ? path.get(2) : null;
+            return Reply.jsonOrNotFound(store.createPass(templateId, null, externalId, jsonObject(params)));
+        }
+        if (method.equals("POST") && path.size() == 4 && path.get(0).equals("id") && path.get(2).equals("id")) {
+            /* POST /id/{templateExternalId}/id/{externalId} */
+            return Reply.jsonOrNotFound(store.createPass(null, path.get(1), path.get(3), jsonObject(params)));
+        }
+
+        /* everything else addresses a pass by /{passId} or /id/{externalId} */
+        Long passId = null;
+        String externalId = null;
+        if (path.get(0).equals("id") && path.size() >= 2) {
+            externalId = path.get(1);
+            path = path.subList(2, path.size());
+        } else {
+            passId = Long.valueOf(path.get(0));
+            path = path.subList(1, path.size());
+        }
+        String action = path.isEmpty() ? "" : path.get(0);
+
+        if (action.equals("")) {
+            if (method.equals("GET")) {
+                return Reply.jsonOrNotFound(store.getPass(passId, externalId));
+            } else if (method.equals("PUT")) {
+                return Reply.jsonOrNotFound(store.updatePass(passId, externalId, jsonObject(params)));
+            } else if (method.equals("DELETE")) {
+                return store.deletePass(passId, externalId) ? Reply.success() : Reply.error(404, notFoundError);
+            }
+        } else if (action.equals("viewJSONPass") && method.equals("GET")) {
+            return Reply.jsonOrNotFound(store.viewPassJSON(passId, externalId));
+        } else if (action.equals("download") && method.equals("GET")) {
+            byte[] bytes = store.downloadPass(passId, externalId);
+            return bytes == null ? Reply.error(404, notFoundError) : new Reply(200, "application/vnd.apple.pkpass", bytes);
+        } else if (action.equals("push") && method.equals("PUT")) {
+            return Reply.jsonOrNotFound(store.pushPass(passId, externalId));
+        } else if (action.equals("tags")) {
+            if (method.equals("GET")) {
+                JSONArray tags = store.getPassTags(passId, externalId);
+                return tags == null ? Reply.error(404, notFoundError) : Reply.json(wrap("tags", tags));
+            } else if (method.equals("PUT")) {
+                List<String> tags = (List<String>) jsonObject(params).get("tags");
+                JSONArray newTags = store.addPassTags(passId, externalId, tags == null ? new ArrayList<String>() : tags);
+                return newTags == null ? Reply.error(404, notFoundError) : Reply.json(wrap("newTags", newTags));
+            }
+        } else if (action.equals("locations") && method.equals("POST")) {
+            return Reply.jsonOrNotFound(store.addPassLocations(passId, externalId, locationValues(params)));
+        } else if (action.equals("location") && method.equals("DELETE") && path.size() == 2) {
+            boolean deleted = store.deletePassLocation(passId, externalId, Long.parseLong(path.get(1)));
+            return deleted ? Reply.success() : Reply.error(404, notFoundError);
+        }
+        return Reply.error(404, notFoundError);
+    }
+
+    private Reply routeTemplate(String method, List<String> path, Map<String, String> params) throws Exception {
+        if (method.equals("GET") && path.size() == 1 && path.get(0).equals("headers")) {
+            return Reply.json(wrap("templateHeaders", store.listTemplateHeaders()));
+        }
+        if (method.equals("POST")) {
+            if (!path.isEmpty() && path.get(0).equals("duplicate")) {
+                Long id = path.size() == 2 ? store.duplicateTemplate(Long.valueOf(path.get(1)), null)
+                        : path.size() == 3 ? store.duplicateTemplate(null, path.get(2)) : null;
+                return templateId(id);
+            }
+            /* POST /, /id/{externalId}, /{projectId} and /{projectId}/id/{externalId} */
+            Long projectId = null;
+            if (!path.isEmpty() && !path.get(0).equals("id")) {
+                projectId = Long.valueOf(path.remove(0));
+            }
+            String externalId = path.size() == 2 && path.get(0).equals("id") ? path.get(1) : null;
+            return templateId(store.createTemplate(projectId, externalId, jsonObject(params)));
+        }
+
+        Long templateId = null;
+        String externalId = null;
+        if (path.size() == 2 && path.get(0).equals("id")) {
+            externalId = path.get(1);
+        } else if (path.size() == 1) {
+            templateId = Long.valueOf(path.get(0));
+        } else {
+            return Reply.error(404, notFoundError);
+        }
+
+        if (method.equals("GET")) {
+            return Reply.jsonOrNotFound(store.getTemplate(templateId, externalId));
+        } else if (method.equals("PUT")) {
+            return templateId(store.updateTemplate(templateId, externalId, jsonObject(params)));
+        } else if (method.equals("DELETE")) {
+            return store.deleteTemplate(templateId, externalId) ? Reply.success() : Reply.error(404, notFoundError);
+        }
+        return Reply.error(404, notFoundError);
+    }
+
+    private Reply routeProject(String method, List<String> path, Map<String, String> params) throws Exception {
+        if (path.isEmpty()) {
+            if (method.equals("GET")) {
+                JSONArray projects = store.listProjects(pageSize(params), intParam(params, "page", 1));
+                return Reply.json(wrap("projects", projects));
+            } else if (method.equals("POST")) {
+                return Reply.json(store.createProject(null, jsonObject(params)));
+            }
+            return Reply.error(405, "method not allowed");
+        }
+
+        Long projectId = null;
+        String externalId = null;
+        if (path.size() == 2 && path.get(0).equals("id")) {
+            externalId = path.get(1);
+        } else if (path.size() == 1) {
+            projectId = Long.valueOf(path.get(0));
+        } else {
+            return Reply.error(404, notFoundError);
+        }
+
+        if (method.equals("POST")) {
+            /* POST /id/{externalId} or /{layoutId}, layouts aren't modelled so the layout id is ignored */
+            return Reply.json(store.createProject(externalId, jsonObject(params)));
+        } else if (method.equals("GET")) {
+            return Reply.jsonOrNotFound(store.getProject(projectId, externalId));
+        } else if (method.equals("PUT")) {
+            return Reply.jsonOrNotFound(store.updateProject(projectId, externalId, jsonObject(params)));
+        } else if (method.equals("DELETE")) {
+            return store.deleteProject(projectId, externalId) ? Reply.success() : Reply.error(404, notFoundError);
+        }
+        return Reply.error(404, notFoundError);
+    }
+
+    private Reply routeTag(String method, List<String> path, Map<String, String> params) throws Exception {
+        if (path.isEmpty()) {
+            if (method.equals("GET")) {
+                return Reply.json(wrap("tags", store.listTags(pageSize(params), intParam(params, "page", 1))));
+            }
+            return Reply.error(405, "method not allowed");
+        }
+
+        String tag = path.get(0);
+        if (path.size() == 1 && method.equals("DELETE")) {
+            return Reply.jsonOrNotFound(store.removeTag(tag, true));
+        }
+        if (path.size() == 2 && path.get(1).equals("passes")) {
+            if (method.equals("GET")) {
+                JSONArray passes = store.getTagPasses(tag, pageSize(params), intParam(params, "page", 1));
+                return passes == null ? Reply.error(404, notFoundError) : Reply.json(wrap("passes", passes));
+            } else if (method.equals("PUT")) {
+                Long ticketId = store.updateTagPasses(tag, jsonObject(params));
+                return ticketId == null ? Reply.error(404, notFoundError) : Reply.json(wrap("ticketId", ticketId));
+            } else if (method.equals("DELETE")) {
+                return Reply.jsonOrNotFound(store.removeTag(tag, false));
+            }
+        }
+        if (method.equals("DELETE") && path.size() >= 3 && path.get(1).equals("pass")) {
+            if (path.size() == 3) {
+                return Reply.jsonOrNotFound(store.removeTagFromPass(tag, Long.valueOf(path.get(2)), null));
+            } else if (path.size() == 4 && path.get(2).equals("id")) {
+                return Reply.jsonOrNotFound(store.removeTagFromPass(tag, null, path.get(3)));
+            }
+        }
+        return Reply.error(404, notFoundError);
+    }
+
+    private static Reply templateId(Long id) {
+        return id == null ? Reply.error(404, notFoundError) : Reply.json(wrap("templateId", id));
+    }
+
+    /* locations are accepted as objects, or as the JSON strings older clients send */
+    private static List<Map> locationValues(Map<String, String> params) throws ParseException {
+        List<Map> values = new ArrayList<Map>();
+        Object json = parseJson(params);
+        if (json instanceof List) {
+            for (Object o : (List) json) {
+                if (o instanceof String) {
+                    o = new JSONParser().parse((String) o);
+                }
+                if (o instanceof Map) {
+                    values.add((Map) o);
+                }
+            }
+        }
+        return values;
+    }
+
+    private static JSONObject jsonObject(Map<String, String> params) throws ParseException {
+        Object json = parseJson(params);
+        return json instanceof JSONObject ? (JSONObject) json : new JSONObject();
+    }
+
+    private static Object parseJson(Map<String, String> params) throws ParseException {
+        String json = params.get("json");
+        return json == null ? null : new JSONParser().parse(json);
+    }
+
+    private static JSONObject wrap(String key, Object value) {
+        JSONObject json = new JSONObject();
+        json.put(key, value);
+        return json;
+    }
+
+    private int pageSize(Map<String, String> params) {
+        int pageSize = intParam(params, "pageSize", 10);
+        int max = maxPageSize;
+        return max > 0 ? Math.min(pageSize, max) : pageSize;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private boolean apiKeyMatches(String given) throws IOException {
+        /* the client url encodes the key before form encoding it, so accept either form */
+        return given != null && (given.equals(apiKey) || URLDecoder.decode(given, "UTF-8").equals(apiKey));
+    }
+
+    private void count(String key) {
+        AtomicLong count = requestCounts.get(key);
+        if (count == null) {
+            count = new AtomicLong();
+            AtomicLong existing = ((ConcurrentHashMap<String, AtomicLong>) requestCounts).putIfAbsent(key, count);
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private double nextDouble() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+
+    private static double checkRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("please pass a rate between 0 and 1");
+        }
+        return rate;
+    }
+
+    private static List<String> segments(String rawPath) throws IOException {
+        List<String> segments = new ArrayList<String>();
+        for (String segment : rawPath.split("/")) {
+            if (segment.length() > 0) {
+                segments.add(URLDecoder.decode(segment, "UTF-8"));
+            }
+        }
+        return segments;
+    }
+
+    private static String decodePath(String rawPath) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (String segment : segments(rawPath)) {
+            builder.append('/').append(segment);
+        }
+        return builder.toString();
+    }
+
+    private static Map<String, String> parseForm(String form) throws IOException {
+        Map<String, String> params = new HashMap<String, String>();
+        if (form != null && form.length() > 0) {
+            for (String pair : form.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static String readBody(InputStream is) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = is.read(buffer)) != -1) {
+            bytes.write(buffer, 0, n);
+        }
+        is.close();
+        return bytes.toString("UTF-8");
+    }
+
+    private static class Reply {
+        final int status;
+        final String contentType;
+        final byte[] body;
+
+        Reply(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        static Reply json(JSONAware json) {
+            try {
+                return new Reply(200, "application/json; charset=UTF-8", json.toJSONString().getBytes("UTF-8"));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        static Reply jsonOrNotFound(JSONAware json) {
+            return json == null ? error(404, notFoundError) : json(json);
+        }
+
+        static Reply success() {
+            return json(wrap("status", "success"));
+        }
+
+        static Reply error(int status, String message) {
+            JSONObject json = new JSONObject();
+            json.put("error", message);
+            json.put("code", (long) status);
+            Reply reply = json(json);
+            return new Reply(status, reply.contentType, reply.body);
+        }
+    }
+}
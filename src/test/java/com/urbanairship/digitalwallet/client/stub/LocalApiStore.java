@@ -0,0 +1,746 @@
+package com.urbanairship.digitalwallet.client.stub;
+
+import com.urbanairship.digitalwallet.client.PassRenderer;
+import com.urbanairship.digitalwallet.client.Template;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/*
+ * In-memory state behind LocalApiServer.  Every method is synchronized on the store, the server does
+ * its latency and fault injection outside of the lock so slow responses don't serialize the load.
+ *
+ * Ids are handed out from a single sequence per entity type, starting at 1.
+ */
+@SuppressWarnings("unchecked")
+public class LocalApiStore {
+    private static final DateTimeFormatter timeFormat = ISODateTimeFormat.dateTime();
+
+    private final Map<Long, JSONObject> passes = new LinkedHashMap<Long, JSONObject>();
+    private final Map<String, Long> passExternalIds = new HashMap<String, Long>();
+    private final Map<Long, List<JSONObject>> passLocations = new HashMap<Long, List<JSONObject>>();
+
+    private final Map<Long, JSONObject> templates = new LinkedHashMap<Long, JSONObject>();
+    private final Map<String, Long> templateExternalIds = new HashMap<String, Long>();
+
+    private final Map<Long, JSONObject> projects = new LinkedHashMap<Long, JSONObject>();
+    private final Map<String, Long> projectExternalIds = new HashMap<String, Long>();
+
+    private final Map<String, Long> tagIds = new LinkedHashMap<String, Long>();
+    private final Map<String, Set<Long>> tagPasses = new HashMap<String, Set<Long>>();
+
+    private final Map<Long, JSONObject> locations = new LinkedHashMap<Long, JSONObject>();
+
+    private long nextPassId = 1;
+    private long nextTemplateId = 1;
+    private long nextProjectId = 1;
+    private long nextTagId = 1;
+    private long nextLocationId = 1;
+    private long nextPassLocationId = 1;
+    private long nextTicketId = 1;
+
+    private String baseUrl = "http://localhost/v1";
+
+    /**
+     * The base url used when building the url attribute of passes.
+     */
+    public synchronized void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public synchronized void clear() {
+        passes.clear();
+        passExternalIds.clear();
+        passLocations.clear();
+        templates.clear();
+        templateExternalIds.clear();
+        projects.clear();
+        projectExternalIds.clear();
+        tagIds.clear();
+        tagPasses.clear();
+        locations.clear();
+    }
+
+    /***********
+     * passes
+     ***********/
+
+    public synchronized JSONObject createPass(Long templateId, String templateExternalId, String externalId, Map fields) {
+        JSONObject template = findTemplate(templateId, templateExternalId);
+        if (template == null) {
+            return null;
+        }
+        if (externalId != null && passExternalIds.containsKey(externalId)) {
+            throw new IllegalStateException("a pass with the external id " + externalId + " already exists");
+        }
+
+        JSONObject header = (JSONObject) template.get("templateHeader");
+        long id = nextPassId++;
+        String now = now();
+
+        JSONObject pass = new JSONObject();
+        pass.put("id", id);
+        pass.put("templateId", header.get("id"));
+        if (externalId != null) {
+            pass.put("externalId", externalId);
+            passExternalIds.put(externalId, id);
+        }
+        pass.put("url", baseUrl + "/pass/" + id + "/download");
+        pass.put("fields", mergeFields(copy((Map) template.get("fieldsModel")), passFields(fields)));
+        pass.put("headers", mergeFields(copy((Map) template.get("headers")), passHeaders(fields)));
+        pass.put("createdAt", now);
+        pass.put("updatedAt", now);
+        passes.put(id, pass);
+        return copy(pass);
+    }
+
+    public synchronized JSONObject getPass(Long passId, String externalId) {
+        JSONObject pass = findPass(passId, externalId);
+        return pass == null ? null : copy(pass);
+    }
+
+    public synchronized JSONObject updatePass(Long passId, String externalId, Map fields) {
+        JSONObject pass = findPass(passId, externalId);
+        if (pass == null) {
+            return null;
+        }
+        pass.put("fields", mergeFields((Map) pass.get("fields"), passFields(fields)));
+        pass.put("headers", mergeFields((Map) pass.get("headers"), passHeaders(fields)));
+        pass.put("updatedAt", now());
+        return copy(pass);
+    }
+
+    public synchronized boolean deletePass(Long passId, String externalId) {
+        JSONObject pass = findPass(passId, externalId);
+        if (pass == null) {
+            return false;
+        }
+        Long id = (Long) pass.get("id");
+        passes.remove(id);
+        passLocations.remove(id);
+        if (pass.get("externalId") != null) {
+            passExternalIds.remove((String) pass.get("externalId"));
+        }
+        for (Set<Long> members : tagPasses.values()) {
+            members.remove(id);
+        }
+        return true;
+    }
+
+    public synchronized JSONArray listPasses(int pageSize, int page) {
+        return page(passes.values(), pageSize, page);
+    }
+
+    public synchronized JSONObject pushPass(Long passId, String externalId) {
+        JSONObject pass = findPass(passId, externalId);
+        if (pass == null) {
+            return null;
+        }
+        JSONObject json = new JSONObject();
+        json.put("status", "success");
+        json.put("devices", new JSONArray());
+        return json;
+    }
+
+    public synchronized JSONArray addPassLocations(Long passId, String externalId, List<Map> values) {
+        JSONObject pass = findPass(passId, externalId);
+        if (pass == null) {
+            return null;
+        }
+        Long id = (Long) pass.get("id");
+        List<JSONObject> current = passLocations.get(id);
+        if (current == null) {
+            current = new ArrayList<JSONObject>();
+            passLocations.put(id, current);
+        }
+
+        JSONArray added = new JSONArray();
+        for (Map value : values) {
+            JSONObject location = new JSONObject();
+            location.put("passLocationId", nextPassLocationId++);
+            location.put("value", copy(value));
+            current.add(location);
+            added.add(copy(location));
+        }
+        return added;
+    }
+
+    public synchronized boolean deletePassLocation(Long passId, String externalId, long passLocationId) {
+        JSONObject pass = findPass(passId, externalId);
+        if (pass == null) {
+            return false;
+        }
+        List<JSONObject> current = passLocations.get((Long) pass.get("id"));
+        if (current != null) {
+            for (int i = 0; i < current.size(); i++) {
+                if (((Long) current.get(i).get("passLocationId")) == passLocationId) {
+                    current.remove(i);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The Apple pass.json for the pass, as served by viewJSONPass.
+     */
+    public synchronized JSONObject viewPassJSON(Long passId, String externalId) {
+        JSONObject pass = findPass(passId, externalId);
+        if (pass == null) {
+            return null;
+        }
+        return renderPassJSON(pass);
+    }
+
+    /**
+     * A .pkpass style zip of the pass: pass.json, the template's images and a manifest.
+     * The images only depend on the template so passes on the same template share them byte for byte.
+     */
+    public synchronized byte[] downloadPass(Long passId, String externalId) throws IOException {
+        JSONObject pass = findPass(passId, externalId);
+        if (pass == null) {
+            return null;
+        }
+
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        entries.put("pass.json", renderPassJSON(pass).toJSONString().getBytes("UTF-8"));
+        long templateId = (Long) pass.get("templateId");
+        entries.put("icon.png", templateImage(templateId, "icon"));
+        entries.put("logo.png", templateImage(templateId, "logo"));
+
+        JSONObject manifest = new JSONObject();
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            manifest.put(entry.getKey(), sha1(entry.getValue()));
+        }
+        entries.put("manifest.json", manifest.toJSONString().getBytes("UTF-8"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ZipOutputStream zip = new ZipOutputStream(bytes);
+        try {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        } finally {
+            zip.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    /***********
+     * tags
+     ***********/
+
+    public synchronized JSONArray getPassTags(Long passId, String externalId) {
+        JSONObject pass = findPass(passId, externalId);
+        if (pass == null) {
+            return null;
+        }
+        Long id = (Long) pass.get("id");
+        JSONArray tags = new JSONArray();
+        for (Map.Entry<String, Long> entry : tagIds.entrySet()) {
+            Set<Long> members = tagPasses.get(entry.getKey());
+            if (members != null && members.contains(id)) {
+                JSONObject tag = new JSONObject();
+                tag.put("id", entry.getValue());
+                tag.put("tag", entry.getKey());
+                tags.add(tag);
+            }
+        }
+        return tags;
+    }
+
+    public synchronized JSONArray addPassTags(Long passId, String externalId, List<String> tags) {
+        JSONObject pass = findPass(passId, externalId);
+        if (pass == null) {
+            return null;
+        }
+        Long id = (Long) pass.get("id");
+        JSONArray newTags = new JSONArray();
+        for (String tag : tags) {
+            if (!tagIds.containsKey(tag)) {
+                tagIds.put(tag, nextTagId++);
+                tagPasses.put(tag, new LinkedHashSet<Long>());
+            }
+            if (tagPasses.get(tag).add(id)) {
+                newTags.add(tag);
+            }
+        }
+        return newTags;
+    }
+
+    public synchronized JSONArray listTags(int pageSize, int page) {
+        List<JSONObject> tags = new ArrayList<JSONObject>();
+        for (Map.Entry<String, Long> entry : tagIds.entrySet()) {
+            JSONObject tag = new JSONObject();
+            tag.put("id", entry.getValue());
+            tag.put("name", entry.getKey());
+            tags.add(tag);
+        }
+        return page(tags, pageSize, page);
+    }
+
+    public synchronized JSONArray getTagPasses(String tag, int pageSize, int page) {
+        Set<Long> members = tagPasses.get(tag);
+        if (members == null) {
+            return null;
+        }
+        List<JSONObject> tagged = new ArrayList<JSONObject>();
+        for (Long id : members) {
+            tagged.add(passes.get(id));
+        }
+        return page(tagged, pageSize, page);
+    }
+
+    public synchronized Long updateTagPasses(String tag, Map fields) {
+        Set<Long> members = tagPasses.get(tag);
+        if (members == null) {
+            return null;
+        }
+        for (Long id : members) {
+            JSONObject pass = passes.get(id);
+            pass.put("fields", mergeFields((Map) pass.get("fields"), passFields(fields)));
+            pass.put("updatedAt", now());
+        }
+        return nextTicketId++;
+    }
+
+    /**
+     * Removes the tag from all of its passes, and drops the tag itself if deleteTag is set.
+     */
+    public synchronized JSONObject removeTag(String tag, boolean deleteTag) {
+        Long tagId = tagIds.get(tag);
+        if (tagId == null) {
+            return null;
+        }
+        Set<Long> members = tagPasses.get(tag);
+        int count = members.size();
+        members.clear();
+        if (deleteTag) {
+            tagIds.remove(tag);
+            tagPasses.remove(tag);
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("status", "success");
+        json.put("count", (long) count);
+        json.put("tagId", tagId);
+        return json;
+    }
+
+    public synchronized JSONObject removeTagFromPass(String tag, Long passId, String externalId) {
+        Long tagId = tagIds.get(tag);
+        JSONObject pass = findPass(passId, externalId);
+        if (tagId == null || pass == null) {
+            return null;
+        }
+        Long id = (Long) pass.get("id");
+        tagPasses.get(tag).remove(id);
+
+        JSONObject json = new JSONObject();
+        json.put("status", "success");
+        json.put("passId", id);
+        json.put("tagId", tagId);
+        return json;
+    }
+
+    /***********
+     * templates
+     ***********/
+
+    public synchronized Long createTemplate(Long projectId, String externalId, Map json) {
+        if (projectId != null && !projects.containsKey(projectId)) {
+            return null;
+        }
+        if (externalId != null && templateExternalIds.containsKey(externalId)) {
+            throw new IllegalStateException("a template with the external id " + externalId + " already exists");
+        }
+
+        long id = nextTemplateId++;
+        String now = now();
+        Map headers = json.get("headers") instanceof Map ? (Map) json.get("headers") : new JSONObject();
+
+        JSONObject header = new JSONObject();
+        header.putAll(copy(headers));
+        header.put("id", id);
+        header.put("name", json.get("name"));
+        header.put("description", json.get("description"));
+        header.put("type", json.get("type"));
+        header.put("projectType", json.get("type"));
+        header.put("vendor", "Apple");
+        header.put("vendorId", 1L);
+        header.put("deleted", false);
+        header.put("disabled", false);
+        header.put("createdAt", now);
+        header.put("updatedAt", now);
+        if (projectId != null) {
+            header.put("projectId", projectId);
+        }
+        if (externalId != null) {
+            header.put("externalId", externalId);
+            templateExternalIds.put(externalId, id);
+        }
+
+        JSONObject template = new JSONObject();
+        template.put("templateHeader", header);
+        template.put("fieldsModel", copy(json.get("fields") instanceof Map ? (Map) json.get("fields") : new JSONObject()));
+        template.put("headers", copy(headers));
+        templates.put(id, template);
+        return id;
+    }
+
+    public synchronized JSONObject getTemplate(Long templateId, String externalId) {
+        JSONObject template = findTemplate(templateId, externalId);
+        if (template == null) {
+            return null;
+        }
+        JSONObject json = new JSONObject();
+        json.put("templateHeader", copy((Map) template.get("templateHeader")));
+        json.put("fieldsModel", copy((Map) template.get("fieldsModel")));
+        return json;
+    }
+
+    public synchronized Long updateTemplate(Long templateId, String externalId, Map json) {
+        JSONObject template = findTemplate(templateId, externalId);
+        if (template == null) {
+            return null;
+        }
+        JSONObject header = (JSONObject) template.get("templateHeader");
+        if (json.get("headers") instanceof Map) {
+            header.putAll(copy((Map) json.get("headers")));
+            template.put("headers", copy((Map) json.get("headers")));
+        }
+        if (json.get("fields") instanceof Map) {
+            template.put("fieldsModel", copy((Map) json.get("fields")));
+        }
+        if (json.get("name") != null) {
+            header.put("name", json.get("name"));
+        }
+        if (json.get("description") != null) {
+            header.put("description", json.get("description"));
+        }
+        header.put("updatedAt", now());
+        return (Long) header.get("id");
+    }
+
+    public synchronized Long duplicateTemplate(Long templateId, String externalId) {
+        JSONObject template = findTemplate(templateId, externalId);
+        if (template == null) {
+            return null;
+        }
+        JSONObject header = (JSONObject) template.get("templateHeader");
+        JSONObject json = new JSONObject();
+        json.put("name", header.get("name"));
+        json.put("description", header.get("description"));
+        json.put("type", header.get("type"));
+        json.put("headers", template.get("headers"));
+        json.put("fields", template.get("fieldsModel"));
+        return createTemplate((Long) header.get("projectId"), null, json);
+    }
+
+    public synchronized boolean deleteTemplate(Long templateId, String externalId) {
+        JSONObject template = findTemplate(templateId, externalId);
+        if (template == null) {
+            return false;
+        }
+        JSONObject header = (JSONObject) template.get("templateHeader");
+        templates.remove((Long) header.get("id"));
+        if (header.get("externalId") != null) {
+            templateExternalIds.remove((String) header.get("externalId"));
+        }
+        return true;
+    }
+
+    public synchronized JSONArray listTemplateHeaders() {
+        JSONArray headers = new JSONArray();
+        for (JSONObject template : templates.values()) {
+            headers.add(summary((JSONObject) template.get("templateHeader")));
+        }
+        return headers;
+    }
+
+    /***********
+     * projects
+     ***********/
+
+    public synchronized JSONObject createProject(String externalId, Map json) {
+        if (externalId != null && projectExternalIds.containsKey(externalId)) {
+            throw new IllegalStateException("a project with the external id " + externalId + " already exists");
+        }
+
+        long id = nextProjectId++;
+        JSONObject project = new JSONObject();
+        project.put("id", id);
+        project.put("name", json.get("name"));
+        project.put("description", json.get("description"));
+        project.put("projectType", json.get("projectType"));
+        if (externalId != null) {
+            project.put("externalId", externalId);
+            projectExternalIds.put(externalId, id);
+        }
+        projects.put(id, project);
+        return projectJSON(project);
+    }
+
+    public synchronized JSONObject getProject(Long projectId, String externalId) {
+        JSONObject project = findProject(projectId, externalId);
+        return project == null ? null : projectJSON(project);
+    }
+
+    public synchronized JSONObject updateProject(Long projectId, String externalId, Map json) {
+        JSONObject project = findProject(projectId, externalId);
+        if (project == null) {
+            return null;
+        }
+        if (json.get("name") != null) {
+            project.put("name", json.get("name"));
+        }
+        if (json.get("description") != null) {
+            project.put("description", json.get("description"));
+        }
+        return projectJSON(project);
+    }
+
+    public synchronized boolean deleteProject(Long projectId, String externalId) {
+        JSONObject project = findProject(projectId, externalId);
+        if (project == null) {
+            return false;
+        }
+        projects.remove((Long) project.get("id"));
+        if (project.get("externalId") != null) {
+            projectExternalIds.remove((String) project.get("externalId"));
+        }
+        return true;
+    }
+
+    public synchronized JSONArray listProjects(int pageSize, int page) {
+        List<JSONObject> all = new ArrayList<JSONObject>();
+        for (JSONObject project : projects.values()) {
+            all.add(projectJSON(project));
+        }
+        return page(all, pageSize, page);
+    }
+
+    /***********
+     * locations
+     ***********/
+
+    public synchronized JSONObject createLocation(Map json) {
+        long id = nextLocationId++;
+        JSONObject location = copy(json);
+        location.put("id", id);
+        locations.put(id, location);
+        return copy(location);
+    }
+
+    /***********
+     * counts, handy for assertions in load tests
+     ***********/
+
+    public synchronized int getPassCount() {
+        return passes.size();
+    }
+
+    public synchronized int getTemplateCount() {
+        return templates.size();
+    }
+
+    public synchronized int getLocationCount() {
+        return locations.size();
+    }
+
+    /***********
+     * private methods
+     ***********/
+
+    private JSONObject findPass(Long passId, String externalId) {
+        if (passId == null) {
+            passId = passExternalIds.get(externalId);
+        }
+        return passId == null ? null : passes.get(passId);
+    }
+
+    private JSONObject findTemplate(Long templateId, String externalId) {
+        if (templateId == null) {
+            templateId = templateExternalIds.get(externalId);
+        }
+        return templateId == null ? null : templates.get(templateId);
+    }
+
+    private JSONObject findProject(Long projectId, String externalId) {
+        if (projectId == null) {
+            projectId = projectExternalIds.get(externalId);
+        }
+        return projectId == null ? null : projects.get(projectId);
+    }
+
+    private JSONObject projectJSON(JSONObject project) {
+        JSONObject json = copy(project);
+        JSONArray projectTemplates = new JSONArray();
+        for (JSONObject template : templates.values()) {
+            JSONObject header = (JSONObject) template.get("templateHeader");
+            if (project.get("id").equals(header.get("projectId"))) {
+                projectTemplates.add(summary(header));
+            }
+        }
+        json.put("templates", projectTemplates);
+        return json;
+    }
+
+    /* the scalar part of a template header, which is what the headers listing and projects return */
+    private static JSONObject summary(JSONObject header) {
+        JSONObject json = new JSONObject();
+        for (Object o : header.entrySet()) {
+            Map.Entry entry = (Map.Entry) o;
+            if (!(entry.getValue() instanceof Map)) {
+                json.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return json;
+    }
+
+    /* pass bodies are either {"fields": {..}, "headers": {..}} (1.1+) or the bare fields map */
+    private static Map passFields(Map body) {
+        if (body != null && body.get("fields") instanceof Map) {
+            return (Map) body.get("fields");
+        }
+        return body;
+    }
+
+    private static Map passHeaders(Map body) {
+        if (body != null && body.get("fields") instanceof Map && body.get("headers") instanceof Map) {
+            return (Map) body.get("headers");
+        }
+        return null;
+    }
+
+    /* pass fields start from the template's fieldsModel, values that are objects are merged key by key */
+    private static JSONObject mergeFields(Map current, Map updates) {
+        JSONObject merged = copy(current);
+        if (updates != null) {
+            for (Object o : updates.entrySet()) {
+                Map.Entry entry = (Map.Entry) o;
+                Object existing = merged.get(entry.getKey());
+                if (entry.getValue() instanceof Map) {
+                    JSONObject field = existing instanceof Map ? copy((Map) existing) : new JSONObject();
+                    field.putAll(copy((Map) entry.getValue()));
+                    merged.put(entry.getKey(), field);
+                } else if (existing instanceof Map) {
+                    JSONObject field = copy((Map) existing);
+                    field.put("value", entry.getValue());
+                    merged.put(entry.getKey(), field);
+                } else {
+                    JSONObject field = new JSONObject();
+                    field.put("value", entry.getValue());
+                    merged.put(entry.getKey(), field);
+                }
+            }
+        }
+        return merged;
+    }
+
+    /* the pass.json is rendered as the client would, plus the locations only the API knows */
+    private JSONObject renderPassJSON(JSONObject pass) {
+        JSONObject template = templates.get((Long) pass.get("templateId"));
+        JSONObject json = PassRenderer.render(new Template(template == null ? new JSONObject() : template),
+                (Long) pass.get("id"), (Map) pass.get("fields"), (Map) pass.get("headers"));
+
+        List<JSONObject> locs = passLocations.get((Long) pass.get("id"));
+        if (locs != null && !locs.isEmpty()) {
+            JSONArray array = new JSONArray();
+            for (JSONObject location : locs) {
+                array.add(copy((Map) location.get("value")));
+            }
+            json.put("locations", array);
+        }
+        return json;
+    }
+
+    private static byte[] templateImage(long templateId, String name) {
+        byte[] image = new byte[2048];
+        long seed = templateId * 31 + name.hashCode();
+        for (int i = 0; i < image.length; i++) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            image[i] = (byte) (seed >>> 56);
+        }
+        return image;
+    }
+
+    private static String sha1(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static JSONArray page(Collection<JSONObject> all, int pageSize, int page) {
+        JSONArray array = new JSONArray();
+        if (pageSize <= 0) {
+            return array;
+        }
+        long skip = (long) (Math.max(page, 1) - 1) * pageSize;
+        int index = 0;
+        for (JSONObject o : all) {
+            if (index++ < skip) {
+                continue;
+            }
+            if (array.size() >= pageSize) {
+                break;
+            }
+            array.add(copy(o));
+        }
+        return array;
+    }
+
+    /* deep copy, so callers never share mutable state with the store */
+    private static JSONObject copy(Map map) {
+        JSONObject json = new JSONObject();
+        if (map != null) {
+            for (Object o : map.entrySet()) {
+                Map.Entry entry = (Map.Entry) o;
+                json.put(entry.getKey(), copyValue(entry.getValue()));
+            }
+        }
+        return json;
+    }
+
+    private static Object copyValue(Object value) {
+        if (value instanceof Map) {
+            return copy((Map) value);
+        } else if (value instanceof List) {
+            JSONArray array = new JSONArray();
+            for (Object o : (List) value) {
+                array.add(copyValue(o));
+            }
+            return array;
+        }
+        return value;
+    }
+
+    private static String now() {
+        return timeFormat.print(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,149 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.PassToolsClient;
+import com.urbanairship.digitalwallet.client.PassToolsSystem;
+import com.urbanairship.digitalwallet.client.WarmUpResult;
+import com.urbanairship.digitalwallet.client.exception.InternalServerException;
+import com.urbanairship.digitalwallet.client.stub.LocalApiServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+public class ApiBaseRoutingTest extends BaseLocalServerTest {
+    private LocalApiServer other;
+
+    @BeforeClass
+    public void startOther() throws Exception {
+        other = new LocalApiServer();
+        other.start();
+    }
+
+    @AfterClass
+    public void stopOther() {
+        other.stop();
+    }
+
+    @BeforeMethod
+    public void routeBetweenServers() {
+        other.setLatency(0, 0);
+        other.setErrorRate(0);
+        other.resetCounts();
+        PassTools.apiBases = Arrays.asList(other.getApiBase(), server.getApiBase());
+    }
+
+    @AfterMethod
+    public void singleBase() {
+        PassTools.apiBases = null;
+        PassTools.apiBaseProbeMillis = 10000;
+        PassTools.apiBaseEjectMillis = 30000;
+        PassToolsClient.shutdown();
+    }
+
+    @Test
+    public void testFastestBaseUsed() {
+        PassTools.apiBaseProbeMillis = 0;
+        other.setLatency(50, 50);
+        for (int i = 0; i < 20; i++) {
+            Pass.listPasses(10, 1);
+        }
+        assert other.getRequestCount("GET", "/pass") == 1;
+        assert server.getRequestCount("GET", "/pass") == 19;
+    }
+
+    @Test
+    public void testFailingBaseEjectedAndProbedBack() throws Exception {
+        PassTools.apiBaseProbeMillis = 100;
+        PassTools.apiBaseEjectMillis = 60000;
+        server.setErrorRate(1);
+
+        int failures = 0;
+        for (int i = 0; i < 10; i++) {
+            try {
+                Pass.listPasses(10, 1);
+            } catch (RuntimeException e) {
+                assert e.getCause() instanceof InternalServerException;
+                failures++;
+            }
+        }
+        assert failures <= 3 : failures;
+
+        other.resetCounts();
+        for (int i = 0; i < 5; i++) {
+            Pass.listPasses(10, 1);
+        }
+        assert other.getRequestCount("GET", "/pass") == 5;
+
+        /* once the server answers its probe again it is back, and the faster of the two */
+        server.setErrorRate(0);
+        other.setLatency(30, 30);
+        Thread.sleep(500);
+        assert server.getRequestCount("GET", "/system/status") > 0;
+        server.resetCounts();
+        for (int i = 0; i < 5; i++) {
+            Pass.listPasses(10, 1);
+        }
+        assert server.getRequestCount("GET", "/pass") == 5;
+    }
+
+    @Test
+    public void testFailingAgainAfterProbeWaitsOutLongerEjection() throws Exception {
+        PassTools.apiBaseProbeMillis = 50;
+        PassTools.apiBaseEjectMillis = 1000;
+        other.setLatency(20, 20);
+        server.setErrorRate(1);
+        assert failuresOf(5) <= 3;
+
+        /* its probes answer, so it is back, but its calls fail again */
+        server.setErrorRate(0);
+        Thread.sleep(300);
+        server.setErrorRate(1);
+        assert failuresOf(5) <= 3;
+
+        /* left out twice as long now, with probes answering all the while */
+        server.setErrorRate(0);
+        server.resetCounts();
+        Thread.sleep(300);
+        Pass.listPasses(10, 1);
+        assert server.getRequestCount("GET", "/system/status") > 0;
+        assert server.getRequestCount("GET", "/pass") == 0;
+
+        Thread.sleep(2000);
+        server.resetCounts();
+        for (int i = 0; i < 5; i++) {
+            Pass.listPasses(10, 1);
+        }
+        assert server.getRequestCount("GET", "/pass") == 5;
+    }
+
+    @Test
+    public void testWarmUpEveryBase() {
+        PassTools.apiBaseProbeMillis = 0;
+        server.resetCounts();
+        WarmUpResult result = PassToolsSystem.warmUp(2);
+
+        assert result.isSuccessful();
+        assert result.getHosts().size() == 2;
+        assert result.getValidatedConnections() == 4;
+        assert other.getRequestCount("GET", "/system/status") == 2;
+        assert server.getRequestCount("GET", "/system/status") == 2;
+    }
+
+    private static int failuresOf(int calls) {
+        int failures = 0;
+        for (int i = 0; i < calls; i++) {
+            try {
+                Pass.listPasses(10, 1);
+            } catch (RuntimeException e) {
+                assert e.getCause() instanceof InternalServerException;
+                failures++;
+            }
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,57 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.stub.LocalApiServer;
+import org.apache.http.client.HttpClient;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+
+/*
+ * Runs the SDK against a LocalApiServer.  PassTools settings are swapped in per method and restored
+ * afterwards, so mock tests running in the same suite keep their mocked client.
+ */
+public abstract class BaseLocalServerTest {
+    protected LocalApiServer server;
+
+    private String savedApiBase;
+    private String savedApiKey;
+    private HttpClient savedClient;
+
+    @BeforeClass
+    public void startServer() throws Exception {
+        server = new LocalApiServer();
+        server.start();
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.stop();
+    }
+
+    @BeforeMethod
+    public void pointAtServer() {
+        savedApiBase = PassTools.API_BASE;
+        savedApiKey = PassTools.apiKey;
+        savedClient = PassTools.client;
+
+        PassTools.API_BASE = server.getApiBase();
+        PassTools.apiKey = "LOCAL_KEY";
+        PassTools.client = null;
+        server.setLatency(0, 0);
+        server.setErrorRate(0);
+        server.setErrorPath(null);
+        server.setThrottleRate(0);
+        server.stallNext(0, 0);
+        server.setMaxPageSize(0);
+        server.resetCounts();
+    }
+
+    @AfterMethod
+    public void restore() {
+        PassTools.API_BASE = savedApiBase;
+        PassTools.apiKey = savedApiKey;
+        PassTools.client = savedClient;
+    }
+}
@@ -0,0 +1,88 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.Template;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CoalescedGetTest extends BaseLocalServerTest {
+    private static final int callers = 8;
+
+    @org.testng.annotations.Test
+    public void testConcurrentGetsShareOneRequest() throws Exception {
+        final Pass pass = createPass();
+        server.setLatency(300, 300);
+
+        List<Pass> results = getConcurrently(pass.getPassId());
+
+        assert server.getRequestCount("GET", "/pass/" + pass.getPassId()) == 1;
+        assert results.size() == callers;
+        for (Pass current : results) {
+            assert current.getPassId().equals(pass.getPassId());
+        }
+        /* every caller gets its own copy of the decoded body */
+        assert results.get(0).getFields() != results.get(1).getFields();
+    }
+
+    @org.testng.annotations.Test
+    public void testCoalescingDisabled() throws Exception {
+        final Pass pass = createPass();
+        server.setLatency(100, 100);
+
+        PassTools.coalesceGets = false;
+        try {
+            getConcurrently(pass.getPassId());
+        } finally {
+            PassTools.coalesceGets = true;
+        }
+
+        assert server.getRequestCount("GET", "/pass/" + pass.getPassId()) == callers;
+    }
+
+    @org.testng.annotations.Test
+    public void testSequentialGetsAreNotCached() {
+        Pass pass = createPass();
+        Pass.get(pass.getPassId());
+        Pass.get(pass.getPassId());
+        assert server.getRequestCount("GET", "/pass/" + pass.getPassId()) == 2;
+    }
+
+    private Pass createPass() {
+        Long templateId = Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+        return Pass.create(templateId, new HashMap<String, Object>());
+    }
+
+    private List<Pass> getConcurrently(final long passId) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<Pass>> futures = new ArrayList<Future<Pass>>();
+            for (int i = 0; i < callers; i++) {
+                futures.add(executor.submit(new Callable<Pass>() {
+                    public Pass call() throws Exception {
+                        start.await();
+                        return Pass.get(passId);
+                    }
+                }));
+            }
+            start.countDown();
+
+            List<Pass> results = new ArrayList<Pass>();
+            for (Future<Pass> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.BulkResult;
+import com.urbanairship.digitalwallet.client.Deadline;
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.PassToolsClient;
+import com.urbanairship.digitalwallet.client.Template;
+import com.urbanairship.digitalwallet.client.exception.DeadlineExceededException;
+import org.testng.annotations.Test;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+public class DeadlineTest extends BaseLocalServerTest {
+
+    @Test
+    public void testSlowCallAborted() {
+        server.setLatency(1000, 1000);
+        long start = System.currentTimeMillis();
+        Deadline deadline = Deadline.start(100, TimeUnit.MILLISECONDS);
+        try {
+            Pass.listPasses(10, 1);
+            assert false;
+        } catch (RuntimeException e) {
+            assert e.getCause() instanceof DeadlineExceededException;
+        } finally {
+            deadline.close();
+        }
+        assert System.currentTimeMillis() - start < 800;
+        assert Deadline.current() == null;
+    }
+
+    @Test
+    public void testExpiredDeadlineSendsNothing() throws Exception {
+        Deadline deadline = Deadline.start(1, TimeUnit.MILLISECONDS);
+        try {
+            Thread.sleep(5);
+            Pass.listPasses(10, 1);
+            assert false;
+        } catch (RuntimeException e) {
+            assert e.getCause() instanceof DeadlineExceededException;
+        } finally {
+            deadline.close();
+        }
+        assert server.getRequestCount() == 0;
+    }
+
+    @Test
+    public void testNestedDeadlines() {
+        Deadline outer = Deadline.start(100, TimeUnit.MILLISECONDS);
+        Deadline inner = Deadline.start(10, TimeUnit.SECONDS);
+        assert inner.remaining(TimeUnit.MILLISECONDS) <= 100;
+        assert Deadline.current() == inner;
+        inner.close();
+        assert Deadline.current() == outer;
+        outer.close();
+        assert Deadline.current() == null;
+    }
+
+    @Test
+    public void testBulkCallsInheritDeadline() {
+        long templateId = Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+        List<Long> ids = new ArrayList<Long>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(Pass.create(templateId, TestData.getCreatePassFields()).getPassId());
+        }
+
+        server.setLatency(1000, 1000);
+        long start = System.currentTimeMillis();
+        Deadline deadline = Deadline.start(100, TimeUnit.MILLISECONDS);
+        BulkResult<Long, Pass> passes;
+        try {
+            passes = Pass.getAll(ids);
+        } finally {
+            deadline.close();
+        }
+        assert System.currentTimeMillis() - start < 800;
+        assert passes.getErrors().size() == 3;
+        for (Exception e : passes.getErrors().values()) {
+            assert e.getCause() instanceof DeadlineExceededException;
+        }
+    }
+
+    @Test
+    public void testCoalescedGetsKeepTheirOwnDeadlines() throws Exception {
+        server.setLatency(500, 500);
+
+        /* a follower with a short deadline doesn't wait out a leader without one */
+        Future<Object> leader = listPassesAsync(0);
+        Thread.sleep(50);
+        long start = System.currentTimeMillis();
+        Deadline deadline = Deadline.start(100, TimeUnit.MILLISECONDS);
+        try {
+            Pass.listPasses(10, 1);
+            assert false;
+        } catch (RuntimeException e) {
+            assert e.getCause() instanceof DeadlineExceededException;
+        } finally {
+            deadline.close();
+        }
+        assert System.currentTimeMillis() - start < 400;
+        assert !(leader.get() instanceof Exception);
+
+        /* a follower without a deadline doesn't take the leader's deadline passing as its own */
+        leader = listPassesAsync(100);
+        Thread.sleep(50);
+        Pass.listPasses(10, 1);
+        assert leader.get() instanceof RuntimeException;
+        assert ((RuntimeException) leader.get()).getCause() instanceof DeadlineExceededException;
+    }
+
+    /* the passes, or the exception, from listing them on another thread under a deadline if millis isn't 0 */
+    private static Future<Object> listPassesAsync(final long millis) {
+        FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+            public Object call() {
+                Deadline deadline = millis == 0 ? null : Deadline.start(millis, TimeUnit.MILLISECONDS);
+                try {
+                    return Pass.listPasses(10, 1);
+                } catch (RuntimeException e) {
+                    return e;
+                } finally {
+                    if (deadline != null) {
+                        deadline.close();
+                    }
+                }
+            }
+        });
+        new Thread(task).start();
+        return task;
+    }
+
+    @Test
+    public void testRateLimitWaitBounded() {
+        PassTools.maxRequestsPerSecond = 1;
+        try {
+            Pass.listPasses(10, 1);
+            long start = System.currentTimeMillis();
+            Deadline deadline = Deadline.start(50, TimeUnit.MILLISECONDS);
+            try {
+                Pass.listPasses(10, 1);
+                assert false;
+            } catch (RuntimeException e) {
+                assert e.getCause() instanceof DeadlineExceededException;
+            } finally {
+                deadline.close();
+            }
+            assert System.currentTimeMillis() - start < 500;
+            assert server.getRequestCount() == 1;
+        } finally {
+            PassTools.maxRequestsPerSecond = 0;
+        }
+    }
+
+    @Test
+    public void testSocketTimeout() {
+        int saved = PassTools.socketTimeout;
+        PassToolsClient.shutdown();
+        PassTools.socketTimeout = 100;
+        try {
+            server.setLatency(1000, 1000);
+            Pass.listPasses(10, 1);
+            assert false;
+        } catch (RuntimeException e) {
+            assert e.getCause() instanceof SocketTimeoutException;
+        } finally {
+            PassTools.socketTimeout = saved;
+            PassToolsClient.shutdown();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.Template;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class HedgedGetTest extends BaseLocalServerTest {
+    private long passId;
+
+    @BeforeMethod
+    public void hedge() {
+        PassTools.hedgeGets = true;
+        PassTools.hedgeBudget = 0.05;
+        long templateId = Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+        passId = Pass.create(templateId, TestData.getCreatePassFields()).getPassId();
+
+        /* enough quick GETs for a latency percentile and a couple of hedges in the budget */
+        for (int i = 0; i < 60; i++) {
+            Pass.get(passId);
+        }
+        server.resetCounts();
+    }
+
+    @AfterMethod
+    public void noHedge() {
+        PassTools.hedgeGets = false;
+        PassTools.hedgeBudget = 0.05;
+    }
+
+    @Test
+    public void testSlowGetHedged() {
+        server.stallNext(1, 3000);
+        long start = System.currentTimeMillis();
+        Pass pass = Pass.get(passId);
+        assert pass.getPassId() == passId;
+        assert System.currentTimeMillis() - start < 1500;
+        assert server.getRequestCount("GET", "/pass/" + passId) == 2;
+    }
+
+    @Test
+    public void testHedgesLimitedByBudget() {
+        int gets = 30;
+        server.stallNext(gets, 100);
+        for (int i = 0; i < gets; i++) {
+            assert Pass.get(passId).getPassId() == passId;
+        }
+        long requests = server.getRequestCount("GET", "/pass/" + passId);
+        assert requests > gets;
+        assert requests <= gets + 10 + gets * PassTools.hedgeBudget;   /* what was saved up plus what these earned */
+    }
+}
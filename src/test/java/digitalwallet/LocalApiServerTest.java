@@ -0,0 +1,148 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.PassToolsSystem;
+import com.urbanairship.digitalwallet.client.Tag;
+import com.urbanairship.digitalwallet.client.Template;
+import com.urbanairship.digitalwallet.client.exception.TooManyRequestsException;
+import com.urbanairship.digitalwallet.client.util.LongSet;
+import org.json.simple.JSONObject;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class LocalApiServerTest extends BaseLocalServerTest {
+
+    @org.testng.annotations.Test
+    public void testStatus() {
+        assert PassToolsSystem.isServiceUp();
+    }
+
+    @org.testng.annotations.Test
+    @SuppressWarnings("unchecked")
+    public void testPassLifecycle() {
+        String externalId = TestHelper.randomString("local-");
+        Long templateId = Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "boardingPass",
+                templateHeaders(), templateFields());
+        assert templateId != null;
+
+        Template template = Template.getTemplate(templateId);
+        assert template.getId().equals(templateId);
+        assert template.getFieldsModel().containsKey("Seat");
+
+        Pass pass = Pass.create(templateId, externalId, TestData.getCreatePassFields());
+        assert pass.getPassId() != null;
+        assert externalId.equals(pass.getExternalId());
+        assert templateId.equals(pass.getTemplateId());
+
+        Map<String, Object> passenger = (Map<String, Object>) ((Map) pass.getFields()).get("Passenger");
+        assert "Smith Alex".equals(passenger.get("value"));
+
+        Pass updated = Pass.update(externalId, TestData.getUpdatePassFields());
+        assert updated.getPassId().equals(pass.getPassId());
+
+        Pass fetched = Pass.get(pass.getPassId());
+        assert externalId.equals(fetched.getExternalId());
+
+        String tag = TestHelper.randomTag();
+        List<String> added = Pass.addTags(pass.getPassId(), Arrays.asList(tag));
+        assert added.size() == 1 && added.get(0).equals(tag);
+        assert Tag.getPasses(tag, 10, 1).size() == 1;
+
+        JSONObject passJson = Pass.viewPassbookJSONPass(pass.getPassId());
+        assert passJson.get("boardingPass") != null;
+
+        Pass.deleteX(externalId);
+        assert server.getRequestCount("DELETE", "/pass/id/" + externalId) == 1;
+        try {
+            Pass.get(pass.getPassId());
+            assert false;
+        } catch (RuntimeException expected) {
+            /* the pass is gone */
+        }
+    }
+
+    @org.testng.annotations.Test
+    public void testTagPassIds() {
+        Long templateId = Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                templateHeaders(), templateFields());
+        String tagA = TestHelper.randomTag();
+        String tagB = TestHelper.randomTag();
+        LongSet all = new LongSet();
+        for (int i = 0; i < 6; i++) {
+            Pass pass = Pass.create(templateId, TestData.getCreatePassFields());
+            all.add(pass.getPassId());
+            Pass.addTag(pass.getPassId(), i % 2 == 0 ? tagA : tagB);
+            if (i < 2) {
+                Pass.addTag(pass.getPassId(), tagB);
+            }
+        }
+
+        LongSet a = Tag.getPassIds(tagA);
+        LongSet b = Tag.getPassIds(tagB);
+        assert a.size() == 3 && b.size() == 4;
+        assert LongSet.union(a, b).equals(all);
+        assert LongSet.intersection(a, b).size() == 1;
+        assert Pass.getAll(LongSet.difference(a, b)).getValues().size() == 2;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> templateHeaders() {
+        JSONObject logoText = new JSONObject();
+        logoText.put("fieldType", "topLevel");
+        logoText.put("value", "Atlantis Airlines");
+
+        Map<String, Object> headers = new JSONObject();
+        headers.put("logo_text", logoText);
+        return headers;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> templateFields() {
+        Map<String, Object> fields = new JSONObject();
+        for (String key : Arrays.asList("Passenger", "Seat")) {
+            JSONObject field = new JSONObject();
+            field.put("fieldType", "secondary");
+            field.put("label", key);
+            field.put("value", "");
+            fields.put(key, field);
+        }
+        return fields;
+    }
+
+    @org.testng.annotations.Test
+    public void testThrottleInjection() {
+        server.setThrottleRate(1.0);
+        try {
+            Pass.listPasses(10, 1);
+            assert false;
+        } catch (RuntimeException e) {
+            assert e.getCause() instanceof TooManyRequestsException;
+        }
+        assert server.getInjectedThrottleCount() > 0;
+    }
+
+    @org.testng.annotations.Test
+    public void testRateLimit() {
+        PassTools.maxRequestsPerSecond = 20;
+        try {
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < 11; i++) {
+                Pass.listPasses(10, 1);
+            }
+            assert System.currentTimeMillis() - start >= 400;
+        } finally {
+            PassTools.maxRequestsPerSecond = 0;
+        }
+    }
+
+    @org.testng.annotations.Test
+    public void testLatencyInjection() {
+        server.setLatency(50, 50);
+        long start = System.currentTimeMillis();
+        Pass.listPasses(10, 1);
+        assert System.currentTimeMillis() - start >= 50;
+    }
+}
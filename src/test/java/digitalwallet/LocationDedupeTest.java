@@ -0,0 +1,132 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Location;
+import com.urbanairship.digitalwallet.client.LocationDedupeCache;
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.data.LocationInfo;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class LocationDedupeTest extends BaseLocalServerTest {
+    private File file;
+
+    @org.testng.annotations.BeforeMethod
+    public void setUpCache() throws Exception {
+        file = File.createTempFile("locations", ".cache");
+        file.delete();
+    }
+
+    @org.testng.annotations.AfterMethod
+    public void tearDownCache() {
+        if (PassTools.locationDedupeCache != null) {
+            PassTools.locationDedupeCache.close();
+            PassTools.locationDedupeCache = null;
+        }
+        file.delete();
+    }
+
+    @org.testng.annotations.Test
+    public void testDedupe() {
+        PassTools.locationDedupeCache = new LocationDedupeCache(file);
+        int before = server.getStore().getLocationCount();
+
+        Long id = Location.create(location("1 Market St", "Hello!"));
+        LocationInfo same = location("  1  MARKET st ", "Hello!");
+        same.latitude += 0.0000001;
+        assert Location.create(same).equals(id);
+        assert server.getStore().getLocationCount() == before + 1;
+
+        Long other = Location.create(location("1 Market St", "hello!"));
+        assert !other.equals(id);
+        assert server.getStore().getLocationCount() == before + 2;
+
+        /* survives a restart */
+        PassTools.locationDedupeCache.close();
+        PassTools.locationDedupeCache = new LocationDedupeCache(file);
+        assert PassTools.locationDedupeCache.size() == 2;
+        assert Location.create(location("1 Market St", "Hello!")).equals(id);
+        assert server.getStore().getLocationCount() == before + 2;
+    }
+
+    @org.testng.annotations.Test
+    public void testKeyedByAccount() {
+        PassTools.locationDedupeCache = new LocationDedupeCache(file);
+        int before = server.getStore().getLocationCount();
+        Long id = Location.create(location("2 Market St", "Hello!"));
+
+        PassTools.apiKey = "OTHER_KEY";
+        Long other = Location.create(location("2 Market St", "Hello!"));
+        assert !other.equals(id);
+        assert server.getStore().getLocationCount() == before + 2;
+    }
+
+    @org.testng.annotations.Test
+    public void testLineCutShortByCrash() throws Exception {
+        LocationDedupeCache cache = new LocationDedupeCache(file);
+        LocationInfo first = location("1 Market St", "Hello!");
+        LocationInfo second = location("2 Market St", "Hello!");
+        cache.put(first, 12345);
+        cache.put(second, 67890);
+        cache.close();
+
+        /* the second line lost its last digits and its newline */
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 4);
+        raf.close();
+        long whole = LocationDedupeCache.key(first).length() + " 12345\n".length();
+
+        cache = new LocationDedupeCache(file);
+        assert cache.size() == 1 && cache.getId(first) == 12345L;
+        assert cache.getId(second) == null;
+        assert file.length() == whole;
+
+        cache.put(second, 67890);
+        cache.close();
+        cache = new LocationDedupeCache(file);
+        assert cache.size() == 2 && cache.getId(second) == 67890L;
+        cache.close();
+    }
+
+    @org.testng.annotations.Test
+    public void testConcurrentCreates() throws Exception {
+        PassTools.locationDedupeCache = new LocationDedupeCache(file);
+        server.setLatency(100, 100);
+        int before = server.getStore().getLocationCount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Long>> futures = new ArrayList<Future<Long>>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Callable<Long>() {
+                    public Long call() {
+                        return Location.create(location("500 Howard St", "Welcome"));
+                    }
+                }));
+            }
+            Long id = futures.get(0).get();
+            for (Future<Long> future : futures) {
+                assert future.get().equals(id);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assert server.getStore().getLocationCount() == before + 1;
+    }
+
+    private static LocationInfo location(String street, String relevantText) {
+        LocationInfo location = new LocationInfo();
+        location.latitude = 37.7936;
+        location.longitude = -122.3958;
+        location.streetAddress1 = street;
+        location.city = "San Francisco";
+        location.relevantText = relevantText;
+        return location;
+    }
+}
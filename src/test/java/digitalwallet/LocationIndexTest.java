@@ -0,0 +1,93 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.data.LocationIndex;
+import com.urbanairship.digitalwallet.client.data.LocationInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class LocationIndexTest {
+
+    @org.testng.annotations.Test
+    public void testAgainstLinearScan() {
+        Random random = new Random(3);
+        List<LocationInfo> stores = new ArrayList<LocationInfo>();
+        for (int i = 0; i < 8000; i++) {
+            /* mostly clustered around north america, some anywhere */
+            double latitude = i % 10 == 0 ? random.nextDouble() * 180 - 90 : 25 + random.nextDouble() * 25;
+            double longitude = i % 10 == 0 ? random.nextDouble() * 360 - 180 : -125 + random.nextDouble() * 60;
+            stores.add(location(latitude, longitude));
+        }
+        LocationIndex index = new LocationIndex(stores);
+        assert index.size() == 8000;
+
+        for (int q = 0; q < 200; q++) {
+            double latitude = random.nextDouble() * 180 - 90;
+            double longitude = random.nextDouble() * 360 - 180;
+
+            Integer[] expected = byDistance(stores, latitude, longitude);
+            int[] nearest = index.nearestIndexes(latitude, longitude, 10);
+            assert nearest.length == 10;
+            for (int i = 0; i < 10; i++) {
+                assert nearest[i] == expected[i];
+            }
+
+            double radius = 50000 + random.nextDouble() * 500000;
+            int[] within = index.withinIndexes(latitude, longitude, radius);
+            int count = 0;
+            while (count < expected.length && distance(stores.get(expected[count]), latitude, longitude) <= radius) {
+                count++;
+            }
+            assert within.length == count;
+            for (int i = 0; i < count; i++) {
+                assert within[i] == expected[i];
+            }
+        }
+    }
+
+    @org.testng.annotations.Test
+    public void testAntimeridianAndEdges() {
+        List<LocationInfo> stores = Arrays.asList(location(0, 179.9), location(0, -179.9), location(0, 170), location(89.9, 0));
+        LocationIndex index = new LocationIndex(stores);
+
+        List<LocationInfo> nearest = index.nearest(0, -179.95, 2);
+        assert nearest.get(0) == stores.get(1) && nearest.get(1) == stores.get(0);
+        assert index.within(0, 180, 20000).size() == 2;
+        assert index.nearest(90, 123, 1).get(0) == stores.get(3);
+        assert index.nearest(0, 0, 10).size() == 4;
+        assert index.nearest(0, 0, 0).isEmpty();
+        assert new LocationIndex(new ArrayList<LocationInfo>()).nearest(0, 0, 3).isEmpty();
+
+        double sfToLa = LocationIndex.distanceMeters(37.7749, -122.4194, 34.0522, -118.2437);
+        assert Math.abs(sfToLa - 559000) < 2000;
+    }
+
+    private static Integer[] byDistance(List<LocationInfo> stores, double latitude, double longitude) {
+        final double[] distances = new double[stores.size()];
+        Integer[] order = new Integer[stores.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            distances[i] = distance(stores.get(i), latitude, longitude);
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Double.compare(distances[a], distances[b]);
+            }
+        });
+        return order;
+    }
+
+    private static double distance(LocationInfo location, double latitude, double longitude) {
+        return LocationIndex.distanceMeters(location.latitude, location.longitude, latitude, longitude);
+    }
+
+    private static LocationInfo location(double latitude, double longitude) {
+        LocationInfo location = new LocationInfo();
+        location.latitude = latitude;
+        location.longitude = longitude;
+        return location;
+    }
+}
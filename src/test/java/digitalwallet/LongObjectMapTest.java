@@ -0,0 +1,49 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.util.LongIterator;
+import com.urbanairship.digitalwallet.client.util.LongObjectMap;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class LongObjectMapTest {
+
+    @org.testng.annotations.Test
+    public void testAgainstHashMap() {
+        Random random = new Random(11);
+        Map<Long, String> expected = new HashMap<Long, String>();
+        LongObjectMap<String> actual = new LongObjectMap<String>(4);
+        for (int i = 0; i < 200000; i++) {
+            /* a narrow key range, so removals hit long probe runs */
+            long key = random.nextInt(5000) * 1024L;
+            if (random.nextInt(3) == 0) {
+                assert eq(expected.remove(key), actual.remove(key));
+            } else {
+                String value = "v" + i;
+                assert eq(expected.put(key, value), actual.put(key, value));
+            }
+        }
+        assert expected.size() == actual.size();
+        for (long key = 0; key < 5000 * 1024L; key += 1024) {
+            assert eq(expected.get(key), actual.get(key));
+            assert expected.containsKey(key) == actual.containsKey(key);
+        }
+
+        Set<Long> keys = new HashSet<Long>();
+        LongIterator i = actual.keys();
+        while (i.hasNext()) {
+            keys.add(i.next());
+        }
+        assert keys.equals(expected.keySet());
+
+        actual.clear();
+        assert actual.isEmpty() && actual.get(0) == null;
+    }
+
+    private static boolean eq(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
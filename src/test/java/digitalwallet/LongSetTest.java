@@ -0,0 +1,121 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.util.LongIterator;
+import com.urbanairship.digitalwallet.client.util.LongList;
+import com.urbanairship.digitalwallet.client.util.LongSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class LongSetTest {
+
+    @org.testng.annotations.Test
+    public void testAgainstTreeSet() {
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            TreeSet<Long> expectedA = new TreeSet<Long>();
+            TreeSet<Long> expectedB = new TreeSet<Long>();
+            LongSet a = new LongSet();
+            LongSet b = new LongSet();
+            fill(random, round, expectedA, a);
+            fill(random, round + 1, expectedB, b);
+
+            assertSame(expectedA, a);
+            assertSame(expectedB, b);
+
+            TreeSet<Long> union = new TreeSet<Long>(expectedA);
+            union.addAll(expectedB);
+            assertSame(union, LongSet.union(a, b));
+
+            TreeSet<Long> intersection = new TreeSet<Long>(expectedA);
+            intersection.retainAll(expectedB);
+            assertSame(intersection, LongSet.intersection(a, b));
+
+            TreeSet<Long> difference = new TreeSet<Long>(expectedA);
+            difference.removeAll(expectedB);
+            assertSame(difference, LongSet.difference(a, b));
+
+            /* the inputs are left alone */
+            assertSame(expectedA, a);
+            assertSame(expectedB, b);
+        }
+    }
+
+    @org.testng.annotations.Test
+    public void testAddRemove() {
+        LongSet set = new LongSet();
+        for (long i = 0; i < 10000; i++) {
+            assert set.add(i * 3);
+        }
+        assert !set.add(0);
+        assert set.size() == 10000;
+        for (long i = 0; i < 10000; i += 2) {
+            assert set.remove(i * 3);
+        }
+        assert !set.remove(1);
+        assert set.size() == 5000;
+        assert !set.contains(0) && set.contains(3) && !set.contains(4);
+        assert set.equals(set.copy());
+
+        set.clear();
+        assert set.isEmpty() && set.size() == 0;
+        assert set.add(Long.MIN_VALUE) && set.add(Long.MAX_VALUE) && set.add(-1);
+        assert set.toString().equals("[" + Long.MIN_VALUE + ", -1, " + Long.MAX_VALUE + "]");
+    }
+
+    @org.testng.annotations.Test
+    public void testDenseIdsAreCompact() {
+        LongSet set = new LongSet();
+        for (long id = 1000000; id < 1300000; id++) {
+            set.add(id);
+        }
+        assert set.size() == 300000;
+        assert set.getSizeInBytes() < 300000 / 4;
+    }
+
+    @org.testng.annotations.Test
+    public void testLongList() {
+        LongList list = LongList.of(5, 3, 9);
+        list.add(1);
+        list.addAll(new long[]{7, 7});
+        assert list.size() == 6;
+        list.sort();
+        assert list.toString().equals("[1, 3, 5, 7, 7, 9]");
+        assert list.contains(9) && !list.contains(2);
+        assert LongSet.of(list).size() == 5;
+        List<Long> boxed = list.toList();
+        assert boxed.get(5) == 9L;
+        assert LongList.of(boxed).equals(list);
+    }
+
+    private static void fill(Random random, int round, TreeSet<Long> expected, LongSet actual) {
+        long base = (round % 3 - 1) * 100000L;
+        int count = random.nextInt(20000);
+        /* alternate between dense runs, which become bitmaps, and sparse values */
+        int range = round % 2 == 0 ? 30000 : 5000000;
+        for (int i = 0; i < count; i++) {
+            long value = base + random.nextInt(range);
+            assert expected.add(value) == actual.add(value);
+        }
+        for (int i = 0; i < count / 4; i++) {
+            long value = base + random.nextInt(range);
+            assert expected.remove(value) == actual.remove(value);
+        }
+    }
+
+    private static void assertSame(TreeSet<Long> expected, LongSet actual) {
+        assert expected.size() == actual.size();
+        List<Long> values = new ArrayList<Long>();
+        LongIterator i = actual.iterator();
+        while (i.hasNext()) {
+            values.add(i.next());
+        }
+        assert values.equals(new ArrayList<Long>(expected));
+        assert actual.equals(LongSet.of(expected));
+        for (Long value : expected) {
+            assert actual.contains(value);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package digitalwallet;
 
 import com.urbanairship.digitalwallet.client.Template;
 import digitalwallet.mock.HttpArgumentCaptor;
+import org.json.simple.JSONObject;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
@@ -109,6 +110,38 @@ public class MockTemplateTest extends BaseMockTest {
         captor.verify(getBaseUrl(id));
     }
 
+    @org.testng.annotations.Test
+    @SuppressWarnings("unchecked")
+    public void testLazyDecoding() throws Exception {
+        JSONObject field = new JSONObject();
+        field.put("value", "26A");
+        JSONObject fields = new JSONObject();
+        fields.put("Seat", field);
+
+        JSONObject header = new JSONObject();
+        header.put("id", 12L);
+        header.put("name", "boarding");
+        header.put("updatedAt", "2013-02-21T18:34:03.000Z");
+        header.put("logo_text", "Atlantis");
+
+        JSONObject json = new JSONObject();
+        json.put("templateHeader", header);
+        json.put("fieldsModel", fields);
+
+        Template template = new Template(json);
+        assert template.getId() == 12L;
+        assert template.getName().equals("boarding");
+        assert template.getUpdatedAt().getTime() == 1361471643000L;
+        assert template.getCreatedAt() == null;
+        assert template.getTemplateHeader().get("logo_text").equals("Atlantis");
+        assert template.getFieldsModel().get("Seat").get("value").equals("26A");
+
+        /* header listings have no fieldsModel */
+        Template headerOnly = new Template(header);
+        assert headerOnly.getId() == 12L;
+        assert headerOnly.getFieldsModel() == null;
+    }
+
     @Override
     protected String getBaseUrl() {
         return "/v1/template";
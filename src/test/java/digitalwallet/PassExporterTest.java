@@ -0,0 +1,182 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.Template;
+import com.urbanairship.digitalwallet.client.bulk.ExportResult;
+import com.urbanairship.digitalwallet.client.bulk.PassExporter;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+public class PassExporterTest extends BaseLocalServerTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTagExport() throws Exception {
+        String tag = TestHelper.randomTag();
+        Set<Long> tagged = createPasses(createTemplate(), 7, tag);
+
+        File file = tempFile();
+        PassExporter exporter = PassExporter.forTag(tag);
+        exporter.setPageSize(3);
+        ExportResult result = exporter.export(file);
+
+        assert result.getPasses() == 7 && result.getPages() == 4 && !result.isResumed();   /* ends on an empty page */
+        assert result.getBytes() == file.length();
+        List<JSONObject> lines = read(file);
+        assert lines.size() == 7;
+        Set<Long> ids = new HashSet<Long>();
+        for (JSONObject line : lines) {
+            ids.add((Long) line.get("id"));
+            assert line.get("url") != null;
+            Map<String, Object> passenger = (Map<String, Object>) ((Map) line.get("fields")).get("Passenger");
+            assert "Smith Alex".equals(passenger.get("value"));
+        }
+        assert ids.equals(tagged);
+    }
+
+    @Test
+    public void testTemplateExport() throws Exception {
+        long templateId = createTemplate();
+        createPasses(createTemplate(), 4, null);
+        Set<Long> mine = createPasses(templateId, 5, null);
+
+        File file = tempFile();
+        PassExporter exporter = PassExporter.forTemplate(templateId);
+        exporter.setPageSize(4);
+        ExportResult result = exporter.export(file);
+
+        assert result.getPasses() == 5;
+        Set<Long> ids = new HashSet<Long>();
+        for (JSONObject line : read(file)) {
+            assert Long.valueOf(templateId).equals(line.get("templateId"));
+            ids.add((Long) line.get("id"));
+        }
+        assert ids.equals(mine);
+
+        assert PassExporter.forAccount().export(tempFile()).getPasses() == server.getStore().getPassCount();
+    }
+
+    @Test
+    public void testMissingTag() throws Exception {
+        File file = tempFile();
+        ExportResult result = PassExporter.forTag(TestHelper.randomTag()).export(file);
+        assert result.getPasses() == 0 && result.getPages() == 1;
+        assert read(file).isEmpty();
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        String tag = TestHelper.randomTag();
+        createPasses(createTemplate(), 7, tag);
+        PassExporter exporter = PassExporter.forTag(tag);
+        exporter.setPageSize(3);
+        File complete = tempFile();
+        exporter.export(complete);
+        byte[] expected = bytes(complete);
+
+        /* a run that died part way into writing page 2 */
+        int firstPage = memberEnd(expected, 0);
+        File partial = tempFile();
+        OutputStream out = new FileOutputStream(partial);
+        out.write(expected, 0, firstPage + 12);
+        out.close();
+        File checkpoint = tempFile();
+        out = new FileOutputStream(checkpoint);
+        out.write(("1 " + firstPage + " 3\n").getBytes("UTF-8"));
+        out.close();
+
+        server.resetCounts();
+        exporter.setCheckpointFile(checkpoint);
+        ExportResult result = exporter.export(partial);
+
+        assert result.isResumed();
+        assert result.getPasses() == 7 && result.getPages() == 4;
+        assert server.getRequestCount() == 3;
+        assert Arrays.equals(bytes(partial), expected);
+        assert !checkpoint.exists();
+    }
+
+    private long createTemplate() {
+        return Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+    }
+
+    private static Set<Long> createPasses(long templateId, int count, String tag) {
+        Set<Long> ids = new HashSet<Long>();
+        for (int i = 0; i < count; i++) {
+            Pass pass = Pass.create(templateId, TestData.getCreatePassFields());
+            if (tag != null) {
+                Pass.addTag(pass.getPassId(), tag);
+            }
+            ids.add(pass.getPassId());
+        }
+        return ids;
+    }
+
+    private static List<JSONObject> read(File file) throws Exception {
+        List<JSONObject> lines = new ArrayList<JSONObject>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), "UTF-8"));
+        try {
+            JSONParser parser = new JSONParser();
+            String line;
+            while ((line = in.readLine()) != null) {
+                lines.add((JSONObject) parser.parse(line));
+            }
+        } finally {
+            in.close();
+        }
+        return lines;
+    }
+
+    /* where the gzip member starting at start ends: a 10 byte header, the deflate stream and an 8 byte trailer */
+    private static int memberEnd(byte[] data, int start) throws Exception {
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(data, start + 10, data.length - start - 10);
+        byte[] sink = new byte[4096];
+        while (!inflater.finished()) {
+            inflater.inflate(sink);
+        }
+        int end = data.length - inflater.getRemaining() + 8;
+        inflater.end();
+        return end;
+    }
+
+    private static byte[] bytes(File file) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    private static File tempFile() throws Exception {
+        File file = File.createTempFile("export", ".jsonl.gz");
+        file.deleteOnExit();
+        return file;
+    }
+}
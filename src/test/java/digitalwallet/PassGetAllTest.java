@@ -0,0 +1,56 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.BulkResult;
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.Template;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+public class PassGetAllTest extends BaseLocalServerTest {
+
+    @org.testng.annotations.Test
+    public void testGetAll() {
+        List<Long> ids = new ArrayList<Long>();
+        for (Pass pass : createPasses(5)) {
+            ids.add(pass.getPassId());
+        }
+        List<Long> requested = Arrays.asList(ids.get(3), ids.get(0), ids.get(3), 999999L, ids.get(1));
+
+        BulkResult<Long, Pass> result = Pass.getAll(requested);
+
+        assert new ArrayList<Long>(result.getResults().keySet()).equals(Arrays.asList(ids.get(3), ids.get(0), ids.get(1)));
+        assert result.get(ids.get(0)).getPassId().equals(ids.get(0));
+        assert result.getErrors().size() == 1;
+        assert result.getError(999999L) != null;
+        assert server.getRequestCount("GET", "/pass/" + ids.get(3)) == 1;
+    }
+
+    @org.testng.annotations.Test
+    public void testGetAllByExternalId() {
+        List<String> externalIds = new ArrayList<String>();
+        for (Pass pass : createPasses(3)) {
+            externalIds.add(pass.getExternalId());
+        }
+
+        BulkResult<String, Pass> result = Pass.getAllByExternalId(Arrays.asList(externalIds.get(2), "missing", externalIds.get(1), externalIds.get(2)));
+
+        assert result.getErrors().keySet().equals(Collections.singleton("missing"));
+        assert result.getValues().size() == 2;
+        assert result.getValues().get(0).getExternalId().equals(externalIds.get(2));
+        assert result.getValues().get(1).getExternalId().equals(externalIds.get(1));
+    }
+
+    private List<Pass> createPasses(int count) {
+        Long templateId = Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+        List<Pass> passes = new ArrayList<Pass>();
+        for (int i = 0; i < count; i++) {
+            passes.add(Pass.create(templateId, TestHelper.randomString("multi-"), new HashMap<String, Object>()));
+        }
+        return passes;
+    }
+}
@@ -0,0 +1,192 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.Template;
+import com.urbanairship.digitalwallet.client.bulk.CsvRowReader;
+import com.urbanairship.digitalwallet.client.bulk.ImportListener;
+import com.urbanairship.digitalwallet.client.bulk.ImportProgress;
+import com.urbanairship.digitalwallet.client.bulk.JsonLinesRowReader;
+import com.urbanairship.digitalwallet.client.bulk.PassImporter;
+import com.urbanairship.digitalwallet.client.bulk.TemplateRowMapper;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PassImporterTest extends BaseLocalServerTest {
+
+    @Test
+    public void testCsvReader() throws Exception {
+        String csv = "id,Passenger,Seat\r\n"
+                + "1,\"Smith, Alex\",12A\r\n"
+                + "\n"
+                + "2,\"says \"\"hi\"\"\nthen leaves\",\n"
+                + "3,Jones,";
+        CsvRowReader reader = new CsvRowReader(new ByteArrayInputStream(csv.getBytes("UTF-8")), csv.length(), ',');
+        Map<String, Object> row = reader.next();
+        assert "Smith, Alex".equals(row.get("Passenger")) && "12A".equals(row.get("Seat"));
+        row = reader.next();
+        assert "says \"hi\"\nthen leaves".equals(row.get("Passenger"));
+        assert !row.containsKey("Seat");
+        row = reader.next();
+        assert "3".equals(row.get("id")) && "Jones".equals(row.get("Passenger"));
+        assert reader.next() == null;
+        assert reader.getBytesRead() == csv.length();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCsvImport() throws Exception {
+        long templateId = createTemplate();
+        File file = write("csv", "customer,Passenger,Seat,ignored\n"
+                + "c1,\"Smith, Alex\",1A,x\n"
+                + "c2,Jones,2B,x\n"
+                + "c3,Brown,3C,x\n");
+
+        int before = server.getStore().getPassCount();
+        final AtomicInteger created = new AtomicInteger();
+        PassImporter importer = new PassImporter(templateId, new CsvRowReader(file),
+                new TemplateRowMapper(Template.getTemplate(templateId)));
+        importer.setExternalIdColumn("customer");
+        importer.setSenders(2);
+        importer.setListener(new ImportListener() {
+            public void created(long row, Map<String, Object> columns, Pass pass) {
+                created.incrementAndGet();
+            }
+
+            public void failed(long row, Map<String, Object> columns, Exception e) {
+            }
+
+            public void progress(ImportProgress progress) {
+            }
+        });
+        ImportProgress done = importer.run();
+
+        assert done.isFinished();
+        assert done.getRowsCreated() == 3 && done.getRowsFailed() == 0;
+        assert done.getCommittedRow() == 3;
+        assert done.getBytesRead() == file.length();
+        assert created.get() == 3;
+        assert server.getStore().getPassCount() == before + 3;
+
+        Map<String, Object> passenger = (Map<String, Object>) ((Map) Pass.getPass("c1").getFields()).get("Passenger");
+        assert "Smith, Alex".equals(passenger.get("value"));
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        long templateId = createTemplate();
+        StringBuilder lines = new StringBuilder();
+        for (int i = 1; i <= 10; i++) {
+            lines.append("{\"customer\":\"r").append(i).append("\",\"name\":\"Row ").append(i).append("\"}\n");
+        }
+        File file = write("jsonl", lines.toString());
+        File checkpoint = new File(file.getPath() + ".checkpoint");
+        checkpoint.deleteOnExit();
+        OutputStream out = new FileOutputStream(checkpoint);
+        out.write("6\n".getBytes("UTF-8"));
+        out.close();
+
+        int before = server.getStore().getPassCount();
+        PassImporter importer = new PassImporter(templateId, new JsonLinesRowReader(file),
+                new TemplateRowMapper(Template.getTemplate(templateId)).map("name", "Passenger"));
+        importer.setExternalIdColumn("customer");
+        importer.setCheckpointFile(checkpoint);
+        ImportProgress done = importer.run();
+
+        assert done.getRowsSkipped() == 6 && done.getRowsCreated() == 4;
+        assert done.getCommittedRow() == 10;
+        assert server.getStore().getPassCount() == before + 4;
+        assert Pass.getPass("r7") != null;
+        try {
+            Pass.getPass("r6");
+            assert false;
+        } catch (RuntimeException expected) {
+            /* committed by the earlier run */
+        }
+
+        importer = new PassImporter(templateId, new JsonLinesRowReader(file),
+                new TemplateRowMapper(Template.getTemplate(templateId)));
+        importer.setCheckpointFile(checkpoint);
+        assert importer.run().getRowsCreated() == 0;
+    }
+
+    @Test
+    public void testFailedRowsSentAgainOnResume() throws Exception {
+        long templateId = createTemplate();
+        StringBuilder lines = new StringBuilder();
+        for (int i = 1; i <= 6; i++) {
+            String customer = i == 4 ? "" : "f" + i;    /* row 4 is refused: it has no external id */
+            lines.append("{\"customer\":\"").append(customer).append("\",\"name\":\"Row ").append(i).append("\"}\n");
+        }
+        File file = write("jsonl", lines.toString());
+        File checkpoint = new File(file.getPath() + ".checkpoint");
+        checkpoint.deleteOnExit();
+        TemplateRowMapper mapper = new TemplateRowMapper(Template.getTemplate(templateId)).map("name", "Passenger");
+
+        server.setErrorRate(1.0);
+        PassImporter importer = new PassImporter(templateId, new JsonLinesRowReader(file), mapper);
+        importer.setExternalIdColumn("customer");
+        importer.setCheckpointFile(checkpoint);
+        importer.setMaxAttempts(1);
+        ImportProgress failed = importer.run();
+        assert failed.getRowsFailed() == 6 && failed.getCommittedRow() == 6;
+        assert failed.getRowsToRetry() == 5;
+
+        server.setErrorRate(0);
+        int before = server.getStore().getPassCount();
+        importer = new PassImporter(templateId, new JsonLinesRowReader(file), mapper);
+        importer.setExternalIdColumn("customer");
+        importer.setCheckpointFile(checkpoint);
+        ImportProgress done = importer.run();
+        assert done.getRowsCreated() == 5 && done.getRowsFailed() == 0 && done.getRowsSkipped() == 1;
+        assert done.getRowsToRetry() == 0;
+        assert server.getStore().getPassCount() == before + 5;
+        assert Pass.getPass("f6") != null;
+
+        importer = new PassImporter(templateId, new JsonLinesRowReader(file), mapper);
+        importer.setExternalIdColumn("customer");
+        importer.setCheckpointFile(checkpoint);
+        assert importer.run().getRowsSkipped() == 6;
+    }
+
+    @Test
+    public void testRetriesThrottledRows() throws Exception {
+        long templateId = createTemplate();
+        StringBuilder csv = new StringBuilder("Passenger\n");
+        for (int i = 0; i < 20; i++) {
+            csv.append("p").append(i).append('\n');
+        }
+        File file = write("csv", csv.toString());
+        TemplateRowMapper mapper = new TemplateRowMapper(Template.getTemplate(templateId));
+        server.setThrottleRate(0.3);
+
+        PassImporter importer = new PassImporter(templateId, new CsvRowReader(file), mapper);
+        importer.setQueueSize(2);
+        importer.setMaxAttempts(20);
+        ImportProgress done = importer.run();
+
+        assert done.getRowsCreated() == 20 && done.getRowsFailed() == 0;
+        assert server.getInjectedThrottleCount() > 0;
+    }
+
+    private long createTemplate() {
+        long templateId = Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+        server.resetCounts();
+        return templateId;
+    }
+
+    private static File write(String suffix, String content) throws Exception {
+        File file = File.createTempFile("import", "." + suffix);
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+        return file;
+    }
+}
@@ -0,0 +1,226 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.Template;
+import com.urbanairship.digitalwallet.client.journal.JournalEntry;
+import com.urbanairship.digitalwallet.client.journal.JournalListener;
+import com.urbanairship.digitalwallet.client.journal.PassJournal;
+import org.json.simple.JSONObject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class PassJournalTest extends BaseLocalServerTest {
+    private File directory;
+    private long templateId;
+
+    @org.testng.annotations.BeforeMethod
+    public void setUpJournal() throws Exception {
+        directory = File.createTempFile("journal", "");
+        directory.delete();
+        templateId = Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+    }
+
+    @org.testng.annotations.AfterMethod
+    public void tearDownJournal() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @org.testng.annotations.Test
+    public void testSendInOrder() throws Exception {
+        String externalId = TestHelper.randomString("journal-");
+        final List<JournalEntry> acknowledged = new ArrayList<JournalEntry>();
+
+        PassJournal journal = new PassJournal(directory);
+        journal.setListener(new JournalListener() {
+            public void acknowledged(JournalEntry entry, Object result) {
+                acknowledged.add(entry);
+            }
+
+            public void failed(JournalEntry entry, Exception error) {
+            }
+        });
+        journal.create(templateId, externalId, passenger("Smith Alex"));
+        journal.update(externalId, passenger("Jones Sam"));
+        journal.push(externalId);
+        assert journal.getPendingCount() == 3;
+
+        journal.start();
+        try {
+            assert journal.awaitDrained(10, TimeUnit.SECONDS);
+        } finally {
+            journal.close();
+        }
+
+        assert acknowledged.size() == 3;
+        assert acknowledged.get(0).getOperation() == JournalEntry.Operation.CREATE;
+        assert acknowledged.get(2).getOperation() == JournalEntry.Operation.PUSH;
+        assert "Jones Sam".equals(passengerOf(Pass.getPass(externalId)));
+    }
+
+    @org.testng.annotations.Test
+    public void testReplayAfterRestart() throws Exception {
+        int passCount = server.getStore().getPassCount();
+        PassJournal journal = new PassJournal(directory, 256);
+        List<String> externalIds = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            String externalId = TestHelper.randomString("replay-");
+            externalIds.add(externalId);
+            journal.create(templateId, externalId, passenger("Passenger " + i));
+        }
+        assert journal.getSegmentCount() > 1;
+        journal.close();
+        assert server.getStore().getPassCount() == passCount;
+
+        PassJournal reopened = new PassJournal(directory, 256);
+        assert reopened.getPendingCount() == 10;
+        reopened.start();
+        try {
+            assert reopened.awaitDrained(10, TimeUnit.SECONDS);
+            reopened.push(externalIds.get(0));
+            assert reopened.awaitDrained(10, TimeUnit.SECONDS);
+        } finally {
+            reopened.close();
+        }
+        for (int i = 0; i < 10; i++) {
+            assert ("Passenger " + i).equals(passengerOf(Pass.getPass(externalIds.get(i))));
+        }
+        assert reopened.getSegmentCount() == 1;
+        assert new PassJournal(directory, 256).getPendingCount() == 0;
+    }
+
+    @org.testng.annotations.Test
+    public void testRetryAndFailure() throws Exception {
+        final List<JournalEntry> failed = new ArrayList<JournalEntry>();
+        PassJournal journal = new PassJournal(directory);
+        journal.setListener(new JournalListener() {
+            public void acknowledged(JournalEntry entry, Object result) {
+            }
+
+            public void failed(JournalEntry entry, Exception error) {
+                failed.add(entry);
+            }
+        });
+        server.setThrottleRate(1.0);
+        String externalId = TestHelper.randomString("retry-");
+        journal.create(templateId, externalId, passenger("Smith Alex"));
+        journal.update(999999L, passenger("nobody"));
+        journal.start();
+        try {
+            assert !journal.awaitDrained(300, TimeUnit.MILLISECONDS);
+            assert server.getInjectedThrottleCount() > 1;
+            server.setThrottleRate(0);
+            assert journal.awaitDrained(10, TimeUnit.SECONDS);
+        } finally {
+            journal.close();
+        }
+        assert "Smith Alex".equals(passengerOf(Pass.getPass(externalId)));
+        assert failed.size() == 1 && failed.get(0).getPassId() == 999999L;
+    }
+
+    @org.testng.annotations.Test
+    public void testThrowingListener() throws Exception {
+        final List<JournalEntry> told = new ArrayList<JournalEntry>();
+        PassJournal journal = new PassJournal(directory);
+        journal.setSenders(1);
+        journal.setListener(new JournalListener() {
+            public void acknowledged(JournalEntry entry, Object result) {
+                told.add(entry);
+                throw new IllegalStateException("listener bug");
+            }
+
+            public void failed(JournalEntry entry, Exception error) {
+                told.add(entry);
+                throw new IllegalStateException("listener bug");
+            }
+        });
+        String externalId = TestHelper.randomString("listener-");
+        journal.create(templateId, externalId, passenger("Smith Alex"));
+        journal.update(999999L, passenger("nobody"));
+        journal.update(externalId, passenger("Jones Sam"));
+        journal.start();
+        try {
+            assert journal.awaitDrained(10, TimeUnit.SECONDS);
+        } finally {
+            journal.close();
+        }
+        assert told.size() == 3;
+        assert "Jones Sam".equals(passengerOf(Pass.getPass(externalId)));
+        assert new PassJournal(directory).getPendingCount() == 0;
+    }
+
+    @org.testng.annotations.Test
+    public void testConcurrentSenders() throws Exception {
+        PassJournal journal = new PassJournal(directory);
+        journal.setSenders(4);
+        List<String> externalIds = new ArrayList<String>();
+        for (int i = 0; i < 8; i++) {
+            String externalId = TestHelper.randomString("concurrent-");
+            externalIds.add(externalId);
+            journal.create(templateId, externalId, passenger("Passenger " + i));
+            journal.update(externalId, passenger("Updated " + i));
+        }
+        server.setLatency(200, 200);
+        long start = System.currentTimeMillis();
+        journal.start();
+        try {
+            assert journal.awaitDrained(10, TimeUnit.SECONDS);
+        } finally {
+            journal.close();
+        }
+        /* sixteen calls one at a time would take 3.2 seconds */
+        assert System.currentTimeMillis() - start < 2000;
+        server.setLatency(0, 0);
+        for (int i = 0; i < 8; i++) {
+            assert ("Updated " + i).equals(passengerOf(Pass.getPass(externalIds.get(i))));
+        }
+    }
+
+    @org.testng.annotations.Test
+    public void testRetriesCapped() throws Exception {
+        final List<JournalEntry> failed = new ArrayList<JournalEntry>();
+        PassJournal journal = new PassJournal(directory);
+        journal.setMaxAttempts(3);
+        journal.setListener(new JournalListener() {
+            public void acknowledged(JournalEntry entry, Object result) {
+            }
+
+            public void failed(JournalEntry entry, Exception error) {
+                failed.add(entry);
+            }
+        });
+        server.setThrottleRate(1.0);
+        journal.create(templateId, TestHelper.randomString("capped-"), passenger("Smith Alex"));
+        journal.start();
+        try {
+            assert journal.awaitDrained(10, TimeUnit.SECONDS);
+        } finally {
+            journal.close();
+        }
+        assert server.getInjectedThrottleCount() == 3;
+        assert failed.size() == 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> passenger(String name) {
+        JSONObject passenger = new JSONObject();
+        passenger.put("value", name);
+        JSONObject fields = new JSONObject();
+        fields.put("Passenger", passenger);
+        return fields;
+    }
+
+    private static Object passengerOf(Pass pass) {
+        return ((Map) ((Map) pass.getFields()).get("Passenger")).get("value");
+    }
+}
@@ -0,0 +1,82 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.BulkResult;
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.Template;
+import com.urbanairship.digitalwallet.client.data.LocationInfo;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class PassLocationsTest extends BaseLocalServerTest {
+
+    @org.testng.annotations.Test
+    public void testAddLocations() {
+        Pass pass = Pass.create(createTemplate(), TestData.getCreatePassFields());
+        List<LocationInfo> locations = locations(3);
+        locations.get(1).relevantText = "Caf\u00e9 & bar = 100% \ud83d\ude00 \"quoted\"";
+
+        JSONArray added = Pass.addLocations(pass.getPassId(), locations);
+
+        assert added.size() == 3;
+        Map value = (Map) ((JSONObject) added.get(1)).get("value");
+        assert locations.get(1).relevantText.equals(value.get("relevantText"));
+        assert Double.valueOf(37.1).equals(value.get("latitude"));
+        assert "US".equals(value.get("country"));
+    }
+
+    @org.testng.annotations.Test
+    public void testAddLocationsToManyPasses() {
+        long templateId = createTemplate();
+        List<Long> passIds = new ArrayList<Long>();
+        for (int i = 0; i < 5; i++) {
+            passIds.add(Pass.create(templateId, TestData.getCreatePassFields()).getPassId());
+        }
+        List<Long> requested = new ArrayList<Long>(passIds);
+        requested.add(passIds.get(0));
+        requested.add(999999L);
+
+        BulkResult<Long, JSONArray> result = Pass.addLocations(requested, locations(2000));
+
+        assert result.getResults().size() == 5;
+        assert result.getError(999999L) != null;
+        for (Long passId : passIds) {
+            assert result.get(passId).size() == 2000;
+            assert server.getRequestCount("POST", "/pass/" + passId + "/locations") == 1;
+        }
+    }
+
+    @org.testng.annotations.Test
+    public void testWriteJSON() throws Exception {
+        StringWriter out = new StringWriter();
+        LocationInfo.writeJSON(locations(2), out);
+        JSONArray parsed = (JSONArray) new org.json.simple.parser.JSONParser().parse(out.toString());
+        assert parsed.size() == 2;
+        assert ((JSONObject) parsed.get(0)).get("city").equals("City 0");
+        assert ((JSONObject) parsed.get(0)).get("streetAddress2") == null;
+        assert Double.valueOf(-122.0).equals(((JSONObject) parsed.get(1)).get("longitude"));
+    }
+
+    private static List<LocationInfo> locations(int count) {
+        List<LocationInfo> locations = new ArrayList<LocationInfo>();
+        for (int i = 0; i < count; i++) {
+            LocationInfo location = new LocationInfo();
+            location.latitude = 37.0 + (i % 10) / 10.0;
+            location.longitude = -122.0;
+            location.city = "City " + i;
+            location.country = "US";
+            location.relevantText = "Store " + i;
+            locations.add(location);
+        }
+        return locations;
+    }
+
+    private static long createTemplate() {
+        return Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+    }
+}
@@ -0,0 +1,107 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.PassRenderer;
+import com.urbanairship.digitalwallet.client.Template;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.testng.annotations.Test;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+public class PassRendererTest extends BaseLocalServerTest {
+    /* in a viewPassbookJSONPass response, but not known without the API */
+    private static final String[] notRendered = {"passTypeIdentifier", "teamIdentifier", "webServiceURL",
+            "authenticationToken", "locations"};
+
+    @Test
+    public void testMatchesApiResponse() throws Exception {
+        Template template = new Template(resource("/render/template.json"));
+        Pass pass = new Pass(resource("/render/pass.json"));
+        JSONObject expected = resource("/render/view-pass.json");
+        for (String key : notRendered) {
+            assert expected.remove(key) != null : key;
+        }
+
+        assert sameJSON(PassRenderer.render(template, pass), expected);
+
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("Passenger", "Smith Alex");
+        values.put("Seat", "23A");
+        values.put("Gate", "42");
+        Map<String, Object> headers = new HashMap<String, Object>();
+        headers.put("barcode_value", "OA815-4815162342");
+        assert sameJSON(PassRenderer.render(template, pass.getPassId(), values, headers), expected);
+    }
+
+    @Test
+    public void testMatchesViewJSONPass() {
+        long templateId = Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "boardingPass",
+                headers(), fields());
+        Template template = Template.getTemplate(templateId);
+
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("Passenger", "Smith Alex");
+        values.put("Gate", 42);
+        Pass pass = Pass.create(templateId, values);
+
+        JSONObject expected = Pass.viewPassbookJSONPass(pass.getPassId());
+        assert expected.get("barcode") != null;
+        assert sameJSON(PassRenderer.render(template, Pass.get(pass.getPassId())), expected);
+        assert sameJSON(PassRenderer.render(template, pass.getPassId(), values), expected);
+
+        values.put("Gate", 7);
+        assert !sameJSON(PassRenderer.render(template, pass.getPassId(), values), expected);
+        Pass.update(pass.getPassId(), values);
+        assert sameJSON(PassRenderer.render(template, pass.getPassId(), values), Pass.viewPassbookJSONPass(pass.getPassId()));
+    }
+
+    private JSONObject resource(String name) throws Exception {
+        Reader in = new InputStreamReader(getClass().getResourceAsStream(name), "UTF-8");
+        try {
+            return (JSONObject) JSONValue.parse(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /* compared as they would be sent, so Integer and Long values don't differ */
+    private static boolean sameJSON(JSONObject rendered, JSONObject expected) {
+        return JSONValue.parse(rendered.toJSONString()).equals(expected);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> headers() {
+        Map<String, Object> headers = LocalApiServerTest.templateHeaders();
+        String[][] values = {{"background_color", "rgb(10,20,30)"}, {"barcode_value", "ABC123"}, {"barcode_type", "PKBarcodeFormatQR"},
+                {"barcode_encoding", "iso-8859-1"}};
+        for (String[] value : values) {
+            JSONObject header = new JSONObject();
+            header.put("value", value[1]);
+            headers.put(value[0], header);
+        }
+        return headers;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> fields() {
+        Map<String, Object> fields = LocalApiServerTest.templateFields();
+        Object[][] extra = {{"Gate", "primary", 2L}, {"Flight", "primary", 1L}, {"Boarding", "auxiliary", 1L}};
+        for (Object[] value : extra) {
+            JSONObject field = new JSONObject();
+            field.put("fieldType", value[1]);
+            field.put("label", value[0]);
+            field.put("value", "TBD");
+            field.put("order", value[2]);
+            field.put("changeMessage", "Now %@");
+            fields.put((String) value[0], field);
+        }
+        JSONObject hidden = new JSONObject();
+        hidden.put("value", "internal");
+        fields.put("Note", hidden);
+        return fields;
+    }
+}
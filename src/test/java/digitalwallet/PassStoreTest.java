@@ -0,0 +1,261 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.PassStore;
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.Tag;
+import com.urbanairship.digitalwallet.client.Template;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+public class PassStoreTest extends BaseLocalServerTest {
+
+    @AfterMethod
+    public void noStore() {
+        PassTools.passStore = null;
+    }
+
+    @Test
+    public void testRepeatedDownloadsFromDisk() throws Exception {
+        long templateId = createTemplate();
+        long first = Pass.create(templateId, TestData.getCreatePassFields()).getPassId();
+        long second = Pass.create(templateId, TestData.getCreatePassFields()).getPassId();
+        PassStore store = new PassStore(tempDirectory(), 10 * 1024 * 1024);
+        PassTools.passStore = store;
+
+        File downloaded = tempFile();
+        Pass.downloadPass(first, downloaded);
+        File stored = tempFile();
+        Pass.downloadPass(first, stored);
+        assert server.getRequestCount("GET", "/pass/" + first + "/download") == 1;
+        assert store.getHits() == 1 && store.getMisses() == 1;
+        assert sameEntries(entries(downloaded), entries(stored));
+
+        /* the second pass shares the template's images with the first */
+        long one = store.getBytes();
+        Pass.downloadPass(second, tempFile());
+        assert store.getBytes() - one < one / 2;
+        assert !store.getContentHash(first).equals(store.getContentHash(second));
+
+        Map<String, Object> fields = new HashMap<String, Object>();
+        fields.put("Seat", "12A");
+        Pass.update(first, fields);
+        assert store.getContentHash(first) == null;
+        Pass.downloadPass(first, tempFile());
+        assert server.getRequestCount("GET", "/pass/" + first + "/download") == 2;
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        long templateId = createTemplate();
+        long[] passIds = new long[3];
+        for (int i = 0; i < passIds.length; i++) {
+            passIds[i] = Pass.create(templateId, TestData.getCreatePassFields()).getPassId();
+        }
+
+        PassStore sizing = new PassStore(tempDirectory(), Long.MAX_VALUE);
+        PassTools.passStore = sizing;
+        Pass.downloadPass(passIds[0], tempFile());
+        long one = sizing.getBytes();
+        Pass.downloadPass(passIds[1], tempFile());
+        long two = sizing.getBytes();
+
+        File directory = tempDirectory();
+        long maxBytes = two + (two - one) / 2;
+        PassStore store = new PassStore(directory, maxBytes);
+        PassTools.passStore = store;
+        Pass.downloadPass(passIds[0], tempFile());
+        Pass.downloadPass(passIds[1], tempFile());
+        Pass.downloadPass(passIds[0], tempFile());
+        Pass.downloadPass(passIds[2], tempFile());
+        assert store.size() == 2 && store.getBytes() <= maxBytes;
+        assert store.getContentHash(passIds[1]) == null;
+        assert store.getContentHash(passIds[0]) != null && store.getContentHash(passIds[2]) != null;
+
+        PassStore reopened = new PassStore(directory, maxBytes);
+        PassTools.passStore = reopened;
+        assert reopened.size() == 2 && reopened.getBytes() == store.getBytes();
+        server.resetCounts();
+        Pass.downloadPass(passIds[2], tempFile());
+        assert server.getRequestCount() == 0;
+    }
+
+    @Test
+    public void testTemplateAndTagUpdatesDropStoredPasses() throws Exception {
+        long templateId = createTemplate();
+        long passId = Pass.create(templateId, TestData.getCreatePassFields()).getPassId();
+        String tag = TestHelper.randomTag();
+        Pass.addTags(passId, Arrays.asList(tag));
+        PassStore store = new PassStore(tempDirectory(), 10 * 1024 * 1024);
+        PassTools.passStore = store;
+
+        Pass.downloadPass(passId, tempFile());
+        Template.updateTemplate(templateId, TestHelper.randomName(), TestHelper.randomDescription(),
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+        assert store.size() == 0;
+        Pass.downloadPass(passId, tempFile());
+        assert server.getRequestCount("GET", "/pass/" + passId + "/download") == 2;
+
+        Map<String, Object> fields = new HashMap<String, Object>();
+        fields.put("Seat", "14C");
+        Tag.updatePasses(tag, fields);
+        assert store.size() == 0;
+        Pass.downloadPass(passId, tempFile());
+        assert server.getRequestCount("GET", "/pass/" + passId + "/download") == 3;
+    }
+
+    @Test
+    public void testChangeByUnseenExternalIdDropsStoredPasses() throws Exception {
+        long templateId = createTemplate();
+        /* made behind this client's back, so it can't map the external id to the pass */
+        String externalId = TestHelper.randomName();
+        Number created = (Number) server.getStore().createPass(templateId, null, externalId,
+                TestData.getCreatePassFields()).get("id");
+        long passId = created.longValue();
+        PassStore store = new PassStore(tempDirectory(), 10 * 1024 * 1024);
+        PassTools.passStore = store;
+
+        Pass.downloadPass(passId, tempFile());
+        assert store.getContentHash(passId) != null;
+        Pass.deleteX(externalId);
+        assert store.getContentHash(passId) == null && store.size() == 0;
+    }
+
+    @Test
+    public void testChangeDuringDownloadNotStored() throws Exception {
+        long templateId = createTemplate();
+        final long passId = Pass.create(templateId, TestData.getCreatePassFields()).getPassId();
+        PassStore store = new PassStore(tempDirectory(), 10 * 1024 * 1024);
+        PassTools.passStore = store;
+
+        /* the download is held up while the pass is updated, so what it brings back is out of date */
+        server.stallNext(1, 500);
+        final File downloaded = tempFile();
+        Thread download = new Thread(new Runnable() {
+            public void run() {
+                Pass.downloadPass(passId, downloaded);
+            }
+        });
+        download.start();
+        Thread.sleep(200);
+        Map<String, Object> fields = new HashMap<String, Object>();
+        fields.put("Seat", "3F");
+        Pass.update(passId, fields);
+        download.join();
+
+        assert downloaded.length() > 0;
+        assert store.getContentHash(passId) == null;
+        Pass.downloadPass(passId, tempFile());
+        assert store.getContentHash(passId) != null;
+        assert server.getRequestCount("GET", "/pass/" + passId + "/download") == 2;
+    }
+
+    @Test
+    public void testOutOfDatePutRefused() throws Exception {
+        PassStore store = new PassStore(tempDirectory(), 10 * 1024 * 1024);
+        assert store.put(1, pkpass("a"), store.getGeneration()) != null;
+
+        long generation = store.getGeneration();
+        store.invalidate(1);
+        assert store.put(1, pkpass("b"), generation) == null;
+        assert store.put(2, pkpass("c"), generation) != null;   /* only the dropped pass is refused */
+
+        generation = store.getGeneration();
+        store.clear();
+        assert store.size() == 0 && store.getBytes() == 0;
+        assert store.put(2, pkpass("d"), generation) == null;
+        assert store.put(2, pkpass("d"), store.getGeneration()) != null;
+    }
+
+    @Test
+    public void testNotAPkpassRefused() throws Exception {
+        PassStore store = new PassStore(tempDirectory(), 10 * 1024 * 1024);
+        File text = tempFile();
+        FileOutputStream out = new FileOutputStream(text);
+        out.write("<html>Service Unavailable</html>".getBytes("UTF-8"));
+        out.close();
+        try {
+            store.put(1, text, store.getGeneration());
+            assert false;
+        } catch (IOException expected) {
+        }
+        assert store.size() == 0 && store.getBytes() == 0;
+        assert !store.get(1, tempFile());
+    }
+
+    private long createTemplate() {
+        return Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("pass", ".pkpass");
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static File pkpass(String content) throws IOException {
+        File file = tempFile();
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            zip.putNextEntry(new ZipEntry("pass.json"));
+            zip.write(content.getBytes("UTF-8"));
+            zip.closeEntry();
+        } finally {
+            zip.close();
+        }
+        return file;
+    }
+
+    private static File tempDirectory() throws IOException {
+        File directory = File.createTempFile("passes", "");
+        directory.delete();
+        directory.mkdirs();
+        directory.deleteOnExit();
+        return directory;
+    }
+
+    private static Map<String, byte[]> entries(File pkpass) throws IOException {
+        Map<String, byte[]> entries = new HashMap<String, byte[]>();
+        ZipInputStream zip = new ZipInputStream(new FileInputStream(pkpass));
+        try {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = zip.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                entries.put(entry.getName(), out.toByteArray());
+            }
+        } finally {
+            zip.close();
+        }
+        return entries;
+    }
+
+    private static boolean sameEntries(Map<String, byte[]> a, Map<String, byte[]> b) {
+        if (a.isEmpty() || !a.keySet().equals(b.keySet())) {
+            return false;
+        }
+        for (String name : a.keySet()) {
+            if (!Arrays.equals(a.get(name), b.get(name))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,103 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.Template;
+import com.urbanairship.digitalwallet.client.exception.InvalidRequestException;
+import com.urbanairship.digitalwallet.client.exception.NotFoundException;
+import org.json.simple.JSONObject;
+
+import java.util.Map;
+
+public class PassUpsertTest extends BaseLocalServerTest {
+
+    @org.testng.annotations.Test
+    public void testUpsert() {
+        long templateId = createTemplate();
+        String externalId = TestHelper.randomString("upsert-");
+        server.resetCounts();
+
+        Pass created = Pass.upsert(templateId, externalId, passenger("Smith Alex"));
+        assert externalId.equals(created.getExternalId());
+        assert server.getRequestCount() == 2;   /* unknown id, the update misses then the create */
+
+        server.resetCounts();
+        Pass updated = Pass.upsert(templateId, externalId, passenger("Jones Sam"));
+        assert updated.getPassId().equals(created.getPassId());
+        assert server.getRequestCount() == 1;
+        assert "Jones Sam".equals(((Map) ((Map) Pass.get(created.getPassId()).getFields()).get("Passenger")).get("value"));
+
+        Pass.delete(created.getPassId());
+        server.resetCounts();
+        Pass recreated = Pass.upsert(templateId, externalId, passenger("Smith Alex"));
+        assert !recreated.getPassId().equals(created.getPassId());
+        assert server.getRequestCount() == 1;
+    }
+
+    @org.testng.annotations.Test
+    public void testStaleCache() {
+        long templateId = createTemplate();
+        String externalId = TestHelper.randomString("stale-");
+
+        /* known to exist, then deleted behind the client's back */
+        Pass created = Pass.create(templateId, externalId, passenger("Smith Alex"));
+        server.getStore().deletePass(created.getPassId(), null);
+        Pass recreated = Pass.upsert(templateId, externalId, passenger("Jones Sam"));
+        assert !recreated.getPassId().equals(created.getPassId());
+
+        /* known to be missing, then created behind the client's back */
+        Pass.deleteX(externalId);
+        server.getStore().createPass(templateId, null, externalId, passenger("Smith Alex"));
+        Pass updated = Pass.upsert(templateId, externalId, passenger("Jones Sam"));
+        assert externalId.equals(updated.getExternalId());
+        assert "Jones Sam".equals(((Map) ((Map) updated.getFields()).get("Passenger")).get("value"));
+    }
+
+    @org.testng.annotations.Test
+    public void testValidationErrorNotTakenForDuplicate() {
+        long templateId = createTemplate();
+        String externalId = TestHelper.randomString("invalid-");
+        Pass.create(templateId, externalId, passenger("Smith Alex"));
+        Pass.deleteX(externalId);
+
+        /* written out unquoted, so the server can't parse the fields */
+        Map<String, Object> fields = passenger("Jones Sam");
+        fields.put("Seat", new Object() {
+            public String toString() {
+                return "{12A";
+            }
+        });
+        server.resetCounts();
+        try {
+            Pass.upsert(templateId, externalId, fields);
+            assert false;
+        } catch (RuntimeException e) {
+            assert e.getCause() instanceof InvalidRequestException;
+            assert e.getCause().getMessage().contains("invalid json");
+        }
+        assert server.getRequestCount() == 1;
+    }
+
+    @org.testng.annotations.Test
+    public void testNotFound() {
+        try {
+            Pass.getPass(TestHelper.randomString("missing-"));
+            assert false;
+        } catch (RuntimeException e) {
+            assert e.getCause() instanceof NotFoundException;
+        }
+    }
+
+    private static long createTemplate() {
+        return Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> passenger(String name) {
+        JSONObject passenger = new JSONObject();
+        passenger.put("value", name);
+        JSONObject fields = new JSONObject();
+        fields.put("Passenger", passenger);
+        return fields;
+    }
+}
@@ -0,0 +1,129 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.Priority;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+public class PriorityTest extends BaseLocalServerTest {
+    private int maxConnections;
+
+    @BeforeMethod
+    public void fewConnections() {
+        maxConnections = PassTools.maxConnections;
+        PassTools.maxConnections = 2;
+        PassTools.coalesceGets = false;
+        Pass.listPasses(10, 1);   /* the first call of a run builds the client, too slow for the timings below */
+        server.resetCounts();
+    }
+
+    @AfterMethod
+    public void restoreConnections() {
+        PassTools.maxConnections = maxConnections;
+        PassTools.coalesceGets = true;
+    }
+
+    @Test
+    public void testInteractiveAheadOfBulk() throws Exception {
+        server.setLatency(200, 200);
+        List<Thread> jobs = new ArrayList<Thread>();
+        for (int i = 0; i < 6; i++) {
+            Thread job = new Thread(new Runnable() {
+                public void run() {
+                    Priority.Scope scope = Priority.BULK.use();
+                    try {
+                        Pass.listPasses(10, 1);
+                    } finally {
+                        scope.close();
+                    }
+                }
+            });
+            job.start();
+            jobs.add(job);
+        }
+        Thread.sleep(50);
+
+        long start = System.currentTimeMillis();
+        Pass.listPasses(10, 1);
+        long interactive = System.currentTimeMillis() - start;
+        for (Thread job : jobs) {
+            job.join();
+        }
+        long bulk = System.currentTimeMillis() - start;
+
+        /* bulk calls only get one of the two connections, so the interactive call never waits behind the six of them */
+        assert interactive < 500 : interactive;
+        assert bulk >= 1000 : bulk;
+        assert server.getRequestCount() == 7;
+    }
+
+    @Test
+    public void testInteractiveGetNotCoalescedIntoBulk() throws Exception {
+        PassTools.coalesceGets = true;
+        server.setLatency(200, 200);
+        List<Thread> jobs = new ArrayList<Thread>();
+        /* the bulk GET for page 1 is queued last, behind five others in the bulk lane */
+        for (int i = 6; i >= 1; i--) {
+            final int page = i;
+            Thread job = new Thread(new Runnable() {
+                public void run() {
+                    Priority.Scope scope = Priority.BULK.use();
+                    try {
+                        Pass.listPasses(10, page);
+                    } finally {
+                        scope.close();
+                    }
+                }
+            });
+            job.start();
+            jobs.add(job);
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+
+        long start = System.currentTimeMillis();
+        Pass.listPasses(10, 1);
+        long interactive = System.currentTimeMillis() - start;
+        for (Thread job : jobs) {
+            job.join();
+        }
+
+        assert interactive < 500 : interactive;
+        assert server.getRequestCount() == 7;
+    }
+
+    @Test
+    public void testScopes() throws Exception {
+        assert Priority.current() == Priority.INTERACTIVE;
+        Priority.Scope bulk = Priority.BULK.use();
+        Priority.Scope interactive = Priority.INTERACTIVE.use();
+        assert Priority.current() == Priority.INTERACTIVE;
+        interactive.close();
+        assert Priority.current() == Priority.BULK;
+
+        final Priority[] seen = new Priority[1];
+        Callable<Priority> call = Priority.propagate(new Callable<Priority>() {
+            public Priority call() {
+                return Priority.current();
+            }
+        });
+        Thread thread = new Thread(Priority.propagate(new Runnable() {
+            public void run() {
+                seen[0] = Priority.current();
+            }
+        }));
+        thread.start();
+        thread.join();
+        bulk.close();
+
+        assert seen[0] == Priority.BULK;
+        assert call.call() == Priority.BULK;
+        assert Priority.current() == Priority.INTERACTIVE;
+    }
+}
@@ -0,0 +1,86 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.PassToolsClient;
+import com.urbanairship.digitalwallet.client.PassToolsResponse;
+import com.urbanairship.digitalwallet.client.ResponseLeakListener;
+import com.urbanairship.digitalwallet.client.Template;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ResponseLeakTest extends BaseLocalServerTest {
+    private final List<Throwable> leaks = new CopyOnWriteArrayList<Throwable>();
+    private boolean savedCoalesceGets;
+
+    @BeforeMethod
+    public void detectLeaks() {
+        leaks.clear();
+        savedCoalesceGets = PassTools.coalesceGets;
+        PassTools.coalesceGets = false;
+        PassTools.responseLeakListener = new ResponseLeakListener() {
+            public void responseLeaked(Throwable createdAt) {
+                leaks.add(createdAt);
+            }
+        };
+    }
+
+    @AfterMethod
+    public void stopDetecting() {
+        PassTools.responseLeakListener = null;
+        PassTools.coalesceGets = savedCoalesceGets;
+    }
+
+    @Test
+    public void testUnclosedResponseReported() throws Exception {
+        leakResponse();
+        collectUntil(1);
+        assert leaks.size() == 1;
+        StringWriter trace = new StringWriter();
+        leaks.get(0).printStackTrace(new PrintWriter(trace));
+        assert trace.toString().contains("leakResponse");
+    }
+
+    @Test
+    public void testSdkCallsRelease() throws Exception {
+        closeResponse();
+        long templateId = Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+        for (int i = 0; i < 5; i++) {
+            Pass pass = Pass.create(templateId, TestData.getCreatePassFields());
+            Pass.get(pass.getPassId());
+            Pass.listPasses(10, 1);
+            Pass.delete(pass.getPassId());
+        }
+        Template.delete(templateId);
+
+        leakResponse();
+        collectUntil(1);
+        assert leaks.size() == 1;
+    }
+
+    private void leakResponse() throws Exception {
+        PassToolsClient.get(server.getApiBase() + "/pass?pageSize=1&page=1");
+    }
+
+    private void closeResponse() throws Exception {
+        PassToolsResponse response = PassToolsClient.get(server.getApiBase() + "/pass?pageSize=1&page=1");
+        response.close();
+    }
+
+    private void collectUntil(int count) throws Exception {
+        for (int i = 0; i < 100 && leaks.size() < count; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        /* give anything else a chance to show up */
+        System.gc();
+        Thread.sleep(100);
+    }
+}
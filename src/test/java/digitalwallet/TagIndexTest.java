@@ -0,0 +1,117 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.Tag;
+import com.urbanairship.digitalwallet.client.TagIndex;
+import com.urbanairship.digitalwallet.client.Template;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class TagIndexTest extends BaseLocalServerTest {
+
+    @org.testng.annotations.AfterMethod
+    public void tearDownIndex() {
+        PassTools.tagIndex = null;
+    }
+
+    @org.testng.annotations.Test
+    public void testLoadAndWriteThrough() {
+        Long templateId = Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+        String gold = TestHelper.randomTag();
+        String silver = TestHelper.randomTag();
+        Pass first = Pass.create(templateId, TestHelper.randomString("index-"), TestData.getCreatePassFields());
+        Pass second = Pass.create(templateId, TestHelper.randomString("index-"), TestData.getCreatePassFields());
+        Pass.addTags(first.getPassId(), Arrays.asList(gold, silver));
+        Pass.addTag(second.getPassId(), silver);
+
+        /* the fixed url, before there's an index */
+        List<Tag> remote = Pass.getTags(first.getExternalId());
+        assert remote.size() == 2;
+
+        PassTools.tagIndex = TagIndex.load();
+        TagIndex index = PassTools.tagIndex;
+        assert index.hasTag(first.getPassId(), gold);
+        assert !index.hasTag(second.getPassId(), gold);
+        assert index.getPassIds(silver).size() == 2;
+
+        server.resetCounts();
+        List<Tag> tags = Pass.getTags(first.getPassId());
+        assert tags.size() == 2;
+        assert tags.get(0).getId() != null;
+        assert Pass.getTags(first.getExternalId()).size() == 2;
+        assert server.getRequestCount() == 0;
+
+        String bronze = TestHelper.randomTag();
+        Pass.addTag(second.getExternalId(), bronze);
+        assert index.hasTag(second.getPassId(), bronze);
+
+        Tag.removeFromPass(silver, first.getExternalId());
+        assert !index.hasTag(first.getPassId(), silver);
+        assert index.getTagNames(first.getPassId()).equals(new java.util.HashSet<String>(Arrays.asList(gold)));
+
+        Tag.removeFromPasses(silver);
+        assert index.getPassIds(silver).isEmpty();
+        assert index.getTagNames().contains(silver);
+
+        Tag.deleteTag(gold);
+        assert !index.getTagNames().contains(gold);
+        assert index.getTags(first.getPassId()).isEmpty();
+
+        Pass.delete(second.getPassId());
+        assert index.getPassIds(bronze).isEmpty();
+    }
+
+    @org.testng.annotations.Test
+    public void testTagByUnseenExternalId() {
+        Long templateId = Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+        String externalId = TestHelper.randomString("unseen-");
+        /* made by another client, so this one doesn't know its id */
+        long passId = (Long) server.getStore().createPass(templateId, null, externalId, TestData.getCreatePassFields()).get("id");
+
+        PassTools.tagIndex = TagIndex.load();
+        TagIndex index = PassTools.tagIndex;
+        String gold = TestHelper.randomTag();
+        server.resetCounts();
+        Pass.addTag(externalId, gold);
+        assert server.getRequestCount() == 1;
+        assert !index.hasTag(passId, gold);
+
+        Pass.getPass(externalId);
+        assert index.hasTag(passId, gold);
+        assert index.getPassIds(gold).size() == 1;
+    }
+
+    @org.testng.annotations.Test
+    public void testUntagByUnseenExternalId() {
+        Long templateId = Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+        String externalId = TestHelper.randomString("unseen-");
+        long passId = (Long) server.getStore().createPass(templateId, null, externalId, TestData.getCreatePassFields()).get("id");
+
+        PassTools.tagIndex = TagIndex.load();
+        TagIndex index = PassTools.tagIndex;
+        String gold = TestHelper.randomTag();
+        Pass.addTag(externalId, gold);
+        Tag.removeFromPass(gold, externalId);
+
+        Pass.getPass(externalId);
+        assert !index.hasTag(passId, gold);
+    }
+
+    @org.testng.annotations.Test
+    public void testShortPagesLoaded() {
+        Long templateId = Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+        Pass pass = Pass.create(templateId, TestHelper.randomString("short-"), TestData.getCreatePassFields());
+        List<String> tags = Arrays.asList(TestHelper.randomTag(), TestHelper.randomTag(), TestHelper.randomTag());
+        Pass.addTags(pass.getPassId(), tags);
+
+        server.setMaxPageSize(1);
+        TagIndex index = TagIndex.load();
+        assert index.getTagNames(pass.getPassId()).equals(new java.util.HashSet<String>(tags));
+    }
+}
@@ -0,0 +1,169 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.Tag;
+import com.urbanairship.digitalwallet.client.TagIndex;
+import com.urbanairship.digitalwallet.client.TagReconcileResult;
+import com.urbanairship.digitalwallet.client.TagReconciler;
+import com.urbanairship.digitalwallet.client.Template;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class TagReconcilerTest extends BaseLocalServerTest {
+
+    @org.testng.annotations.AfterMethod
+    public void tearDownIndex() {
+        PassTools.tagIndex = null;
+    }
+
+    @org.testng.annotations.Test
+    public void testTagCentric() {
+        List<Long> passIds = createPasses(20);
+        String gold = TestHelper.randomTag();
+        String silver = TestHelper.randomTag();
+        Pass.addTags(passIds.get(0), Arrays.asList(gold, silver));
+        Pass.addTag(passIds.get(1), gold);
+
+        Map<Long, Set<String>> desired = new HashMap<Long, Set<String>>();
+        for (int i = 0; i < passIds.size(); i++) {
+            desired.put(passIds.get(i), new HashSet<String>(i % 2 == 0 ? Arrays.asList(gold) : Arrays.asList(silver)));
+        }
+
+        TagReconcileResult result = TagReconciler.reconcile(desired);
+        assert result.isSuccessful();
+        assert result.getStrategy() == TagReconciler.Strategy.TAG;
+        assert result.getPassesChanged() == 20;
+        assert result.getTagsAdded() == 18 + 1;      /* all but pass 0 and 1 need one tag, pass 1 needs silver */
+        assert result.getTagsRemoved() == 2;         /* silver off pass 0, gold off pass 1 */
+        for (int i = 0; i < passIds.size(); i++) {
+            assert tagNames(passIds.get(i)).equals(desired.get(passIds.get(i)));
+        }
+
+        TagReconcileResult again = TagReconciler.reconcile(desired);
+        assert again.getPassesChanged() == 0 && again.getTagsAdded() == 0 && again.getTagsRemoved() == 0;
+    }
+
+    @org.testng.annotations.Test
+    public void testPassCentricAndDryRun() {
+        List<Long> passIds = createPasses(1);
+        String tag = TestHelper.randomTag();
+        Pass.addTags(passIds.get(0), Arrays.asList(tag, TestHelper.randomTag()));
+
+        Map<Long, Set<String>> desired = new HashMap<Long, Set<String>>();
+        desired.put(passIds.get(0), Collections.singleton(tag));
+
+        TagReconcileResult dryRun = TagReconciler.reconcile(desired, true);
+        assert dryRun.getStrategy() == TagReconciler.Strategy.PASS;
+        assert dryRun.getTagsRemoved() == 1;
+        assert tagNames(passIds.get(0)).size() == 2;
+
+        TagReconcileResult result = TagReconciler.reconcile(desired);
+        assert result.getTagsRemoved() == 1;
+        assert tagNames(passIds.get(0)).equals(Collections.singleton(tag));
+    }
+
+    @org.testng.annotations.Test
+    public void testBailsOutOfTagCentric() {
+        /* one more pass than there are tags, but two tags with members need a second page each */
+        String gold = TestHelper.randomTag();
+        String silver = TestHelper.randomTag();
+        List<Long> tagged = createPasses(2);
+        Pass.addTag(tagged.get(0), gold);
+        Pass.addTag(tagged.get(1), silver);
+        int tagCount = server.getStore().listTags(1000, 1).size();
+        List<Long> passIds = createPasses(tagCount + 1);
+        passIds.set(0, tagged.get(0));
+
+        Map<Long, Set<String>> desired = new HashMap<Long, Set<String>>();
+        for (Long passId : passIds) {
+            desired.put(passId, Collections.singleton(silver));
+        }
+        server.resetCounts();
+        TagReconcileResult result = TagReconciler.reconcile(desired, true);
+        assert result.getStrategy() == TagReconciler.Strategy.PASS;
+        assert result.getTagsAdded() == passIds.size() && result.getTagsRemoved() == 1;
+        assert result.getReadRequests() == server.getRequestCount();
+        assert server.getRequestCount() < 1 + 2 * tagCount + passIds.size();
+    }
+
+    @org.testng.annotations.Test
+    public void testShortTagPages() {
+        String tag = TestHelper.randomTag();
+        List<Long> passIds = createPasses(server.getStore().listTags(1000, 1).size() + 2);
+        Pass.addTag(passIds.get(0), tag);
+
+        Map<Long, Set<String>> desired = new HashMap<Long, Set<String>>();
+        for (Long passId : passIds) {
+            desired.put(passId, Collections.<String>emptySet());
+        }
+        server.setMaxPageSize(1);
+        TagReconcileResult result = TagReconciler.reconcile(desired);
+        assert result.isSuccessful();
+        assert result.getTagsRemoved() == 1;
+        assert tagNames(passIds.get(0)).isEmpty();
+    }
+
+    @org.testng.annotations.Test
+    public void testFailedTagPageReadPassByPass() {
+        String tag = TestHelper.randomTag();
+        List<Long> passIds = createPasses(server.getStore().listTags(1000, 1).size() + 2);
+        Pass.addTag(passIds.get(0), tag);
+
+        Map<Long, Set<String>> desired = new HashMap<Long, Set<String>>();
+        for (Long passId : passIds) {
+            desired.put(passId, Collections.<String>emptySet());
+        }
+        server.setErrorPath("/tag/" + tag + "/passes");
+        server.setErrorRate(1);
+        TagReconcileResult result = TagReconciler.reconcile(desired);
+        assert result.getStrategy() == TagReconciler.Strategy.PASS;
+        assert result.isSuccessful();
+        assert result.getTagsRemoved() == 1;
+        assert server.getInjectedErrorCount() > 0;
+        assert tagNames(passIds.get(0)).isEmpty();
+    }
+
+    @org.testng.annotations.Test
+    public void testFromIndex() {
+        List<Long> passIds = createPasses(3);
+        String tag = TestHelper.randomTag();
+        PassTools.tagIndex = TagIndex.load();
+
+        Map<Long, Set<String>> desired = new HashMap<Long, Set<String>>();
+        for (Long passId : passIds) {
+            desired.put(passId, Collections.singleton(tag));
+        }
+        server.resetCounts();
+        TagReconcileResult result = TagReconciler.reconcile(desired);
+        assert result.getStrategy() == TagReconciler.Strategy.INDEX;
+        assert result.getReadRequests() == 0;
+        assert server.getRequestCount() == 3;
+        assert PassTools.tagIndex.getPassIds(tag).size() == 3;
+    }
+
+    private static Set<String> tagNames(long passId) {
+        Set<String> names = new HashSet<String>();
+        for (Tag tag : Pass.getTags(passId)) {
+            names.add(tag.getTag());
+        }
+        return names;
+    }
+
+    private static List<Long> createPasses(int count) {
+        Long templateId = Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+        List<Long> passIds = new ArrayList<Long>();
+        for (int i = 0; i < count; i++) {
+            passIds.add(Pass.create(templateId, TestData.getCreatePassFields()).getPassId());
+        }
+        return passIds;
+    }
+}
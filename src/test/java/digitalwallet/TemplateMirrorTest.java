@@ -0,0 +1,91 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Template;
+import com.urbanairship.digitalwallet.client.TemplateListener;
+import com.urbanairship.digitalwallet.client.TemplateMirror;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TemplateMirrorTest extends BaseLocalServerTest {
+
+    @Test
+    public void testIncrementalSync() throws Exception {
+        long first = createTemplate(null);
+        String externalId = TestHelper.randomString("mirror-");
+        long second = createTemplate(externalId);
+
+        final List<String> events = new ArrayList<String>();
+        TemplateMirror mirror = new TemplateMirror();
+        mirror.addListener(new TemplateListener() {
+            public void templateAdded(Template template) {
+                events.add("added " + template.getId());
+            }
+
+            public void templateChanged(Template previous, Template current) {
+                events.add("changed " + current.getId() + " " + previous.getName() + " " + current.getName());
+            }
+
+            public void templateRemoved(Template template) {
+                events.add("removed " + template.getId());
+            }
+        });
+
+        int templates = mirror.sync();
+        assert templates == mirror.size() && templates >= 2;
+        assert events.contains("added " + first) && events.contains("added " + second);
+        assert mirror.getTemplate(externalId).getId() == second;
+        assert mirror.getTemplate(first).getFieldsModel().containsKey("Seat");
+
+        events.clear();
+        server.resetCounts();
+        assert mirror.sync() == 0;
+        assert mirror.getLastFetchCount() == 0;
+        assert server.getRequestCount() == 1;
+        assert events.isEmpty();
+
+        Thread.sleep(5);
+        Template.updateTemplate(first, "renamed", "renamed", LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+        Template.delete(second);
+        server.resetCounts();
+        assert mirror.sync() == 2;
+        assert mirror.getLastFetchCount() == 1;
+        assert server.getRequestCount("GET", "/template/" + first) == 1;
+        assert mirror.getTemplate(first).getName().equals("renamed");
+        assert mirror.getTemplate(second) == null && mirror.getTemplate(externalId) == null;
+        assert events.size() == 2;
+        assert events.get(0).startsWith("changed " + first) && events.get(0).endsWith(" renamed");
+        assert events.get(1).equals("removed " + second);
+    }
+
+    @Test
+    public void testStoreFile() throws Exception {
+        long templateId = createTemplate(null);
+        File store = File.createTempFile("templates", ".json");
+        store.delete();
+        store.deleteOnExit();
+
+        TemplateMirror mirror = new TemplateMirror(store);
+        mirror.sync();
+        assert store.exists();
+
+        TemplateMirror restarted = new TemplateMirror(store);
+        assert restarted.size() == mirror.size();
+        assert restarted.getTemplate(templateId).getFieldsModel().containsKey("Passenger");
+
+        server.resetCounts();
+        assert restarted.sync() == 0;
+        assert server.getRequestCount() == 1;
+    }
+
+    private long createTemplate(String externalId) {
+        if (externalId != null) {
+            return Template.createTemplate(externalId, TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                    LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+        }
+        return Template.createTemplate(TestHelper.randomName(), TestHelper.randomDescription(), "generic",
+                LocalApiServerTest.templateHeaders(), LocalApiServerTest.templateFields());
+    }
+}
@@ -0,0 +1,195 @@
+package digitalwallet;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsExchange;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.PassToolsClient;
+import org.apache.http.client.HttpClient;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * The shared client against local HTTPS servers with self-signed certificates: trusted through
+ * PassTools.trustStore, rejected by the JVM's default trust store or when issued for another host,
+ * and resuming its TLS session on a new connection.
+ */
+public class TlsClientTest {
+    private static final char[] password = "changeit".toCharArray();
+
+    private HttpsServer server;
+    private HttpsServer elsewhere;
+    private KeyStore trustStore;
+    private final List<Integer> clientPorts = new ArrayList<Integer>();
+    private final List<byte[]> sessionIds = new ArrayList<byte[]>();
+
+    private String savedApiBase;
+    private String savedApiKey;
+    private HttpClient savedClient;
+
+    @BeforeClass
+    public void startServers() throws Exception {
+        KeyStore keyStore = load("/tls/localhost.p12");
+        trustStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("localhost", keyStore.getCertificate("localhost"));
+        server = start(keyStore);
+
+        /* trusted too, but issued for another host */
+        KeyStore elsewhereKeys = load("/tls/elsewhere.p12");
+        trustStore.setCertificateEntry("elsewhere", elsewhereKeys.getCertificate("localhost"));
+        elsewhere = start(elsewhereKeys);
+    }
+
+    private KeyStore load(String resource) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        InputStream in = getClass().getResourceAsStream(resource);
+        try {
+            keyStore.load(in, password);
+        } finally {
+            in.close();
+        }
+        return keyStore;
+    }
+
+    private HttpsServer start(KeyStore keyStore) throws Exception {
+        KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(keyStore, password);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(kmf.getKeyManagers(), null, null);
+
+        HttpsServer server = HttpsServer.create(new InetSocketAddress(0), 16);
+        server.setHttpsConfigurator(new HttpsConfigurator(context) {
+            @Override
+            public void configure(HttpsParameters params) {
+                SSLParameters parameters = getSSLContext().getDefaultSSLParameters();
+                parameters.setProtocols(new String[]{"TLSv1.2"});   /* a resumed 1.2 session keeps its id */
+                params.setSSLParameters(parameters);
+            }
+        });
+        server.createContext("/v1", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                synchronized (sessionIds) {
+                    clientPorts.add(exchange.getRemoteAddress().getPort());
+                    sessionIds.add(((HttpsExchange) exchange).getSSLSession().getId());
+                }
+                byte[] body = "{}".getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.getResponseHeaders().set("Connection", "close");   /* every call needs a new connection */
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                try {
+                    os.write(body);
+                } finally {
+                    os.close();
+                }
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    @AfterClass
+    public void stopServers() {
+        server.stop(0);
+        elsewhere.stop(0);
+    }
+
+    @BeforeMethod
+    public void useSharedClient() {
+        savedApiBase = PassTools.API_BASE;
+        savedApiKey = PassTools.apiKey;
+        savedClient = PassTools.client;
+        PassTools.apiKey = "LOCAL_KEY";
+        PassTools.client = null;
+        PassToolsClient.shutdown();
+        synchronized (sessionIds) {
+            clientPorts.clear();
+            sessionIds.clear();
+        }
+    }
+
+    @AfterMethod
+    public void restore() {
+        PassTools.trustStore = null;
+        PassTools.verifyHostname = true;
+        PassToolsClient.shutdown();
+        PassTools.API_BASE = savedApiBase;
+        PassTools.apiKey = savedApiKey;
+        PassTools.client = savedClient;
+    }
+
+    @Test
+    public void testTrustStore() throws Exception {
+        PassTools.trustStore = trustStore;
+        PassToolsClient.get(url("localhost")).close();
+        assert sessionIds.size() == 1;
+    }
+
+    @Test
+    public void testDefaultTrustRejectsSelfSigned() throws Exception {
+        assert rejected(url("localhost"));
+        assert sessionIds.isEmpty();
+    }
+
+    @Test
+    public void testHostnameMismatchRejected() throws Exception {
+        PassTools.trustStore = trustStore;
+        String url = "https://localhost:" + elsewhere.getAddress().getPort() + "/v1/system/status";
+        assert rejected(url);
+        assert sessionIds.isEmpty();
+
+        PassTools.verifyHostname = false;
+        PassToolsClient.shutdown();
+        PassToolsClient.get(url).close();
+        assert sessionIds.size() == 1;
+    }
+
+    @Test
+    public void testSessionResumedOnNewConnection() throws Exception {
+        PassTools.trustStore = trustStore;
+        PassToolsClient.get(url("localhost")).close();
+        PassToolsClient.get(url("localhost") + "?second").close();
+
+        assert sessionIds.size() == 2;
+        assert !clientPorts.get(0).equals(clientPorts.get(1)) : "the connection was reused, not reopened";
+        assert Arrays.equals(sessionIds.get(0), sessionIds.get(1)) : "a full handshake was done again";
+    }
+
+    private String url(String host) {
+        return "https://" + host + ":" + server.getAddress().getPort() + "/v1/system/status";
+    }
+
+    private static boolean rejected(String url) throws Exception {
+        try {
+            PassToolsClient.get(url).close();
+            return false;
+        } catch (Exception e) {
+            for (Throwable t = e; t != null; t = t.getCause()) {
+                if (t instanceof SSLException) {
+                    return true;
+                }
+            }
+            throw e;
+        }
+    }
+}
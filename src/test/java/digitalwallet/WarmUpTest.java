@@ -0,0 +1,55 @@
+package digitalwallet;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.PassToolsClient;
+import com.urbanairship.digitalwallet.client.PassToolsSystem;
+import com.urbanairship.digitalwallet.client.WarmUpResult;
+
+public class WarmUpTest extends BaseLocalServerTest {
+
+    @org.testng.annotations.Test
+    public void testWarmUp() {
+        PassToolsClient.shutdown();
+        server.setLatency(100, 100);
+
+        WarmUpResult result = PassToolsSystem.warmUp(4);
+
+        assert result.isSuccessful();
+        assert "127.0.0.1".equals(result.getHost());
+        assert result.getValidatedConnections() == 4;
+        assert result.getPooledConnections() == 4;
+        assert result.getMillis() >= 100;
+        assert server.getRequestCount("GET", "/system/status") == 4;
+    }
+
+    @org.testng.annotations.Test
+    public void testWarmUpOnClientConstruction() {
+        PassToolsClient.shutdown();
+        PassTools.warmUpConnections = 3;
+        try {
+            Pass.listPasses(10, 1);
+        } finally {
+            PassTools.warmUpConnections = 0;
+        }
+
+        WarmUpResult result = PassToolsSystem.getLastWarmUp();
+        assert result != null && result.isSuccessful();
+        assert result.getRequestedConnections() == 3;
+        assert server.getRequestCount("GET", "/system/status") == 3;
+    }
+
+    @org.testng.annotations.Test
+    public void testWarmUpFailure() {
+        String base = PassTools.API_BASE;
+        PassTools.API_BASE = "http://127.0.0.1:1/v1";
+        try {
+            WarmUpResult result = PassToolsSystem.warmUp(2);
+            assert !result.isSuccessful();
+            assert result.getValidatedConnections() == 0;
+            assert result.getErrors().size() == 2;
+        } finally {
+            PassTools.API_BASE = base;
+        }
+    }
+}
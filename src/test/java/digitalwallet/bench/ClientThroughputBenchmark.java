@@ -0,0 +1,334 @@
+package digitalwallet.bench;
+
+import com.urbanairship.digitalwallet.client.Pass;
+import com.urbanairship.digitalwallet.client.PassTools;
+import com.urbanairship.digitalwallet.client.Template;
+import com.urbanairship.digitalwallet.client.stub.LocalApiServer;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Drives Pass.create, Pass.update and Pass.push against a LocalApiServer in the same JVM at increasing
+ * concurrency, once per concurrency model, and writes a JSON report.  No network access is needed.
+ *
+ *      mvn -Pbenchmark verify -DskipTests -Dbench.levels=1,8,64 -Dbench.seconds=10
+ *
+ * Settings (system properties):
+ *      bench.models        platform,virtual    virtual is skipped when the JVM has no virtual threads
+ *      bench.operations    create,update,push
+ *      bench.levels        1,4,16,64           concurrent callers
+ *      bench.seconds       10                  measured time per run
+ *      bench.warmupSeconds 3                   unmeasured time per run
+ *      bench.latencyMillis 0                   latency injected by the stub server
+ *      bench.passes        1000                passes seeded for update and push
+ *      bench.report        target/benchmark/client-throughput.json
+ *
+ * Throughput and latency count successful calls only; failed calls are reported as errors.
+ * Allocation is measured for the calling threads only, so the stub server's own garbage isn't counted.
+ * It isn't available for virtual threads and is reported as -1 there.
+ */
+public class ClientThroughputBenchmark {
+    private static final List<String> allOperations = Arrays.asList("create", "update", "push");
+
+    private final LocalApiServer server;
+    private final Random random = new Random(42);
+    private long templateId;
+    private long[] passIds;
+
+    public ClientThroughputBenchmark(LocalApiServer server) {
+        this.server = server;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> models = split(System.getProperty("bench.models", "platform,virtual"));
+        List<String> operations = split(System.getProperty("bench.operations", "create,update,push"));
+        List<String> levels = split(System.getProperty("bench.levels", "1,4,16,64"));
+        int seconds = Integer.parseInt(System.getProperty("bench.seconds", "10"));
+        int warmupSeconds = Integer.parseInt(System.getProperty("bench.warmupSeconds", "3"));
+        long latency = Long.parseLong(System.getProperty("bench.latencyMillis", "0"));
+        int passCount = Integer.parseInt(System.getProperty("bench.passes", "1000"));
+        File report = new File(System.getProperty("bench.report", "target/benchmark/client-throughput.json"));
+
+        int maxLevel = 1;
+        for (String level : levels) {
+            maxLevel = Math.max(maxLevel, Integer.parseInt(level));
+        }
+
+        LocalApiServer server = new LocalApiServer(0, Math.max(16, maxLevel * 2));
+        server.start();
+        PassTools.API_BASE = server.getApiBase();
+        PassTools.apiKey = "BENCHMARK_KEY";
+        PassTools.client = null;
+
+        try {
+            ClientThroughputBenchmark benchmark = new ClientThroughputBenchmark(server);
+            benchmark.seed(passCount);
+            server.setLatency(latency, latency);
+
+            JSONArray results = new JSONArray();
+            for (String model : models) {
+                for (String operation : operations) {
+                    if (!allOperations.contains(operation)) {
+                        throw new IllegalArgumentException("unknown operation " + operation);
+                    }
+                    for (String level : levels) {
+                        int concurrency = Integer.parseInt(level);
+                        ExecutorService executor = newExecutor(model, concurrency);
+                        if (executor == null) {
+                            results.add(unsupported(model, operation, concurrency));
+                            continue;
+                        }
+                        try {
+                            benchmark.run(executor, model, operation, concurrency, warmupSeconds);
+                            JSONObject result = benchmark.run(executor, model, operation, concurrency, seconds);
+                            System.out.println(result.toJSONString());
+                            results.add(result);
+                        } finally {
+                            executor.shutdownNow();
+                        }
+                    }
+                }
+            }
+            write(report, environment(seconds, warmupSeconds, latency, results));
+            System.out.println("report written to " + report.getAbsolutePath());
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Create the template and the passes that update and push work on.
+     */
+    public void seed(int passCount) {
+        templateId = Template.createTemplate("benchmark", "benchmark template", "generic", new HashMap<String, Object>(), fields("seed"));
+        passIds = new long[passCount];
+        for (int i = 0; i < passCount; i++) {
+            passIds[i] = Pass.create(templateId, fields("seed-" + i)).getPassId();
+        }
+    }
+
+    /**
+     * Run concurrency callers of the operation on the executor for the given time.
+     *
+     * @return the measurements as a JSON object.
+     */
+    @SuppressWarnings("unchecked")
+    public JSONObject run(ExecutorService executor, String model, final String operation, int concurrency, int seconds) throws Exception {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        threads.resetPeakThreadCount();
+        List<Future<Worker>> futures = new ArrayList<Future<Worker>>();
+        for (int i = 0; i < concurrency; i++) {
+            futures.add(executor.submit(new Callable<Worker>() {
+                public Worker call() throws Exception {
+                    Worker worker = new Worker();
+                    start.await();
+                    long allocatedBefore = allocatedBytes(threads);
+                    while (System.nanoTime() < end) {
+                        long before = System.nanoTime();
+                        try {
+                            execute(operation);
+                            worker.record(System.nanoTime() - before);
+                        } catch (RuntimeException e) {
+                            worker.errors++;   /* kept out of the throughput and latencies */
+                        }
+                    }
+                    long allocatedAfter = allocatedBytes(threads);
+                    worker.allocatedBytes = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+                    return worker;
+                }
+            }));
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        Worker total = new Worker();
+        for (Future<Worker> future : futures) {
+            total.add(future.get());
+        }
+        double elapsed = (System.nanoTime() - began) / 1e9;
+        long[] latencies = Arrays.copyOf(total.latencies, total.count);
+        Arrays.sort(latencies);
+
+        JSONObject latency = new JSONObject();
+        latency.put("p50", millis(percentile(latencies, 0.50)));
+        latency.put("p99", millis(percentile(latencies, 0.99)));
+        latency.put("p999", millis(percentile(latencies, 0.999)));
+        latency.put("max", millis(latencies.length == 0 ? 0 : latencies[latencies.length - 1]));
+
+        JSONObject result = new JSONObject();
+        result.put("model", model);
+        result.put("operation", operation);
+        result.put("concurrency", (long) concurrency);
+        result.put("requests", total.count + total.errors);
+        result.put("succeeded", (long) total.count);
+        result.put("errors", total.errors);
+        result.put("seconds", elapsed);
+        result.put("throughputPerSecond", total.count / elapsed);
+        result.put("latencyMillis", latency);
+        result.put("allocatedBytesPerSecond", total.allocatedBytes < 0 ? -1.0 : total.allocatedBytes / elapsed);
+        result.put("allocatedBytesPerRequest", total.allocatedBytes < 0 || total.count == 0 ? -1.0 : (double) total.allocatedBytes / total.count);
+        result.put("peakThreads", (long) threads.getPeakThreadCount());
+        return result;
+    }
+
+    private void execute(String operation) {
+        if (operation.equals("create")) {
+            Pass.create(templateId, fields("created"));
+        } else if (operation.equals("update")) {
+            Pass.update(nextPassId(), fields("updated"));
+        } else {
+            Pass.push(nextPassId());
+        }
+    }
+
+    private long nextPassId() {
+        synchronized (random) {
+            return passIds[random.nextInt(passIds.length)];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> fields(String value) {
+        JSONObject name = new JSONObject();
+        name.put("value", value);
+        name.put("label", "Name");
+        name.put("fieldType", "primary");
+
+        Map<String, Object> fields = new HashMap<String, Object>();
+        fields.put("name", name);
+        return fields;
+    }
+
+    /* null when the model isn't available on this JVM */
+    private static ExecutorService newExecutor(String model, int concurrency) throws Exception {
+        if (model.equals("platform")) {
+            return Executors.newFixedThreadPool(concurrency);
+        } else if (model.equals("virtual")) {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+        throw new IllegalArgumentException("unknown concurrency model " + model);
+    }
+
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject unsupported(String model, String operation, int concurrency) {
+        JSONObject result = new JSONObject();
+        result.put("model", model);
+        result.put("operation", operation);
+        result.put("concurrency", (long) concurrency);
+        result.put("unsupported", "this JVM (" + System.getProperty("java.version") + ") has no " + model + " threads");
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject environment(int seconds, int warmupSeconds, long latency, JSONArray results) {
+        JSONObject json = new JSONObject();
+        json.put("javaVersion", System.getProperty("java.version"));
+        json.put("javaVm", System.getProperty("java.vm.name"));
+        json.put("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        json.put("availableProcessors", (long) Runtime.getRuntime().availableProcessors());
+        json.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+        json.put("seconds", (long) seconds);
+        json.put("warmupSeconds", (long) warmupSeconds);
+        json.put("serverLatencyMillis", latency);
+        json.put("timestamp", System.currentTimeMillis());
+        json.put("results", results);
+        return json;
+    }
+
+    private static void write(File report, JSONObject json) throws Exception {
+        File dir = report.getAbsoluteFile().getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IllegalStateException("could not create " + dir);
+        }
+        Writer writer = new OutputStreamWriter(new FileOutputStream(report), "UTF-8");
+        try {
+            writer.write(json.toJSONString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static List<String> split(String value) {
+        List<String> values = new ArrayList<String>();
+        for (String s : value.split(",")) {
+            if (s.trim().length() > 0) {
+                values.add(s.trim());
+            }
+        }
+        return values;
+    }
+
+    private static class Worker {
+        long[] latencies = new long[1024];
+        int count;
+        long errors;
+        long allocatedBytes;
+
+        void record(long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        void add(Worker other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.latencies[i]);
+            }
+            errors += other.errors;
+            if (allocatedBytes >= 0) {
+                allocatedBytes = other.allocatedBytes < 0 ? -1 : allocatedBytes + other.allocatedBytes;
+            }
+        }
+    }
+}